@@ -29,6 +29,7 @@ import icy.gui.util.GuiUtil;
 import icy.gui.viewer.Viewer;
 import icy.image.IcyBufferedImage;
 import icy.image.IcyBufferedImageUtil;
+import icy.image.ImagePyramid;
 import icy.image.ImageUtil;
 import icy.main.Icy;
 import icy.math.Interpolator;
@@ -48,8 +49,11 @@ import icy.roi.ROI;
 import icy.sequence.DimensionId;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.system.SystemUtil;
 import icy.system.thread.SingleProcessor;
 import icy.system.thread.ThreadUtil;
+import icy.type.collection.LRUCache;
+import icy.type.point.Point5D;
 import icy.util.EventUtil;
 import icy.util.GraphicsUtil;
 import icy.util.StringUtil;
@@ -84,7 +88,10 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 
 import javax.swing.BorderFactory;
@@ -138,11 +145,7 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             if (g == null)
                 return;
 
-            final BufferedImage img = canvasView.imageCache.getImage();
-
-            if (img != null)
-                g.drawImage(img, null, 0, 0);
-            else
+            if (!canvasView.imageCache.drawImage(g))
             {
                 final Graphics2D g2 = (Graphics2D) g.create();
 
@@ -593,11 +596,12 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             if (trans != null)
             {
                 final Graphics2D g2 = (Graphics2D) g.create();
-                final BufferedImage img = canvasView.imageCache.getImage();
+                final Graphics2D gImg = (Graphics2D) g2.create();
 
                 // draw image
-                if (img != null)
-                    g2.drawImage(img, trans, null);
+                gImg.transform(trans);
+                canvasView.imageCache.drawImage(gImg);
+                gImg.dispose();
 
                 // then apply canvas inverse transformation
                 trans.scale(1 / getScaleX(), 1 / getScaleY());
@@ -662,10 +666,32 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
 
         public class ImageCache implements Runnable
         {
+            /**
+             * margin added around the visible region (ratio of visible region size)
+             */
+            private static final double VIEWPORT_MARGIN = 0.25d;
+            /**
+             * whole image is rendered when the visible region (margin included) is larger than this
+             * ratio of the image
+             */
+            private static final double VIEWPORT_MAX_RATIO = 0.5d;
+
             /**
              * image cache
              */
             private BufferedImage image;
+            /**
+             * image region rendered in cache (null = whole image)
+             */
+            private Rectangle imageRegion;
+            /**
+             * pyramid level rendered in cache (0 = full resolution)
+             */
+            private int imageLevel;
+            /**
+             * image region (in image coordinates) which need to be rendered again (partial update)
+             */
+            private Rectangle dirtyRegion;
 
             /**
              * processor
@@ -685,6 +711,9 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 processor.setKeepAliveTime(3, TimeUnit.SECONDS);
 
                 image = null;
+                imageRegion = null;
+                imageLevel = 0;
+                dirtyRegion = null;
                 needRebuild = true;
                 // build cache
                 processor.submit(this);
@@ -695,9 +724,31 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 needRebuild = true;
             }
 
+            /**
+             * Invalid the specified image region only so we can just render it again instead of
+             * rebuilding the whole cache.
+             */
+            public synchronized void invalidRegion(Rectangle region)
+            {
+                if (dirtyRegion == null)
+                    dirtyRegion = new Rectangle(region);
+                else
+                    dirtyRegion.add(region);
+            }
+
+            private synchronized Rectangle getDirtyRegion()
+            {
+                return dirtyRegion;
+            }
+
+            /**
+             * Returns <code>true</code> if the cache is up to date (image didn't changed and the
+             * cached region covers the visible part of the image).
+             */
             public boolean isValid()
             {
-                return !needRebuild;
+                return !needRebuild && (getDirtyRegion() == null) && (getImageLevel() == getWantedLevel())
+                        && isRegionValid();
             }
 
             public boolean isProcessing()
@@ -708,26 +759,307 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             public void refresh()
             {
                 // rebuild cache
-                if (needRebuild)
+                if (!isValid())
                     processor.submit(this);
 
                 // just repaint in the meantime
                 getViewComponent().repaint();
             }
 
-            public BufferedImage getImage()
+            /**
+             * Returns the cached image.<br>
+             * Be careful, it may only contains a part of the sequence image (see
+             * {@link #getImageRegion()}).
+             */
+            public synchronized BufferedImage getImage()
             {
                 return image;
             }
 
+            /**
+             * Returns the region of the sequence image (in image coordinates) contained in the cached
+             * image (<code>null</code> means the whole image).
+             */
+            public synchronized Rectangle getImageRegion()
+            {
+                return imageRegion;
+            }
+
+            /**
+             * Returns the resolution level of the cached image (0 = full resolution, 1 = half
+             * resolution, 2 = quarter resolution...).
+             */
+            public synchronized int getImageLevel()
+            {
+                return imageLevel;
+            }
+
+            /**
+             * Draw the cached image at its position in the specified graphics (image coordinates).
+             * 
+             * @return <code>false</code> if there is no image to draw
+             */
+            public boolean drawImage(Graphics2D g)
+            {
+                final BufferedImage img;
+                final Rectangle region;
+                final int level;
+
+                synchronized (this)
+                {
+                    img = image;
+                    region = imageRegion;
+                    level = imageLevel;
+                }
+
+                if (img != null)
+                {
+                    if (level > 0)
+                    {
+                        // low resolution image --> scale it back to image coordinates
+                        final Rectangle levelRegion = getLevelRegion(region, level);
+                        final int f = 1 << level;
+                        final AffineTransform trans;
+
+                        if (levelRegion != null)
+                            trans = AffineTransform.getTranslateInstance(levelRegion.x * f, levelRegion.y * f);
+                        else
+                            trans = new AffineTransform();
+                        trans.scale(f, f);
+
+                        g.drawImage(img, trans, null);
+                    }
+                    else if (region != null)
+                        g.drawImage(img, null, region.x, region.y);
+                    else
+                        g.drawImage(img, null, 0, 0);
+
+                    return true;
+                }
+
+                // image is just outside the view
+                return (region != null) && region.isEmpty();
+            }
+
+            /**
+             * Returns the image region we want to render in cache (<code>null</code> means the whole
+             * image).<br>
+             * We only render the visible region (plus a small margin) when it's small enough compared
+             * to the image size.
+             */
+            private Rectangle getWantedRegion()
+            {
+                final int sizeX = getImageSizeX();
+                final int sizeY = getImageSizeY();
+                final int canvasSizeX = getCanvasSizeX();
+                final int canvasSizeY = getCanvasSizeY();
+
+                // not yet displayed
+                if ((sizeX <= 0) || (sizeY <= 0) || (canvasSizeX <= 0) || (canvasSizeY <= 0))
+                    return null;
+
+                final Rectangle result = getVisibleImageRect();
+
+                result.grow((int) Math.ceil(result.width * VIEWPORT_MARGIN),
+                        (int) Math.ceil(result.height * VIEWPORT_MARGIN));
+
+                final Rectangle region = result.intersection(new Rectangle(sizeX, sizeY));
+
+                // not visible
+                if (region.isEmpty())
+                    return new Rectangle();
+                // visible region is large enough --> render the whole image
+                if (((double) region.width * (double) region.height) >= (VIEWPORT_MAX_RATIO * sizeX * sizeY))
+                    return null;
+
+                return region;
+            }
+
+            /**
+             * Returns the pyramid level we want to render in cache depending the current scale
+             * factor.
+             */
+            private int getWantedLevel()
+            {
+                final int level = ImagePyramid.getLevelForScale(Math.min(getScaleX(), getScaleY()));
+
+                return Math.min(level, ImagePyramid.getMaxLevel(getImageSizeX(), getImageSizeY()));
+            }
+
+            /**
+             * Convert the specified image region to the specified pyramid level coordinates.
+             */
+            private Rectangle getLevelRegion(Rectangle region, int level)
+            {
+                if ((region == null) || (level == 0))
+                    return region;
+
+                final int f = 1 << level;
+                final int x = region.x / f;
+                final int y = region.y / f;
+
+                return new Rectangle(x, y, ((region.x + region.width + f - 1) / f) - x,
+                        ((region.y + region.height + f - 1) / f) - y);
+            }
+
+            /**
+             * Returns the visible image rectangle (in image coordinates).
+             */
+            private Rectangle getVisibleImageRect()
+            {
+                return getInverseTransform().createTransformedShape(
+                        new Rectangle(getCanvasSizeX(), getCanvasSizeY())).getBounds();
+            }
+
+            private boolean isRegionValid()
+            {
+                final Rectangle region = getImageRegion();
+                final Rectangle wanted = getWantedRegion();
+
+                // whole image rendered
+                if (region == null)
+                    return wanted == null;
+                // whole image wanted
+                if (wanted == null)
+                    return false;
+                // not visible
+                if (wanted.isEmpty())
+                    return region.isEmpty();
+                // cached region doesn't cover the visible part
+                if (!region.contains(getVisibleImageRect().intersection(wanted)))
+                    return false;
+
+                // cached region is too large compared to the wanted one (zoom in) --> rebuild
+                return ((double) region.width * (double) region.height) <= (4d * wanted.width * wanted.height);
+            }
+
+            /**
+             * Render the frame at specified position in the frame cache (if not already done) so
+             * it's immediately available when we will display it.
+             */
+            public void prefetch(int t, int z)
+            {
+                final int level = getWantedLevel();
+                final Rectangle region = getWantedRegion();
+                final int c = getPositionC();
+                final FrameKey key = new FrameKey(Canvas2D.this, t, z, c, lutVersion, level, region);
+
+                if (frames.containsKey(key))
+                    return;
+
+                // data or LUT change during rendering --> frame is not stored
+                final int version = getFrameVersion();
+                final BufferedImage img = Canvas2D.this.getARGBImage(t, z, c, level, getLevelRegion(region, level),
+                        null);
+
+                if (img != null)
+                    putFrame(key, img, Canvas2D.this.getImage(t, z, -1), version);
+            }
+
+            /**
+             * Render again the specified image region directly in the cached image.
+             * 
+             * @return <code>false</code> if the cached image cannot be partially updated
+             */
+            private boolean updateRegion(Rectangle dirty)
+            {
+                final BufferedImage img;
+                final Rectangle region;
+
+                synchronized (this)
+                {
+                    img = image;
+                    region = imageRegion;
+                }
+
+                if (img == null)
+                    return false;
+
+                final Rectangle bounds;
+
+                if (region != null)
+                    bounds = region;
+                else
+                    bounds = new Rectangle(getImageSizeX(), getImageSizeY());
+
+                // cached image doesn't match the image size anymore
+                if ((img.getWidth() != bounds.width) || (img.getHeight() != bounds.height))
+                    return false;
+
+                final Rectangle r = dirty.intersection(bounds);
+
+                // modified region is not in cache
+                if (r.isEmpty())
+                    return true;
+
+                final BufferedImage part = Canvas2D.this.getARGBImage(getPositionT(), getPositionZ(), getPositionC(),
+                        r, null);
+
+                if (part == null)
+                    return false;
+
+                // copy the rendered region at its position in the cached image
+                img.getRaster().setDataElements(r.x - bounds.x, r.y - bounds.y, part.getRaster());
+
+                return true;
+            }
+
             @Override
             public void run()
             {
+                // cache already up to date (redundant request)
+                if (isValid())
+                    return;
+
+                final Rectangle dirty;
+
+                synchronized (this)
+                {
+                    dirty = dirtyRegion;
+                    dirtyRegion = null;
+                }
+
+                // only a part of the image data changed --> just render this part again
+                if (!needRebuild && (dirty != null) && (getImageLevel() == 0) && (getWantedLevel() == 0)
+                        && isRegionValid() && updateRegion(dirty))
+                {
+                    // repaint now
+                    getViewComponent().repaint();
+                    return;
+                }
+
                 // important to set it to false at beginning
                 needRebuild = false;
 
-                // build image
-                image = Canvas2D.this.getARGBImage(getPositionT(), getPositionZ(), getPositionC(), image);
+                final int level = getWantedLevel();
+                final Rectangle region = getWantedRegion();
+                final int t = getPositionT();
+                final int z = getPositionZ();
+                final int c = getPositionC();
+                final FrameKey key = new FrameKey(Canvas2D.this, t, z, c, lutVersion, level, region);
+
+                // already rendered ?
+                BufferedImage img = getFrame(key);
+
+                if (img == null)
+                {
+                    final int version = getFrameVersion();
+
+                    // build image (only the wanted region at the wanted resolution), we don't reuse
+                    // the previous image as it can be stored in the frame cache
+                    img = Canvas2D.this.getARGBImage(t, z, c, level, getLevelRegion(region, level), null);
+
+                    // store it for later use
+                    if (img != null)
+                        putFrame(key, img, Canvas2D.this.getImage(t, z, -1), version);
+                }
+
+                synchronized (this)
+                {
+                    image = img;
+                    imageRegion = region;
+                    imageLevel = level;
+                }
 
                 // repaint now
                 getViewComponent().repaint();
@@ -1337,6 +1669,31 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             }
         }
 
+        /**
+         * Returns layers which intersect the drawing area of the specified {@link Graphics2D}
+         * object (sorted on layer priority).
+         */
+        List<Layer> getLayersToDraw(Graphics2D g)
+        {
+            final Rectangle clip = g.getClipBounds();
+
+            // no clip --> draw all layers
+            if (clip == null)
+                return getLayers(true);
+
+            // add margin (given in canvas pixel)
+            final double scale = Math.sqrt(Math.abs(g.getTransform().getDeterminant()));
+            final double margin = (scale > 0d) ? (LAYER_MARGIN / scale) : 0d;
+            final Rectangle2D area = new Rectangle2D.Double(clip.x - margin, clip.y - margin, clip.width
+                    + (2 * margin), clip.height + (2 * margin));
+            final List<Layer> result = layerIndex.getLayers(area, getPositionZ(), getPositionT(), false);
+
+            // keep priority order
+            Collections.sort(result);
+
+            return result;
+        }
+
         /**
          * Draw specified image layer and others layers on specified {@link Graphics2D} object.
          */
@@ -1348,7 +1705,7 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             // global layer visible switch for canvas
             if (isLayersVisible())
             {
-                final List<Layer> layers = getLayers(true);
+                final List<Layer> layers = getLayersToDraw(g);
 
                 // draw them in inverse order to have first painter event at top
                 for (int i = layers.size() - 1; i >= 0; i--)
@@ -1637,6 +1994,11 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             imageCache.invalidCache();
         }
 
+        public void imageChanged(Rectangle region)
+        {
+            imageCache.invalidRegion(region);
+        }
+
         public void layersChanged()
         {
 
@@ -1884,6 +2246,163 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
     private final static int SCALE_Y = 3;
     private final static int ROT = 4;
 
+    /**
+     * Resolution pyramids of displayed images
+     */
+    protected static class PyramidCache extends LRUCache<IcyBufferedImage, ImagePyramid>
+    {
+        public PyramidCache(long maxSize)
+        {
+            super(maxSize);
+        }
+
+        @Override
+        protected long getSize(ImagePyramid value)
+        {
+            return value.getEstimatedSize();
+        }
+
+        @Override
+        protected void removed(IcyBufferedImage key, ImagePyramid value)
+        {
+            value.release();
+        }
+    }
+
+    /**
+     * Key of a rendered frame (canvas, position, LUT version, resolution level and rendered
+     * region).
+     */
+    protected static class FrameKey
+    {
+        final Canvas2D canvas;
+        final int t;
+        final int z;
+        final int c;
+        final int lutVersion;
+        final int level;
+        final Rectangle region;
+
+        public FrameKey(Canvas2D canvas, int t, int z, int c, int lutVersion, int level, Rectangle region)
+        {
+            super();
+
+            this.canvas = canvas;
+            this.t = t;
+            this.z = z;
+            this.c = c;
+            this.lutVersion = lutVersion;
+            this.level = level;
+            this.region = region;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof FrameKey)
+            {
+                final FrameKey key = (FrameKey) obj;
+
+                return (canvas == key.canvas) && (t == key.t) && (z == key.z) && (c == key.c)
+                        && (lutVersion == key.lutVersion) && (level == key.level)
+                        && ((region == null) ? (key.region == null) : region.equals(key.region));
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = System.identityHashCode(canvas);
+
+            result = (result * 31) + t;
+            result = (result * 31) + z;
+            result = (result * 31) + c;
+            result = (result * 31) + lutVersion;
+            result = (result * 31) + level;
+            if (region != null)
+                result = (result * 31) + region.hashCode();
+
+            return result;
+        }
+    }
+
+    /**
+     * Rendered (ARGB) frame with the image it was rendered from.
+     */
+    protected static class Frame
+    {
+        final BufferedImage image;
+        // don't prevent source image to be released
+        final WeakReference<IcyBufferedImage> source;
+
+        public Frame(BufferedImage image, IcyBufferedImage source)
+        {
+            super();
+
+            this.image = image;
+            this.source = new WeakReference<IcyBufferedImage>(source);
+        }
+    }
+
+    /**
+     * Rendered (ARGB) frames so we don't need to build them again when we come back to a previous
+     * T / Z position.
+     */
+    protected static class FrameCache extends LRUCache<FrameKey, Frame>
+    {
+        public FrameCache(long maxSize)
+        {
+            super(maxSize);
+        }
+
+        @Override
+        protected long getSize(Frame value)
+        {
+            // ARGB image
+            return (long) value.image.getWidth() * (long) value.image.getHeight() * 4L;
+        }
+    }
+
+    /**
+     * margin (in canvas pixel) around visible area / mouse position to retrieve layers (so we
+     * don't miss ROI stroke, control points or labels)
+     */
+    private static final int LAYER_MARGIN = 32;
+
+    /**
+     * pyramid cache size (in bytes, shared by all canvas)
+     */
+    private static final long PYRAMID_CACHE_SIZE = SystemUtil.getJavaMaxMemory() / 16;
+    /**
+     * rendered frame cache size (in bytes, shared by all canvas)
+     */
+    private static final long FRAME_CACHE_SIZE = SystemUtil.getJavaMaxMemory() / 16;
+
+    /**
+     * image pyramids (used to render zoomed out images), shared by all canvas
+     */
+    static final PyramidCache pyramids = new PyramidCache(PYRAMID_CACHE_SIZE);
+    /**
+     * rendered frames, shared by all canvas
+     */
+    static final FrameCache frames = new FrameCache(FRAME_CACHE_SIZE);
+    /**
+     * LUT version (incremented on each LUT change so rendered frames are not reused)
+     */
+    volatile int lutVersion;
+    /**
+     * incremented each time frames are invalidated so frames rendered in the meantime are not
+     * stored (guarded by frameLock)
+     */
+    int frameVersion;
+    final Object frameLock;
+    /**
+     * spatial index of layers (used to cull painting and mouse events)
+     */
+    final LayerIndex layerIndex;
+
     /**
      * view where we draw
      */
@@ -1925,6 +2444,14 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
         // all channel visible at once
         posC = -1;
 
+        // frame cache state (need to be initialized before view)
+        lutVersion = 0;
+        frameVersion = 0;
+        frameLock = new Object();
+        // index layers already added
+        layerIndex = new LayerIndex();
+        for (Layer layer : getLayers(false))
+            layerIndex.add(layer);
         // view panel
         canvasView = new CanvasView();
         // mini map
@@ -2024,9 +2551,19 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
     @Override
     public void shutDown()
     {
+        final Sequence seq = getSequence();
+
         super.shutDown();
 
         canvasView.shutDown();
+        // release pyramids and rendered frames
+        if (seq != null)
+        {
+            for (IcyBufferedImage image : seq.getAllImage())
+                pyramids.remove(image);
+        }
+        removeFrames(null);
+        layerIndex.clear();
 
         // shutdown mover object (else internal timer keep a reference to Canvas2D)
         transform.shutDown();
@@ -2751,11 +3288,186 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
 
     public BufferedImage getARGBImage(int t, int z, int c, BufferedImage out)
     {
-        final IcyBufferedImage img = Canvas2D.this.getImage(t, z, c);
+        return getARGBImage(t, z, c, 0, null, out);
+    }
+
+    /**
+     * Build the ARGB image of the specified region of the image at position [t, z, c].
+     * 
+     * @param region
+     *        image region to render (in image coordinates), <code>null</code> means the whole
+     *        image.
+     * @param out
+     *        output image, reused if it has the wanted size
+     */
+    public BufferedImage getARGBImage(int t, int z, int c, Rectangle region, BufferedImage out)
+    {
+        return getARGBImage(t, z, c, 0, region, out);
+    }
+
+    @Override
+    protected void sequenceROIChanged(ROI roi, SequenceEventType type)
+    {
+        super.sequenceROIChanged(roi, type);
+
+        // ROI bounds may have changed
+        layerIndex.roiChanged(roi);
+    }
+
+    @Override
+    protected List<Layer> getMouseEventLayers(Point5D.Double pt)
+    {
+        final double scale = Math.min(getScaleX(), getScaleY());
+
+        if ((pt == null) || (scale <= 0d))
+            return super.getMouseEventLayers(pt);
 
-        if (img != null)
+        // only layers near the mouse position (and active ROI) need mouse events
+        final double margin = LAYER_MARGIN / scale;
+        final Rectangle2D area = new Rectangle2D.Double(pt.x - margin, pt.y - margin, 2 * margin, 2 * margin);
+        final List<Layer> result = layerIndex.getLayers(area, getPositionZ(), getPositionT(), true);
+
+        // keep priority order
+        Collections.sort(result);
+
+        return result;
+    }
+
+    @Override
+    protected void prefetchFrame(int t, int z)
+    {
+        super.prefetchFrame(t, z);
+
+        // also render the frame
+        if (canvasView != null)
+            canvasView.imageCache.prefetch(t, z);
+    }
+
+    /**
+     * Returns the hit rate (from 0 to 1) of the rendered frame cache.
+     */
+    public double getFrameCacheHitRate()
+    {
+        return frames.getHitRate();
+    }
+
+    /**
+     * Returns the cached rendered frame for the specified key (<code>null</code> if not cached).
+     */
+    BufferedImage getFrame(FrameKey key)
+    {
+        final Frame frame = frames.get(key);
+
+        if (frame == null)
+            return null;
+
+        return frame.image;
+    }
+
+    /**
+     * Returns the current frame version (to give to {@link #putFrame(FrameKey, BufferedImage,
+     * IcyBufferedImage, int)}).
+     */
+    int getFrameVersion()
+    {
+        synchronized (frameLock)
+        {
+            return frameVersion;
+        }
+    }
+
+    /**
+     * Store the specified rendered frame in the frame cache unless frames were invalidated since
+     * the specified version (frame is outdated).
+     */
+    void putFrame(FrameKey key, BufferedImage image, IcyBufferedImage source, int version)
+    {
+        synchronized (frameLock)
+        {
+            if (version == frameVersion)
+                frames.put(key, new Frame(image, source));
+        }
+    }
+
+    /**
+     * Remove the cached frames of this canvas rendered from the specified image (all frames of
+     * this canvas if <code>null</code>).
+     */
+    void removeFrames(IcyBufferedImage source)
+    {
+        synchronized (frameLock)
+        {
+            frameVersion++;
+
+            for (Entry<FrameKey, Frame> entry : frames.getEntries())
+            {
+                if (entry.getKey().canvas != this)
+                    continue;
+
+                final IcyBufferedImage image = entry.getValue().source.get();
+
+                // source released means the image was reloaded --> remove frame too
+                if ((source == null) || (image == null) || (image == source))
+                    frames.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the resolution pyramid of the specified image (lazily built).
+     */
+    public ImagePyramid getPyramid(IcyBufferedImage image)
+    {
+        ImagePyramid result = pyramids.get(image);
+
+        if (result == null)
+        {
+            result = new ImagePyramid(image);
+            pyramids.put(image, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Build the ARGB image of the specified region of the image at position [t, z, c] for the
+     * specified resolution level.
+     * 
+     * @param level
+     *        resolution level (0 = full resolution, 1 = half resolution...)
+     * @param region
+     *        region to render (in level coordinates), <code>null</code> means the whole image.
+     * @param out
+     *        output image, reused if it has the wanted size
+     */
+    public BufferedImage getARGBImage(int t, int z, int c, int level, Rectangle region, BufferedImage out)
+    {
+        final IcyBufferedImage img;
+
+        if (level > 0)
+        {
+            final IcyBufferedImage plane = Canvas2D.this.getImage(t, z, -1);
+
+            if (plane != null)
+                img = getPyramid(plane).getLevel(level).getImage(c);
+            else
+                img = null;
+        }
+        else
+            img = Canvas2D.this.getImage(t, z, c);
+
+        if (img == null)
+            return null;
+
+        if (region == null)
             return IcyBufferedImageUtil.getARGBImage(img, getLut(), out);
 
+        // only convert the wanted region
+        final IcyBufferedImage subImg = IcyBufferedImageUtil.getSubImage(img, region, 0, img.getSizeC());
+
+        if (subImg != null)
+            return IcyBufferedImageUtil.getARGBImage(subImg, getLut(), out);
+
         return null;
     }
 
@@ -3104,6 +3816,10 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
     {
         super.lutChanged(component);
 
+        // rendered frames are not anymore valid
+        lutVersion++;
+        removeFrames(null);
+
         // refresh image
         if (canvasView != null)
         {
@@ -3117,6 +3833,24 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
     {
         super.layerChanged(event);
 
+        // keep layer index up to date (can be called from super constructor)
+        if (layerIndex != null)
+        {
+            switch (event.getType())
+            {
+                case ADDED:
+                    layerIndex.add(event.getSource());
+                    break;
+
+                case REMOVED:
+                    layerIndex.remove(event.getSource());
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
         // layer visibility property modified ?
         if ((event.getType() == LayersEventType.CHANGED) && Layer.isPaintProperty(event.getProperty()))
         {
@@ -3147,6 +3881,10 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
     {
         super.sequenceDataChanged(image, type);
 
+        // frames rendered from this image are not anymore valid (all frames if images were added
+        // or removed)
+        removeFrames((type == SequenceEventType.CHANGED) ? image : null);
+
         // refresh image
         if (canvasView != null)
         {
@@ -3155,6 +3893,24 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
         }
     }
 
+    @Override
+    protected void sequenceDataChanged(IcyBufferedImage image, SequenceEventType type, Rectangle region)
+    {
+        // only a part of the image changed --> just refresh this part
+        if ((region != null) && (image != null) && (type == SequenceEventType.CHANGED) && (canvasView != null))
+        {
+            super.sequenceDataChanged(image, type);
+
+            // frames rendered from this image are not anymore valid
+            removeFrames(image);
+
+            canvasView.imageChanged(region);
+            canvasView.refresh();
+        }
+        else
+            sequenceDataChanged(image, type);
+    }
+
     @Override
     public void toolChanged(String command)
     {
@@ -19,6 +19,7 @@
 package icy.canvas;
 
 import icy.common.EventHierarchicalChecker;
+import icy.common.EventHierarchicalGroup;
 import icy.util.StringUtil;
 
 /**
@@ -26,7 +27,7 @@ import icy.util.StringUtil;
  * 
  * @author Stephane
  */
-public class CanvasLayerEvent implements EventHierarchicalChecker
+public class CanvasLayerEvent implements EventHierarchicalGroup
 {
     public enum LayersEventType
     {
@@ -118,6 +119,13 @@ public class CanvasLayerEvent implements EventHierarchicalChecker
         return false;
     }
 
+    @Override
+    public Object getEventGroupKey()
+    {
+        // only events with same type can be collapsed
+        return type;
+    }
+
     @Override
     public boolean isEventRedundantWith(EventHierarchicalChecker event)
     {
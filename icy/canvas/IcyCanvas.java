@@ -32,6 +32,7 @@ import icy.common.listener.ProgressListener;
 import icy.gui.util.GuiUtil;
 import icy.gui.viewer.MouseImageInfosPanel;
 import icy.gui.viewer.TNavigationPanel;
+import icy.gui.viewer.TNavigationPanel.PrefetchListener;
 import icy.gui.viewer.Viewer;
 import icy.gui.viewer.ViewerEvent;
 import icy.gui.viewer.ViewerListener;
@@ -55,7 +56,9 @@ import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceEvent.SequenceEventType;
 import icy.sequence.SequenceListener;
+import icy.sequence.VirtualSequence;
 import icy.system.IcyExceptionHandler;
+import icy.system.thread.Processor;
 import icy.type.point.Point5D;
 import icy.util.ClassUtil;
 import icy.util.EventUtil;
@@ -65,6 +68,7 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -325,6 +329,11 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
     final protected ZNavigationPanel zNav;
     final protected TNavigationPanel tNav;
 
+    /**
+     * Background preparation of upcoming frames during playback
+     */
+    protected final Processor prefetcher;
+
     /**
      * The panel where mouse informations are displayed
      */
@@ -464,6 +473,26 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
             }
         });
 
+        // frames prefetch during playback
+        prefetcher = new Processor(1);
+        prefetcher.setDefaultThreadName("Frame prefetcher");
+        prefetcher.setPriority(Processor.MIN_PRIORITY);
+        tNav.addPrefetchListener(new PrefetchListener()
+        {
+            @Override
+            public void prefetch(int[] positions)
+            {
+                prefetchFrames(positions);
+            }
+
+            @Override
+            public void cancelPrefetch()
+            {
+                // stale requests
+                prefetcher.removeAllWaitingTasks();
+            }
+        });
+
         // mouse info panel
         mouseInfPanel = new MouseImageInfosPanel();
 
@@ -518,6 +547,10 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         zNav.removeAllChangeListener();
         tNav.removeAllChangeListener();
 
+        // stop frames prefetch
+        prefetcher.removeAllWaitingTasks();
+        prefetcher.shutdown();
+
         // remove listeners
         if (lut != null)
             lut.removeListener(this);
@@ -3121,6 +3154,20 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         return imageToCanvasDeltaC(value) + getOffsetC();
     }
 
+    /**
+     * Returns the layers which should receive a mouse event at the specified image position (sorted
+     * on layer priority).<br>
+     * Default implementation returns all layers, override it to restrict the list to layers near
+     * the mouse position.
+     * 
+     * @param pt
+     *        mouse image position
+     */
+    protected List<Layer> getMouseEventLayers(Point5D.Double pt)
+    {
+        return getLayers(true);
+    }
+
     /**
      * Helper to forward mouse press event to the overlays.
      * 
@@ -3134,7 +3181,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mousePressed(event, pt, this);
@@ -3165,7 +3212,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseReleased(event, pt, this);
@@ -3196,7 +3243,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseClick(event, pt, this);
@@ -3227,7 +3274,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseMove(event, pt, this);
@@ -3258,7 +3305,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseDrag(event, pt, this);
@@ -3289,7 +3336,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseEntered(event, pt, this);
@@ -3320,7 +3367,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseExited(event, pt, this);
@@ -3351,7 +3398,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         final boolean globalVisible = isLayersVisible();
 
         // send mouse event to overlays after so mouse canvas position is ok
-        for (Layer layer : getLayers(true))
+        for (Layer layer : getMouseEventLayers(pt))
         {
             if ((globalVisible && layer.isVisible()) || layer.getReceiveMouseEventOnHidden())
                 layer.getOverlay().mouseWheelMoved(event, pt, this);
@@ -3631,6 +3678,49 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         return getImage(getPositionT(), getPositionZ(), getPositionC());
     }
 
+    /**
+     * Prepare in background the frames at specified T positions (current Z position) so they can
+     * be displayed without delay during playback.<br>
+     * Previous pending requests are cancelled.
+     */
+    protected void prefetchFrames(int[] positionsT)
+    {
+        final int z = getPositionZ();
+
+        // previous requests are not anymore relevant
+        prefetcher.removeAllWaitingTasks();
+
+        if ((z == -1) || prefetcher.isShutdown())
+            return;
+
+        for (int t : positionsT)
+        {
+            final int pt = t;
+
+            prefetcher.submit(true, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    prefetchFrame(pt, z);
+                }
+            });
+        }
+    }
+
+    /**
+     * Prepare the frame at specified position (called from the prefetch thread).<br>
+     * Default implementation just load the image for lazily loaded sequence, override it to also
+     * prepare rendering.
+     */
+    protected void prefetchFrame(int t, int z)
+    {
+        final Sequence sequence = getSequence();
+
+        if (sequence instanceof VirtualSequence)
+            ((VirtualSequence) sequence).loadImage(t, z);
+    }
+
     /**
      * @deprecated use {@link #getRenderedImage(int, int, int, boolean)} instead
      */
@@ -4403,6 +4493,23 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         mouseInfPanel.updateInfos(this);
     }
 
+    /**
+     * sequence data has changed in the specified region<br>
+     * Default implementation just call {@link #sequenceDataChanged(IcyBufferedImage, SequenceEventType)}
+     * , override it if the canvas can refresh the modified region only.
+     * 
+     * @param image
+     *        image which has changed (null if global data changed)
+     * @param type
+     *        event type
+     * @param region
+     *        modified image region (null if the whole image changed)
+     */
+    protected void sequenceDataChanged(IcyBufferedImage image, SequenceEventType type, Rectangle region)
+    {
+        sequenceDataChanged(image, type);
+    }
+
     /**
      * @deprecated Use {@link #sequenceOverlayChanged(Overlay, SequenceEventType)} instead.
      */
@@ -4572,7 +4679,7 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
                 break;
 
             case SEQUENCE_DATA:
-                sequenceDataChanged((IcyBufferedImage) event.getSource(), event.getType());
+                sequenceDataChanged((IcyBufferedImage) event.getSource(), event.getType(), event.getRegion());
                 break;
 
             case SEQUENCE_OVERLAY:
@@ -290,8 +290,14 @@ public class Layer implements OverlayListener, Comparable<Layer>
     public ROI getAttachedROI()
     {
         if (roi == null)
-            // search for attached ROI
-            roi = new WeakReference<ROI>(Icy.getMainInterface().getROI(overlay));
+        {
+            // ROI overlay --> direct access
+            if (overlay instanceof ROI.ROIPainter)
+                roi = new WeakReference<ROI>(((ROI.ROIPainter) overlay).getROI());
+            else
+                // search for attached ROI
+                roi = new WeakReference<ROI>(Icy.getMainInterface().getROI(overlay));
+        }
 
         return roi.get();
     }
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.canvas;
+
+import icy.roi.ROI;
+import icy.type.rectangle.Rectangle5D;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index (uniform grid) of canvas layers.<br>
+ * Layers attached to a ROI are indexed on their XY bounds so we can quickly retrieve layers which
+ * intersect a given area (visible area for painting, mouse position for events) instead of
+ * scanning all of them.<br>
+ * Layers without ROI (or with very large bounds) are not indexed and always returned.<br>
+ * ROI bounds are lazily updated on next query after a ROI change.<br>
+ * Internal use only.
+ */
+class LayerIndex
+{
+    /**
+     * cell size (in image pixel)
+     */
+    private static final int CELL_SIZE = 256;
+    /**
+     * layers covering more cells are not indexed
+     */
+    private static final int MAX_CELLS = 1024;
+
+    private static class Entry
+    {
+        final Layer layer;
+        final ROI roi;
+
+        Rectangle5D bounds;
+        boolean active;
+
+        // covered cells (inclusive), minCellX > maxCellX if not indexed in grid
+        int minCellX;
+        int minCellY;
+        int maxCellX;
+        int maxCellY;
+
+        Entry(Layer layer, ROI roi)
+        {
+            super();
+
+            this.layer = layer;
+            this.roi = roi;
+
+            bounds = null;
+            active = false;
+            minCellX = 0;
+            minCellY = 0;
+            maxCellX = -1;
+            maxCellY = -1;
+        }
+
+        boolean isInGrid()
+        {
+            return minCellX <= maxCellX;
+        }
+
+        boolean intersects(Rectangle2D area, int z, int t)
+        {
+            if (bounds == null)
+                return true;
+
+            if ((area != null)
+                    && ((bounds.getMaxX() < area.getMinX()) || (bounds.getMinX() > area.getMaxX())
+                            || (bounds.getMaxY() < area.getMinY()) || (bounds.getMinY() > area.getMaxY())))
+                return false;
+            if ((z != -1) && !bounds.isInfiniteZ() && ((z < bounds.getMinZ()) || (z >= bounds.getMaxZ())))
+                return false;
+            if ((t != -1) && !bounds.isInfiniteT() && ((t < bounds.getMinT()) || (t >= bounds.getMaxT())))
+                return false;
+
+            return true;
+        }
+    }
+
+    private final Map<Layer, Entry> entries;
+    private final Map<ROI, Entry> roiEntries;
+    private final Map<Long, List<Entry>> cells;
+    // entries always returned (no ROI or not indexed in grid)
+    private final Set<Entry> unbounded;
+    // selected / focused / creating ROI (always receive mouse events)
+    private final Set<Entry> actives;
+    // entries to update
+    private final Set<Entry> dirty;
+
+    LayerIndex()
+    {
+        super();
+
+        entries = new HashMap<Layer, Entry>();
+        roiEntries = new IdentityHashMap<ROI, Entry>();
+        cells = new HashMap<Long, List<Entry>>();
+        unbounded = new LinkedHashSet<Entry>();
+        actives = new LinkedHashSet<Entry>();
+        dirty = new LinkedHashSet<Entry>();
+    }
+
+    private static ROI getROI(Layer layer)
+    {
+        final Object overlay = layer.getOverlay();
+
+        if (overlay instanceof ROI.ROIPainter)
+            return ((ROI.ROIPainter) overlay).getROI();
+
+        return null;
+    }
+
+    private static Long getCellKey(int cx, int cy)
+    {
+        return Long.valueOf((((long) cx) << 32) | (cy & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Add the specified layer to the index.
+     */
+    synchronized void add(Layer layer)
+    {
+        if (entries.containsKey(layer))
+            return;
+
+        final Entry entry = new Entry(layer, getROI(layer));
+
+        entries.put(layer, entry);
+        if (entry.roi != null)
+        {
+            roiEntries.put(entry.roi, entry);
+            dirty.add(entry);
+        }
+        else
+            unbounded.add(entry);
+    }
+
+    /**
+     * Remove the specified layer from the index.
+     */
+    synchronized void remove(Layer layer)
+    {
+        final Entry entry = entries.remove(layer);
+
+        if (entry == null)
+            return;
+
+        if (entry.roi != null)
+            roiEntries.remove(entry.roi);
+
+        unindex(entry);
+        unbounded.remove(entry);
+        actives.remove(entry);
+        dirty.remove(entry);
+    }
+
+    /**
+     * Notify the specified ROI has changed (<code>null</code> means all ROI).
+     */
+    synchronized void roiChanged(ROI roi)
+    {
+        if (roi == null)
+            dirty.addAll(roiEntries.values());
+        else
+        {
+            final Entry entry = roiEntries.get(roi);
+
+            if (entry != null)
+                dirty.add(entry);
+        }
+    }
+
+    /**
+     * Remove all layers.
+     */
+    synchronized void clear()
+    {
+        entries.clear();
+        roiEntries.clear();
+        cells.clear();
+        unbounded.clear();
+        actives.clear();
+        dirty.clear();
+    }
+
+    /**
+     * Returns layers which may intersect the specified area (image coordinates) at the specified
+     * Z, T position (-1 means all) plus all not indexed layers.<br>
+     * The returned list is not sorted.
+     * 
+     * @param area
+     *        image area (<code>null</code> means all)
+     * @param includeActives
+     *        if <code>true</code> layers of selected, focused or in creation ROI are also returned
+     */
+    synchronized List<Layer> getLayers(Rectangle2D area, int z, int t, boolean includeActives)
+    {
+        update();
+
+        final Set<Entry> result = new LinkedHashSet<Entry>(unbounded);
+
+        if (area == null)
+        {
+            for (Entry entry : entries.values())
+                if (entry.isInGrid() && entry.intersects(null, z, t))
+                    result.add(entry);
+        }
+        else
+        {
+            final int minCX = (int) Math.floor(area.getMinX() / CELL_SIZE);
+            final int minCY = (int) Math.floor(area.getMinY() / CELL_SIZE);
+            final int maxCX = (int) Math.floor(area.getMaxX() / CELL_SIZE);
+            final int maxCY = (int) Math.floor(area.getMaxY() / CELL_SIZE);
+
+            // area covers too many cells --> faster to test all entries
+            if (((long) (maxCX - minCX + 1) * (long) (maxCY - minCY + 1)) > cells.size())
+            {
+                for (Entry entry : entries.values())
+                    if (entry.isInGrid() && entry.intersects(area, z, t))
+                        result.add(entry);
+            }
+            else
+            {
+                for (int cy = minCY; cy <= maxCY; cy++)
+                {
+                    for (int cx = minCX; cx <= maxCX; cx++)
+                    {
+                        final List<Entry> cell = cells.get(getCellKey(cx, cy));
+
+                        if (cell != null)
+                            for (Entry entry : cell)
+                                if (entry.intersects(area, z, t))
+                                    result.add(entry);
+                    }
+                }
+            }
+        }
+
+        if (includeActives)
+            result.addAll(actives);
+
+        final List<Layer> layers = new ArrayList<Layer>(result.size());
+
+        for (Entry entry : result)
+            layers.add(entry.layer);
+
+        return layers;
+    }
+
+    /**
+     * Update changed entries.
+     */
+    private void update()
+    {
+        if (dirty.isEmpty())
+            return;
+
+        for (Entry entry : dirty)
+        {
+            unindex(entry);
+
+            final ROI roi = entry.roi;
+
+            entry.bounds = roi.getBounds5D();
+            entry.active = roi.isSelected() || roi.isFocused() || roi.isCreating();
+
+            if (entry.active)
+                actives.add(entry);
+            else
+                actives.remove(entry);
+
+            index(entry);
+        }
+
+        dirty.clear();
+    }
+
+    private void index(Entry entry)
+    {
+        final Rectangle5D bounds = entry.bounds;
+
+        if ((bounds == null) || bounds.isInfiniteX() || bounds.isInfiniteY())
+        {
+            unbounded.add(entry);
+            return;
+        }
+
+        final int minCX = (int) Math.floor(bounds.getMinX() / CELL_SIZE);
+        final int minCY = (int) Math.floor(bounds.getMinY() / CELL_SIZE);
+        final int maxCX = (int) Math.floor(bounds.getMaxX() / CELL_SIZE);
+        final int maxCY = (int) Math.floor(bounds.getMaxY() / CELL_SIZE);
+
+        // too large
+        if (((long) (maxCX - minCX + 1) * (long) (maxCY - minCY + 1)) > MAX_CELLS)
+        {
+            unbounded.add(entry);
+            return;
+        }
+
+        for (int cy = minCY; cy <= maxCY; cy++)
+        {
+            for (int cx = minCX; cx <= maxCX; cx++)
+            {
+                final Long key = getCellKey(cx, cy);
+                List<Entry> cell = cells.get(key);
+
+                if (cell == null)
+                {
+                    cell = new ArrayList<Entry>(4);
+                    cells.put(key, cell);
+                }
+
+                cell.add(entry);
+            }
+        }
+
+        entry.minCellX = minCX;
+        entry.minCellY = minCY;
+        entry.maxCellX = maxCX;
+        entry.maxCellY = maxCY;
+    }
+
+    private void unindex(Entry entry)
+    {
+        unbounded.remove(entry);
+
+        if (!entry.isInGrid())
+            return;
+
+        for (int cy = entry.minCellY; cy <= entry.maxCellY; cy++)
+        {
+            for (int cx = entry.minCellX; cx <= entry.maxCellX; cx++)
+            {
+                final Long key = getCellKey(cx, cy);
+                final List<Entry> cell = cells.get(key);
+
+                if (cell != null)
+                {
+                    cell.remove(entry);
+                    if (cell.isEmpty())
+                        cells.remove(key);
+                }
+            }
+        }
+
+        entry.minCellX = 0;
+        entry.minCellY = 0;
+        entry.maxCellX = -1;
+        entry.maxCellY = -1;
+    }
+}
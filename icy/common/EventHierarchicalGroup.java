@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.common;
+
+/**
+ * Optional interface for {@link EventHierarchicalChecker} events to speed up event coalescing.<br>
+ * Two events returning different group keys are never redundant with each other, so the
+ * {@link UpdateEventHandler} only has to test pending events sharing the same key.<br>
+ * The key should not be modified when the event is collapsed with another one.
+ */
+public interface EventHierarchicalGroup extends EventHierarchicalChecker
+{
+    /**
+     * Returns the group key of this event (should implement <code>equals</code> and
+     * <code>hashCode</code>).
+     */
+    public Object getEventGroupKey();
+}
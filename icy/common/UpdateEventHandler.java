@@ -22,7 +22,11 @@ import icy.common.listener.ChangeListener;
 import icy.system.thread.ThreadUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author stephane
@@ -38,11 +42,15 @@ public class UpdateEventHandler
     /**
      * internal update counter
      */
-    private int updateCnt;
+    private final AtomicInteger updateCnt;
     /**
-     * internal pending change events
+     * internal pending change events (in arrival order)
      */
-    private final List<EventHierarchicalChecker> pendingChanges;
+    private final LinkedList<EventHierarchicalChecker> pendingChanges;
+    /**
+     * pending change events grouped by key (see {@link EventHierarchicalGroup})
+     */
+    private final Map<Object, List<EventHierarchicalChecker>> pendingGroups;
 
     /**
      * 
@@ -54,8 +62,9 @@ public class UpdateEventHandler
         this.parent = parent;
         this.awtDispatch = awtDispatch;
 
-        updateCnt = 0;
-        pendingChanges = new ArrayList<EventHierarchicalChecker>();
+        updateCnt = new AtomicInteger(0);
+        pendingChanges = new LinkedList<EventHierarchicalChecker>();
+        pendingGroups = new HashMap<Object, List<EventHierarchicalChecker>>();
     }
 
     /**
@@ -90,13 +99,12 @@ public class UpdateEventHandler
 
     public void beginUpdate()
     {
-        updateCnt++;
+        updateCnt.incrementAndGet();
     }
 
     public void endUpdate()
     {
-        updateCnt--;
-        if (updateCnt <= 0)
+        if (updateCnt.decrementAndGet() <= 0)
         {
             boolean done = false;
 
@@ -111,7 +119,10 @@ public class UpdateEventHandler
                     done = pendingChanges.isEmpty();
 
                     if (!done)
-                        compare = pendingChanges.remove(0);
+                    {
+                        compare = pendingChanges.removeFirst();
+                        removeFromGroup(compare);
+                    }
                     else
                         compare = null;
                 }
@@ -125,28 +136,84 @@ public class UpdateEventHandler
 
     public boolean isUpdating()
     {
-        return updateCnt > 0;
+        return updateCnt.get() > 0;
     }
 
     public boolean hasPendingChanges()
     {
-        return !pendingChanges.isEmpty();
+        synchronized (pendingChanges)
+        {
+            return !pendingChanges.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the group key of the specified event.<br>
+     * Events which don't define a group are grouped by class.
+     */
+    private static Object getGroupKey(EventHierarchicalChecker event)
+    {
+        if (event instanceof EventHierarchicalGroup)
+        {
+            final Object key = ((EventHierarchicalGroup) event).getEventGroupKey();
+
+            if (key != null)
+                return key;
+        }
+
+        return event.getClass();
+    }
+
+    private void removeFromGroup(EventHierarchicalChecker event)
+    {
+        final Object key = getGroupKey(event);
+        final List<EventHierarchicalChecker> group = pendingGroups.get(key);
+
+        if (group != null)
+        {
+            // identity removal (events may not define equals)
+            for (int i = 0; i < group.size(); i++)
+            {
+                if (group.get(i) == event)
+                {
+                    group.remove(i);
+                    break;
+                }
+            }
+
+            if (group.isEmpty())
+                pendingGroups.remove(key);
+        }
     }
 
     protected void addPendingChange(EventHierarchicalChecker include)
     {
         synchronized (pendingChanges)
         {
+            final Object key = getGroupKey(include);
+            List<EventHierarchicalChecker> group = pendingGroups.get(key);
             boolean found = false;
 
-            // test if we already have an including object in the list
-            for (EventHierarchicalChecker cmp : pendingChanges)
-                if (cmp.isEventRedundantWith(include))
-                    found = true;
+            // test if we already have an including object in the group
+            // (events from different groups are never redundant)
+            if (group != null)
+            {
+                for (EventHierarchicalChecker cmp : group)
+                    if (cmp.isEventRedundantWith(include))
+                        found = true;
+            }
+            else
+            {
+                group = new ArrayList<EventHierarchicalChecker>(2);
+                pendingGroups.put(key, group);
+            }
 
             // we add it only if it isn't already existing
             if (!found)
+            {
+                group.add(include);
                 pendingChanges.add(include);
+            }
         }
     }
 
@@ -37,7 +37,9 @@ import icy.sequence.MetaDataUtil;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceIdImporter;
 import icy.sequence.SequenceImporter;
+import icy.sequence.VirtualSequence;
 import icy.system.IcyExceptionHandler;
+import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
 import icy.type.collection.CollectionUtil;
 import icy.util.OMEUtil;
@@ -54,6 +56,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import loci.formats.FormatException;
 import loci.formats.IFormatReader;
@@ -1226,7 +1231,7 @@ public class Loader
             final boolean showProgress)
     {
         // asynchronous call
-        ThreadUtil.bgRun(new Runnable()
+        ThreadUtil.bgRunIO(new Runnable()
         {
             @Override
             public void run()
@@ -1265,7 +1270,7 @@ public class Loader
     public static void load(final FileImporter importer, final List<String> paths, final boolean showProgress)
     {
         // asynchronous call
-        ThreadUtil.bgRun(new Runnable()
+        ThreadUtil.bgRunIO(new Runnable()
         {
             @Override
             public void run()
@@ -1334,7 +1339,7 @@ public class Loader
             final boolean autoOrder, final boolean showProgress)
     {
         // asynchronous call
-        ThreadUtil.bgRun(new Runnable()
+        ThreadUtil.bgRunIO(new Runnable()
         {
             @Override
             public void run()
@@ -1790,7 +1795,6 @@ public class Loader
                         final int sizeT = MetaDataUtil.getSizeT(meta, s);
                         // set local length for loader frame
                         final int numImage = sizeZ * sizeT;
-                        int progress = 0;
 
                         if (loadingFrame != null)
                         {
@@ -1798,34 +1802,10 @@ public class Loader
                                 loadingFrame.setLength(numImage);
                         }
 
-                        seq.beginUpdate();
-                        try
-                        {
-                            for (int t = 0; t < sizeT; t++)
-                            {
-                                for (int z = 0; z < sizeZ; z++)
-                                {
-                                    if (loadingFrame != null)
-                                    {
-                                        // cancel requested ? --> return null to inform about cancel
-                                        if (loadingFrame.isCancelRequested())
-                                            return null;
-
-                                        // notify progress to loader frame
-                                        // (only if sufficient image loaded)
-                                        if (numImage > 5)
-                                            loadingFrame.setPosition(progress++);
-                                    }
-
-                                    // load image and add it to the sequence
-                                    seq.setImage(t, z, importer.getImage(s, z, t));
-                                }
-                            }
-                        }
-                        finally
-                        {
-                            seq.endUpdate();
-                        }
+                        // cancel requested ? --> return null to inform about cancel
+                        if (!internalLoadImages(importer, path, seq, s, sizeZ, sizeT,
+                                GeneralPreferences.getLoaderThreads(), loadingFrame))
+                            return null;
 
                         // add sequence to result
                         result.add(seq);
@@ -1852,11 +1832,345 @@ public class Loader
         return result;
     }
 
+    /**
+     * Internal load all images of the specified serie and put them in the given sequence.<br>
+     * When <code>numWorker</code> is greater than 1, images are fetched and decoded concurrently
+     * (each worker using its own importer instance) then inserted in T/Z order in the sequence.<br>
+     * The sequence stays in update state during the whole operation so a single change event is
+     * sent when loading is done.
+     *
+     * @return <code>false</code> if loading has been cancelled.
+     */
+    static boolean internalLoadImages(SequenceFileImporter importer, String path, Sequence seq, int serie,
+            int sizeZ, int sizeT, int numWorker, FileFrame loadingFrame) throws UnsupportedFormatException,
+            IOException
+    {
+        final int numImage = sizeZ * sizeT;
+        final int numThread = Math.min(numWorker, numImage);
+
+        seq.beginUpdate();
+        try
+        {
+            if (numThread > 1)
+                return internalLoadImagesParallel(importer, path, seq, serie, sizeZ, sizeT, numThread, loadingFrame);
+
+            int progress = 0;
+
+            for (int t = 0; t < sizeT; t++)
+            {
+                for (int z = 0; z < sizeZ; z++)
+                {
+                    if (loadingFrame != null)
+                    {
+                        // cancel requested ?
+                        if (loadingFrame.isCancelRequested())
+                            return false;
+
+                        // notify progress to loader frame
+                        // (only if sufficient image loaded)
+                        if (numImage > 5)
+                            loadingFrame.setPosition(progress++);
+                    }
+
+                    // load image and add it to the sequence
+                    seq.setImage(t, z, importer.getImage(serie, z, t));
+                }
+            }
+        }
+        finally
+        {
+            seq.endUpdate();
+        }
+
+        return true;
+    }
+
+    static boolean internalLoadImagesParallel(SequenceFileImporter importer, String path, Sequence seq,
+            final int serie, int sizeZ, int sizeT, int numThread, FileFrame loadingFrame)
+            throws UnsupportedFormatException, IOException
+    {
+        final int numImage = sizeZ * sizeT;
+        final ImporterPool pool = new ImporterPool(importer, path);
+        final Processor processor = new Processor(-1, numThread);
+        final List<Future<IcyBufferedImage>> futures = new ArrayList<Future<IcyBufferedImage>>(numImage);
+
+        processor.setDefaultThreadName("Image loader");
+
+        try
+        {
+            // submit all images (decoding is done in T/Z order as the queue is FIFO)
+            for (int t = 0; t < sizeT; t++)
+            {
+                for (int z = 0; z < sizeZ; z++)
+                {
+                    final int fz = z;
+                    final int ft = t;
+
+                    futures.add(processor.submit(new Callable<IcyBufferedImage>()
+                    {
+                        @Override
+                        public IcyBufferedImage call() throws Exception
+                        {
+                            final SequenceFileImporter imp = pool.acquire();
+
+                            try
+                            {
+                                return imp.getImage(serie, fz, ft);
+                            }
+                            finally
+                            {
+                                pool.release(imp);
+                            }
+                        }
+                    }));
+                }
+            }
+
+            int index = 0;
+
+            // then put them in the sequence in order
+            for (int t = 0; t < sizeT; t++)
+            {
+                for (int z = 0; z < sizeZ; z++)
+                {
+                    if (loadingFrame != null)
+                    {
+                        // cancel requested ?
+                        if (loadingFrame.isCancelRequested())
+                            return false;
+
+                        // notify progress to loader frame
+                        // (only if sufficient image loaded)
+                        if (numImage > 5)
+                            loadingFrame.setPosition(index);
+                    }
+
+                    final Future<IcyBufferedImage> future = futures.get(index);
+                    // release reference as soon as possible
+                    futures.set(index++, null);
+
+                    try
+                    {
+                        seq.setImage(t, z, future.get());
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // interrupted --> consider it as a cancel
+                        return false;
+                    }
+                    catch (ExecutionException e)
+                    {
+                        final Throwable cause = e.getCause();
+
+                        if (cause instanceof UnsupportedFormatException)
+                            throw (UnsupportedFormatException) cause;
+                        if (cause instanceof IOException)
+                            throw (IOException) cause;
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException) cause;
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+
+                        throw new IOException(cause);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            // cancel remaining tasks (interrupted loading)
+            for (Future<IcyBufferedImage> future : futures)
+                if (future != null)
+                    future.cancel(false);
+
+            // wait for running tasks before closing importers
+            processor.shutdownAndWait();
+            pool.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Pool of opened importers for a same file, used by parallel loading.<br>
+     * Each worker takes its own importer instance so decoding can be done concurrently.
+     */
+    static class ImporterPool
+    {
+        final SequenceFileImporter importer;
+        final String path;
+        final List<SequenceFileImporter> available;
+        final List<SequenceFileImporter> created;
+        boolean canCreate;
+
+        /**
+         * @param importer
+         *        the base importer (already opened on <code>path</code>)
+         */
+        public ImporterPool(SequenceFileImporter importer, String path)
+        {
+            super();
+
+            this.importer = importer;
+            this.path = path;
+            available = new ArrayList<SequenceFileImporter>();
+            created = new ArrayList<SequenceFileImporter>();
+            canCreate = true;
+
+            available.add(importer);
+        }
+
+        public SequenceFileImporter acquire() throws InterruptedException
+        {
+            synchronized (this)
+            {
+                if (!available.isEmpty())
+                    return available.remove(available.size() - 1);
+                // can't create importer --> wait for a free one
+                if (!canCreate)
+                {
+                    while (available.isEmpty())
+                        wait();
+
+                    return available.remove(available.size() - 1);
+                }
+            }
+
+            // open a new importer on the same file (outside lock as it can take sometime)
+            final SequenceFileImporter result = createImporter();
+
+            if (result != null)
+            {
+                synchronized (this)
+                {
+                    created.add(result);
+                }
+
+                return result;
+            }
+
+            synchronized (this)
+            {
+                canCreate = false;
+
+                while (available.isEmpty())
+                    wait();
+
+                return available.remove(available.size() - 1);
+            }
+        }
+
+        public synchronized void release(SequenceFileImporter imp)
+        {
+            available.add(imp);
+            notifyAll();
+        }
+
+        protected SequenceFileImporter createImporter()
+        {
+            try
+            {
+                final SequenceFileImporter result = importer.getClass().newInstance();
+
+                if (result.open(path, 0))
+                    return result;
+            }
+            catch (Exception e)
+            {
+                // importer cannot be instantiated or opened --> we will share existing ones
+            }
+
+            return null;
+        }
+
+        /**
+         * Close all importers created by the pool (base importer is not closed).
+         */
+        public synchronized void close()
+        {
+            for (SequenceFileImporter imp : created)
+            {
+                try
+                {
+                    imp.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
+            }
+
+            created.clear();
+            available.clear();
+        }
+    }
+
+    /**
+     * Open the specified serie of the image file as a {@link VirtualSequence}.<br>
+     * Images are not loaded here but fetched from the file when they are accessed, only
+     * <code>cacheSize</code> bytes of images are kept in memory.<br>
+     * The file stays opened until the sequence is closed.
+     * 
+     * @param path
+     *        image file to open.
+     * @param serie
+     *        Serie index to open (for multi serie sequence), set to 0 if unsure (default).
+     * @param cacheSize
+     *        maximum size (in bytes) of images kept in memory.
+     * @throws UnsupportedFormatException
+     *         if the file format is not supported
+     */
+    public static VirtualSequence loadVirtualSequence(String path, int serie, long cacheSize)
+            throws UnsupportedFormatException, IOException
+    {
+        final SequenceFileImporter importer = getSequenceFileImporter(path);
+
+        if ((importer == null) || !importer.open(path, 0))
+            throw new UnsupportedFormatException("Image file '" + path + "' is not supported !");
+
+        boolean done = false;
+
+        try
+        {
+            final VirtualSequence result = new VirtualSequence(importer, serie, cacheSize);
+
+            initSequenceName(result, path, serie, MetaDataUtil.getNumSerie(importer.getMetaData()) > 1);
+            done = true;
+
+            return result;
+        }
+        finally
+        {
+            // close importer on failure
+            if (!done)
+                importer.close();
+        }
+    }
+
+    /**
+     * Open the specified serie of the image file as a {@link VirtualSequence} using the default
+     * cache size.
+     * 
+     * @see #loadVirtualSequence(String, int, long)
+     */
+    public static VirtualSequence loadVirtualSequence(String path, int serie) throws UnsupportedFormatException,
+            IOException
+    {
+        return loadVirtualSequence(path, serie, VirtualSequence.DEFAULT_CACHE_SIZE);
+    }
+
     static Sequence createNewSequence(String path, OMEXMLMetadataImpl meta, int serie, boolean multiSerie)
     {
         // create a new sequence
         final Sequence result = new Sequence(OMEUtil.createOMEMetadata(meta, serie));
 
+        initSequenceName(result, path, serie, multiSerie);
+
+        return result;
+    }
+
+    static void initSequenceName(Sequence result, String path, int serie, boolean multiSerie)
+    {
         // default name
         final String name = FileUtil.getFileName(path, false);
 
@@ -1878,8 +2192,6 @@ public class Loader
 
         // set final filename
         result.setFilename(path);
-
-        return result;
     }
 
     static int[] selectSerie(final SequenceFileImporter importer, final String path, final OMEXMLMetadataImpl meta,
@@ -33,11 +33,14 @@ import icy.preferences.XMLPreferences;
 import icy.roi.ROI;
 import icy.roi.ROIEvent;
 import icy.roi.ROIListener;
+import icy.roi.ROIStatistics;
 import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
 import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.system.SystemUtil;
+import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
 import icy.type.collection.CollectionUtil;
 import icy.type.rectangle.Rectangle5D;
@@ -52,9 +55,10 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 
 import javax.swing.ActionMap;
@@ -83,7 +87,7 @@ import org.pushingpixels.substance.api.skin.SkinChangeListener;
  * @author Stephane
  */
 public class RoisPanel extends ExternalizablePanel implements ActiveSequenceListener, TextChangeListener,
-        ListSelectionListener, Runnable, PropertyChangeListener
+        ListSelectionListener, PropertyChangeListener
 {
     /**
      * 
@@ -178,8 +182,14 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
     final Runnable tableDataStructureRefresher;
     final Runnable tableDataRefresher;
     final Runnable tableSelectionRefresher;
-    final Thread roiInfoComputer;
-    final LinkedBlockingQueue<ROIInfo> roisToCompute;
+    // single worker for ROI informations computation
+    final Processor roiInfoComputer;
+    final Runnable roiInfoComputeTask;
+    // bounded helper pool for intensity statistics (planes processed in parallel)
+    final Processor roiStatisticsComputer;
+    // ROI informations waiting for computation (coalesce repeated requests)
+    final Set<ROIInfo> roisToCompute;
+    boolean roiInfoComputing;
     int columnCount;
 
     public RoisPanel()
@@ -391,10 +401,22 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
         tableSelectionModel.addListSelectionListener(this);
         tableSelectionModel.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
-        roisToCompute = new LinkedBlockingQueue<ROIInfo>();
-        roiInfoComputer = new Thread(this, "ROI properties calculator");
-        roiInfoComputer.setPriority(Thread.MIN_PRIORITY);
-        roiInfoComputer.start();
+        roisToCompute = new LinkedHashSet<ROIInfo>();
+        roiInfoComputing = false;
+        roiInfoComputer = new Processor(1);
+        roiInfoComputer.setDefaultThreadName("ROI properties calculator");
+        roiInfoComputer.setPriority(Processor.MIN_PRIORITY);
+        roiStatisticsComputer = new Processor(-1, Math.max(1, Math.min(SystemUtil.getAvailableProcessors() - 1, 4)),
+                Processor.MIN_PRIORITY);
+        roiStatisticsComputer.setDefaultThreadName("ROI statistics calculator");
+        roiInfoComputeTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                computeRoiInfos();
+            }
+        };
 
         // set shortcuts
         buildActionMap();
@@ -686,20 +708,105 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
         return null;
     }
 
-    @Override
-    public void run()
+    /**
+     * Compute waiting ROI informations until there is no more to compute.<br>
+     * All waiting ROI are taken at once so sequence data is read only once for all of them.
+     */
+    void computeRoiInfos()
     {
         while (true)
         {
+            final List<ROIInfo> infos;
+
+            synchronized (roisToCompute)
+            {
+                // done
+                if (roisToCompute.isEmpty())
+                {
+                    roiInfoComputing = false;
+                    return;
+                }
+
+                infos = new ArrayList<ROIInfo>(roisToCompute);
+                roisToCompute.clear();
+            }
+
+            computeRoiInfos(infos);
+        }
+    }
+
+    /**
+     * Compute the specified ROI informations.<br>
+     * Intensity informations of all ROI are computed in a single pass on sequence data.
+     */
+    void computeRoiInfos(List<ROIInfo> infos)
+    {
+        final List<ROIInfo> sequenceInfos = new ArrayList<ROIInfo>();
+        final List<ROI> sequenceRois = new ArrayList<ROI>();
+        final List<Integer> versions = new ArrayList<Integer>();
+
+        for (ROIInfo info : infos)
+        {
+            // removed in the meantime
+            if (info.getROI() == null)
+                continue;
+
+            final int version = info.getVersion();
+
             try
             {
-                roisToCompute.take().compute();
+                info.computeRoiInf();
+
+                if (info.isSequenceInfOutdated())
+                {
+                    sequenceInfos.add(info);
+                    sequenceRois.add(info.getROI());
+                    versions.add(Integer.valueOf(info.getVersion()));
+                }
             }
-            catch (InterruptedException e)
+            catch (Throwable e)
             {
-                // ignore
+                // we can have some exception here as this is an asynch process (just ignore)
+                if (e instanceof OutOfMemoryError)
+                    System.err.println("Cannot compute ROI infos: Not enought memory !");
+
+                // don't retry until the ROI changes
+                info.computeFailed(version);
             }
         }
+
+        if (!sequenceInfos.isEmpty())
+        {
+            try
+            {
+                final Sequence sequence = getSequence();
+                final Map<ROI, ROIStatistics> stats;
+
+                if (sequence != null)
+                    stats = ROIUtil.getStatistics(sequence, sequenceRois, false, roiStatisticsComputer);
+                else
+                    stats = null;
+
+                for (int i = 0; i < sequenceInfos.size(); i++)
+                    sequenceInfos.get(i).setSequenceInf(sequence, (stats != null) ? stats.get(sequenceRois.get(i))
+                            : null, versions.get(i).intValue());
+            }
+            catch (Throwable e)
+            {
+                // we can have some exception here as this is an asynch process (just ignore)
+                if (e instanceof OutOfMemoryError)
+                    System.err.println("Cannot compute ROI infos: Not enought memory !");
+
+                // don't retry until the ROI changes
+                for (int i = 0; i < sequenceInfos.size(); i++)
+                    sequenceInfos.get(i).computeFailed(versions.get(i).intValue());
+            }
+        }
+
+        for (ROIInfo info : infos)
+            info.computeDone();
+
+        refreshTableData();
     }
 
     /**
@@ -907,7 +1014,13 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
             final Set<ROI> newRoiSet = new HashSet<ROI>(newRois);
             for (int i = oldRois.size() - 1; i >= 0; i--)
                 if (!newRoiSet.contains(oldRois.get(i)))
-                    roisToCompute.remove(rois.remove(i));
+                {
+                    // cancel pending computation
+                    synchronized (roisToCompute)
+                    {
+                        roisToCompute.remove(rois.remove(i));
+                    }
+                }
 
             // add ROI which has been added (use HashSet for fast contains())
             final Set<ROI> oldRoiSet = new HashSet<ROI>(oldRois);
@@ -1283,8 +1396,13 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
         // cached
         private double numberContourPoints;
         private double numberPoints;
-        private boolean sequenceInfInvalid;
-        private boolean roiInfInvalid;
+        private volatile boolean sequenceInfInvalid;
+        private volatile boolean roiInfInvalid;
+        // incremented on each invalidation so we can discard outdated computation
+        private volatile int version;
+        // version for which computation failed (not requested again until invalidated)
+        private volatile int failedVersion;
+        private volatile boolean computeRequested;
 
         public ROIInfo(ROI roi)
         {
@@ -1296,8 +1414,11 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
             intensityInfos = new IntensityInfo[0];
             sequenceInfInvalid = true;
             roiInfInvalid = true;
+            version = 0;
+            failedVersion = -1;
+            computeRequested = false;
 
-            requestCompute();
+            // computation is requested when informations are displayed
 
             roi.addListener(this);
         }
@@ -1313,86 +1434,136 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
          */
         public void compute()
         {
-            try
-            {
-                if (roiInfInvalid)
-                {
-                    // refresh points number calculation
-                    numberContourPoints = MathUtil.roundSignificant(roi.getNumberOfContourPoints(), 5, true);
-                    numberPoints = MathUtil.roundSignificant(roi.getNumberOfPoints(), 5, true);
+            final List<ROIInfo> infos = new ArrayList<ROIInfo>(1);
 
-                    roiInfInvalid = false;
-                }
+            infos.add(this);
+            computeRoiInfos(infos);
+        }
 
-                if (sequenceInfInvalid)
-                {
-                    final Sequence sequence = getSequence();
+        /**
+         * Recompute ROI points informations if needed
+         */
+        void computeRoiInf()
+        {
+            if (roiInfInvalid)
+            {
+                final int v = version;
 
-                    if (sequence != null)
-                    {
-                        // calculate intensity infos
-                        final Rectangle5D bounds = roi.getBounds5D().createIntersection(sequence.getBounds5D());
+                // refresh points number calculation (cached in ROI)
+                final double contourPoints = MathUtil.roundSignificant(roi.getNumberOfContourPoints(), 5, true);
+                final double points = MathUtil.roundSignificant(roi.getNumberOfPoints(), 5, true);
 
-                        final int minC = (int) bounds.getC();
-                        final int sizeC = (int) bounds.getSizeC();
+                // not outdated ?
+                if (v == version)
+                {
+                    numberContourPoints = contourPoints;
+                    numberPoints = points;
+                    roiInfInvalid = false;
+                }
+            }
+        }
 
-                        final double[] sd = new double[sizeC];
-                        final IntensityInfo[] iis = new IntensityInfo[sizeC];
+        /**
+         * Set intensity informations from computed statistics.
+         */
+        void setSequenceInf(Sequence sequence, ROIStatistics stats, int v)
+        {
+            // ROI changed in the meantime --> result is outdated
+            if (v != version)
+                return;
 
-                        for (int c = 0; c < sizeC; c++)
-                        {
-                            final IntensityInfo ii = ROIUtil.getIntensityInfo(sequence, roi, -1, -1, minC + c);
+            if ((sequence != null) && (stats != null))
+            {
+                final Rectangle5D bounds = roi.getBounds5D().createIntersection(sequence.getBounds5D());
 
-                            if (ii != null)
-                            {
-                                // round values
-                                ii.minIntensity = MathUtil.roundSignificant(ii.minIntensity, 5, true);
-                                ii.meanIntensity = MathUtil.roundSignificant(ii.meanIntensity, 5, true);
-                                ii.maxIntensity = MathUtil.roundSignificant(ii.maxIntensity, 5, true);
+                final int minC = (int) bounds.getC();
+                final int sizeC = Math.max(0, (int) bounds.getSizeC());
 
-                                iis[c] = ii;
-                            }
-                            else
-                                iis[c] = new IntensityInfo();
+                final double[] sd = new double[sizeC];
+                final IntensityInfo[] iis = new IntensityInfo[sizeC];
 
-                            sd[c] = ROIUtil.getStandardDeviation(sequence, roi, -1, -1, minC + c);
-                        }
+                for (int c = 0; c < sizeC; c++)
+                {
+                    final IntensityInfo ii = stats.getIntensityInfo(minC + c);
 
-                        intensityInfos = iis;
-                        standardDeviation = sd;
-                    }
-                    else
-                    {
-                        intensityInfos = new IntensityInfo[0];
-                        standardDeviation = new double[0];
-                    }
+                    // round values
+                    ii.minIntensity = MathUtil.roundSignificant(ii.minIntensity, 5, true);
+                    ii.meanIntensity = MathUtil.roundSignificant(ii.meanIntensity, 5, true);
+                    ii.maxIntensity = MathUtil.roundSignificant(ii.maxIntensity, 5, true);
 
-                    sequenceInfInvalid = false;
+                    iis[c] = ii;
+                    sd[c] = stats.getStandardDeviation(minC + c);
                 }
+
+                intensityInfos = iis;
+                standardDeviation = sd;
             }
-            catch (Throwable e)
+            else
             {
-                // we can have some exception here as this is an asynch process (just ignore)
-                if (e instanceof OutOfMemoryError)
-                    System.err.println("Cannot compute ROI infos: Not enought memory !");
+                intensityInfos = new IntensityInfo[0];
+                standardDeviation = new double[0];
             }
 
+            sequenceInfInvalid = false;
+        }
+
+        /**
+         * Computation done (new computation can be requested if informations are still invalid).
+         */
+        void computeDone()
+        {
+            computeRequested = false;
+        }
+
+        /**
+         * Computation failed for the specified version.
+         */
+        void computeFailed(int v)
+        {
+            failedVersion = v;
+        }
+
+        int getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * Invalidate informations (computation will be requested on next display).
+         */
+        void invalidate(boolean roiInf)
+        {
+            version++;
+            sequenceInfInvalid = true;
+            if (roiInf)
+                roiInfInvalid = true;
+            computeRequested = false;
+
+            // repaint visible rows which will request computation
             refreshTableData();
         }
 
         void requestCompute()
         {
-            if (!roisToCompute.contains(this))
+            // already requested or failed for current version
+            if (computeRequested || (failedVersion == version))
+                return;
+
+            computeRequested = true;
+
+            synchronized (roisToCompute)
             {
-                try
-                {
-                    roisToCompute.put(this);
-                }
-                catch (InterruptedException e)
-                {
-                    // ignore
-                }
+                // already waiting for computation
+                if (!roisToCompute.add(this))
+                    return;
+                // worker already running
+                if (roiInfoComputing)
+                    return;
+
+                roiInfoComputing = true;
             }
+
+            roiInfoComputer.submit(true, roiInfoComputeTask);
         }
 
         public ROI getROI()
@@ -1766,9 +1937,7 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
                     if (roi.isSelected())
                         roiControlPanel.roiChanged(event);
 
-                    sequenceInfInvalid = true;
-                    roiInfInvalid = true;
-                    requestCompute();
+                    invalidate(true);
                     break;
 
                 case SELECTION_CHANGED:
@@ -1787,8 +1956,7 @@ public class RoisPanel extends ExternalizablePanel implements ActiveSequenceList
 
         public void sequenceDataChanged()
         {
-            sequenceInfInvalid = true;
-            requestCompute();
+            invalidate(false);
         }
 
         @Override
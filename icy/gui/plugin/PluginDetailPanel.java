@@ -223,7 +223,7 @@ public class PluginDetailPanel extends IcyFrame implements HyperlinkListener
 
         if (!plugin.isAllLoaded())
         {
-            ThreadUtil.bgRun(new Runnable()
+            ThreadUtil.bgRunIO(new Runnable()
             {
                 @Override
                 public void run()
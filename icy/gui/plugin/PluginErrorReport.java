@@ -79,7 +79,7 @@ public class PluginErrorReport
             return;
 
         // always do that in background process
-        ThreadUtil.bgRun(new Runnable()
+        ThreadUtil.bgRunIO(new Runnable()
         {
             @Override
             public void run()
@@ -147,7 +147,7 @@ public class PluginUpdateFrame extends ActionFrame
             close();
 
         // process plugins update in background
-        ThreadUtil.bgRun(new Runnable()
+        ThreadUtil.bgRunIO(new Runnable()
         {
             @Override
             public void run()
@@ -32,6 +32,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.util.EventListener;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -52,6 +53,24 @@ import javax.swing.event.ChangeListener;
  */
 public class TNavigationPanel extends JPanel
 {
+    /**
+     * Listener notified during playback about frames which are going to be displayed soon so they
+     * can be prepared (loaded, rendered...) in background.
+     */
+    public static interface PrefetchListener extends EventListener
+    {
+        /**
+         * Prepare the specified T positions (given in display order).<br>
+         * Previous prefetch request is not anymore relevant.
+         */
+        public void prefetch(int[] positions);
+
+        /**
+         * Cancel pending prefetch (playback stopped).
+         */
+        public void cancelPrefetch();
+    }
+
     /**
      * 
      */
@@ -59,6 +78,13 @@ public class TNavigationPanel extends JPanel
 
     private static final int DEFAULT_FRAME_RATE = 15;
 
+    /**
+     * playback duration (in second) covered by prefetch
+     */
+    private static final double PREFETCH_TIME = 0.5d;
+    private static final int MIN_PREFETCH = 2;
+    private static final int MAX_PREFETCH = 16;
+
     final JSlider slider;
     final JLabel leftLabel;
     final JLabel rightLabel;
@@ -69,10 +95,17 @@ public class TNavigationPanel extends JPanel
 
     final Timer timer;
 
+    /**
+     * internal
+     */
+    boolean playStep;
+
     public TNavigationPanel()
     {
         super(true);
 
+        playStep = false;
+
         slider = new IcySlider(SwingConstants.HORIZONTAL);
         slider.setFocusable(false);
         slider.setMaximum(0);
@@ -93,6 +126,10 @@ public class TNavigationPanel extends JPanel
                         validate();
                     }
                 });
+
+                // user changed position while playing --> prefetch from the new position
+                if (!playStep && isPlaying())
+                    firePrefetch();
             }
         });
         ComponentUtil.setFixedHeight(slider, 22);
@@ -104,7 +141,15 @@ public class TNavigationPanel extends JPanel
             {
                 final int oldT = getTPosition();
 
-                incTPosition();
+                playStep = true;
+                try
+                {
+                    incTPosition();
+                }
+                finally
+                {
+                    playStep = false;
+                }
 
                 // end reached ?
                 if (oldT == getTPosition())
@@ -120,8 +165,13 @@ public class TNavigationPanel extends JPanel
                         play.setVisible(true);
                         // and reset position
                         resetTPosition();
+                        firePrefetchCancel();
+                        return;
                     }
                 }
+
+                // prepare next frames
+                firePrefetch();
             }
         });
 
@@ -315,6 +365,9 @@ public class TNavigationPanel extends JPanel
         timer.start();
         play.setVisible(false);
         stop.setVisible(true);
+
+        // prepare first frames
+        firePrefetch();
     }
 
     /**
@@ -327,6 +380,81 @@ public class TNavigationPanel extends JPanel
         timer.stop();
         stop.setVisible(false);
         play.setVisible(true);
+
+        firePrefetchCancel();
+    }
+
+    /**
+     * Returns the number of frames to prefetch during playback (depends from the frame rate).
+     */
+    public int getPrefetchCount()
+    {
+        final int result = (int) Math.ceil(getFrameRate() * PREFETCH_TIME);
+
+        return Math.max(MIN_PREFETCH, Math.min(MAX_PREFETCH, result));
+    }
+
+    /**
+     * Returns the T positions which will be displayed after the current one during playback (loop
+     * mode is taken in account).
+     * 
+     * @param count
+     *        maximum number of position to return
+     */
+    public int[] getNextPositions(int count)
+    {
+        final int min = slider.getMinimum();
+        final int max = slider.getMaximum();
+        final int len = max - min + 1;
+        final int cur = getTPosition();
+        final int num;
+
+        if (isRepeat())
+            num = Math.min(count, len - 1);
+        else
+            num = Math.min(count, max - cur);
+
+        final int[] result = new int[Math.max(0, num)];
+
+        for (int i = 0; i < result.length; i++)
+            result[i] = min + (((cur - min) + i + 1) % len);
+
+        return result;
+    }
+
+    /**
+     * Add a prefetch listener (notified during playback).
+     */
+    public void addPrefetchListener(PrefetchListener l)
+    {
+        listenerList.add(PrefetchListener.class, l);
+    }
+
+    /**
+     * Remove a prefetch listener.
+     */
+    public void removePrefetchListener(PrefetchListener l)
+    {
+        listenerList.remove(PrefetchListener.class, l);
+    }
+
+    protected void firePrefetch()
+    {
+        final PrefetchListener[] listeners = listenerList.getListeners(PrefetchListener.class);
+
+        if (listeners.length == 0)
+            return;
+
+        final int[] positions = getNextPositions(getPrefetchCount());
+
+        for (PrefetchListener l : listeners)
+            l.prefetch(positions);
+    }
+
+    protected void firePrefetchCancel()
+    {
+        for (PrefetchListener l : listenerList.getListeners(PrefetchListener.class))
+            l.cancelPrefetch();
     }
 
     /**
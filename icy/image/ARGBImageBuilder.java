@@ -22,34 +22,52 @@ import icy.image.lut.LUT;
 import icy.math.Scaler;
 import icy.system.SystemUtil;
 import icy.system.thread.Processor;
-import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * ARGB image builder.<br>
+ * The image is divided in blocks which are built in parallel (the calling thread builds the last
+ * block itself), completion is waited with a latch so there is no busy waiting and each worker
+ * thread uses its own scratch buffer.<br>
+ * Build time of each frame is recorded so rendering latency can be monitored.
+ * 
  * @author Stephane
  */
 class ARGBImageBuilder
 {
     private static final int BLOC_SIZE = 512 * 512;
 
+    /**
+     * weight of the last build time in the average build time
+     */
+    private static final double AVERAGE_WEIGHT = 0.1d;
+
     class BlockBuilder implements Runnable
     {
         /**
          * cached variables
          */
-        private IcyBufferedImage image;
-        private LUT lut;
-        private int dest[];
-        private int offset;
-        private int length;
-        private int numChannel;
-
-        BlockBuilder(IcyBufferedImage image, LUT lut, int[] dest, int offset, int length)
+        private final IcyBufferedImage image;
+        private final LUT lut;
+        private final int dest[];
+        private final int offset;
+        private final int length;
+        private final int numChannel;
+        private final ARGBLookupTable table;
+        private final CountDownLatch latch;
+        // block is built only once (by a worker or by the caller)
+        private final AtomicBoolean started;
+
+        BlockBuilder(IcyBufferedImage image, LUT lut, int[] dest, int offset, int length, ARGBLookupTable table,
+                CountDownLatch latch)
         {
             super();
 
@@ -62,22 +80,34 @@ class ARGBImageBuilder
             this.dest = dest;
             this.offset = offset;
             this.length = length;
+            this.table = table;
+            this.latch = latch;
+            started = new AtomicBoolean(false);
 
             numChannel = image.getSizeC();
 
-            if (lut.getNumChannel() != numChannel)
+            if (this.lut.getNumChannel() != numChannel)
                 throw new IllegalArgumentException("ARGBImageBuilder.prepare(...): LUT.numChannel != IMAGE.numChannel");
         }
 
         @Override
         public void run()
         {
-            int[][] componentValues = null;
+            // already built (or being built) by another thread
+            if (!started.compareAndSet(false, true))
+                return;
 
             try
             {
+                // fast path (direct lookup)
+                if (table != null)
+                {
+                    table.fillARGBBuffer(image, dest, offset, length);
+                    return;
+                }
+
                 // get working buffer
-                componentValues = requestBuffer(numChannel);
+                final int[][] componentValues = getBuffer(numChannel);
 
                 if (componentValues != null)
                 {
@@ -95,21 +125,27 @@ class ARGBImageBuilder
             }
             catch (Exception e)
             {
-                System.out.println(".");
                 // we just ignore any exceptions here as we can be in asynch process
             }
             finally
             {
-                releaseBuffer(componentValues);
+                // block done
+                latch.countDown();
             }
         }
-
     }
 
     // processor
     private final Processor processor;
-    // data buffer pool
-    private final List<int[][]> buffers;
+    // scratch buffer (one per thread)
+    private final ThreadLocal<int[][]> buffers;
+    // fused lookup tables
+    private final Map<LUT, ARGBLookupTable> tables;
+
+    // timing informations (in ns)
+    private long lastBuildTime;
+    private double averageBuildTime;
+    private long buildCount;
 
     /**
      * 
@@ -118,6 +154,7 @@ class ARGBImageBuilder
     {
         super();
 
+        // calling thread also builds a block so we can use one less thread
         if (SystemUtil.is32bits())
             processor = new Processor(Math.max(1, Math.min(SystemUtil.getAvailableProcessors() - 1, 4)));
         else
@@ -126,7 +163,12 @@ class ARGBImageBuilder
         processor.setDefaultThreadName("ARGB Image builder");
         processor.setPriority(Processor.NORM_PRIORITY - 1);
 
-        buffers = new ArrayList<int[][]>();
+        buffers = new ThreadLocal<int[][]>();
+        tables = new WeakHashMap<LUT, ARGBLookupTable>();
+
+        lastBuildTime = 0L;
+        averageBuildTime = 0d;
+        buildCount = 0L;
     }
 
     private BufferedImage getImage(IcyBufferedImage in, BufferedImage out)
@@ -137,98 +179,171 @@ class ARGBImageBuilder
         return new BufferedImage(in.getWidth(), in.getHeight(), BufferedImage.TYPE_INT_ARGB);
     }
 
-    int[][] requestBuffer(int numChannel)
+    /**
+     * Returns the scratch buffer of the current thread for the specified number of channel.
+     */
+    int[][] getBuffer(int numChannel)
     {
         if (numChannel <= 0)
             return null;
 
-        int index;
+        int[][] result = buffers.get();
 
-        synchronized (buffers)
+        if ((result == null) || (result.length != numChannel))
         {
-            for (index = 0; index < buffers.size(); index++)
-                if (buffers.get(index).length == numChannel)
-                    return buffers.remove(index);
+            // allocate a new one
+            result = new int[numChannel][BLOC_SIZE];
+            buffers.set(result);
         }
 
-        // allocate a new one
-        return new int[numChannel][BLOC_SIZE];
+        return result;
     }
 
-    void releaseBuffer(int[][] buffer)
+    /**
+     * Returns the up to date lookup table for the specified LUT and data type.
+     */
+    private ARGBLookupTable getLookupTable(LUT lut, DataType dataType)
     {
-        if (buffer == null)
-            return;
+        ARGBLookupTable result;
 
-        synchronized (buffers)
+        synchronized (tables)
         {
-            buffers.add(buffer);
+            result = tables.get(lut);
+
+            if ((result == null) || (result.getDataType() != dataType))
+            {
+                // release previous one
+                if (result != null)
+                    lut.removeListener(result);
+
+                result = new ARGBLookupTable(lut, dataType);
+                tables.put(lut, result);
+            }
         }
+
+        result.update(lut);
+
+        return result;
     }
 
     public BufferedImage buildARGBImage(IcyBufferedImage image, LUT lut, BufferedImage out)
     {
+        final long start = System.nanoTime();
         // planar size
         final int imageSize = image.getSizeX() * image.getSizeY();
-        final int step = imageSize / BLOC_SIZE;
+        final int numBloc = (imageSize + (BLOC_SIZE - 1)) / BLOC_SIZE;
         final BufferedImage result = getImage(image, out);
         // destination buffer
         final int[] dest = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
-        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        final CountDownLatch latch = new CountDownLatch(numBloc);
 
-        int offset = 0;
         try
         {
-            for (int i = 0; i < step; i++)
+            final LUT l = (lut == null) ? image.getLUT() : lut;
+            final DataType dataType = image.getDataType_();
+            final ARGBLookupTable table;
+
+            // 8 / 16 bits data --> use fused lookup table
+            if (ARGBLookupTable.isSupported(dataType) && (l.getNumChannel() == image.getSizeC()))
+                table = getLookupTable(l, dataType);
+            else
+                table = null;
+
+            // create all blocks first so an incompatible LUT is detected before any submission
+            final BlockBuilder[] blocks = new BlockBuilder[numBloc];
+            int offset = 0;
+
+            for (int i = 0; i < numBloc; i++)
             {
-                // build bloc
-                futures.add(addBloc(image, lut, dest, offset, BLOC_SIZE));
-                offset += BLOC_SIZE;
+                final int length = Math.min(BLOC_SIZE, imageSize - offset);
+
+                blocks[i] = new BlockBuilder(image, l, dest, offset, length, table, latch);
+                offset += length;
             }
 
-            // last bloc
-            if (offset < imageSize)
-                futures.add(addBloc(image, lut, dest, offset, imageSize - offset));
+            // submit blocks to workers
+            for (int i = 0; i < numBloc - 1; i++)
+                submit(blocks[i]);
+            // and build the last one ourself
+            if (numBloc > 0)
+                blocks[numBloc - 1].run();
+            // then build blocks not yet started, a block rejected by the processor (silently when
+            // Icy is exiting) would never count down the latch otherwise
+            for (int i = numBloc - 2; i >= 0; i--)
+                blocks[i].run();
 
             // wait until image is built
-            waitCompletion(futures);
+            latch.await();
         }
         catch (IllegalArgumentException e)
         {
             // image has changed in the meantime, just ignore
         }
+        catch (InterruptedException e)
+        {
+            // restore interrupted state
+            Thread.currentThread().interrupt();
+        }
+
+        buildDone(System.nanoTime() - start);
 
         return result;
     }
 
-    private Future<?> addBloc(IcyBufferedImage image, LUT lut, int dest[], int offset, int length)
+    private void submit(BlockBuilder block)
     {
-        final BlockBuilder builder = new BlockBuilder(image, lut, dest, offset, length);
-        Future<?> result = processor.submit(builder);
-
-        // not accepted ? retry until it is accepted...
-        while (result == null)
+        try
+        {
+            if (!processor.isShutdown())
+            {
+                processor.execute(block);
+                return;
+            }
+        }
+        catch (RejectedExecutionException e)
         {
-            // wait a bit
-            ThreadUtil.sleep(1);
-            // and retry task submission
-            result = processor.submit(builder);
+            // build it ourself
         }
 
-        return result;
+        // processor not available (exiting) --> build block in current thread
+        block.run();
     }
 
-    private void waitCompletion(List<Future<?>> futures)
+    private synchronized void buildDone(long time)
     {
-        while (!futures.isEmpty())
-        {
-            final int last = futures.size() - 1;
+        lastBuildTime = time;
 
-            if (futures.get(last).isDone())
-                futures.remove(last);
-            else
-                ThreadUtil.sleep(1);
-        }
+        if (buildCount == 0)
+            averageBuildTime = time;
+        else
+            averageBuildTime += (time - averageBuildTime) * AVERAGE_WEIGHT;
+
+        buildCount++;
+    }
+
+    /**
+     * Returns the build time (in ms) of the last ARGB image.
+     */
+    public synchronized double getLastBuildTime()
+    {
+        return lastBuildTime / 1000000d;
+    }
+
+    /**
+     * Returns the average build time (in ms) of ARGB image (exponential moving average so recent
+     * builds have more weight).
+     */
+    public synchronized double getAverageBuildTime()
+    {
+        return averageBuildTime / 1000000d;
+    }
+
+    /**
+     * Returns the number of ARGB image built.
+     */
+    public synchronized long getBuildCount()
+    {
+        return buildCount;
     }
 
     /**
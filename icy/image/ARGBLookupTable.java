@@ -0,0 +1,333 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import icy.image.colormap.IcyColorMap;
+import icy.image.colormap.IcyColorMap.IcyColorMapType;
+import icy.image.lut.LUT;
+import icy.image.lut.LUTEvent;
+import icy.image.lut.LUTEvent.LUTEventType;
+import icy.image.lut.LUTListener;
+import icy.math.Scaler;
+import icy.type.DataType;
+
+/**
+ * Fused scaler + colormap lookup table for 8 and 16 bits data.<br>
+ * For each channel we directly map a raw data value to its premultiplied RGB contribution and its
+ * alpha value so ARGB rendering is just a table lookup plus an add per channel.<br>
+ * A channel table is rebuilt when its scaler bounds or its colormap change.<br>
+ * Internal use only.
+ */
+class ARGBLookupTable implements LUTListener
+{
+    /**
+     * packed premultiplied RGB (21 bits per component so we can sum many channels)
+     */
+    private static final int RGB_SHIFT = 21;
+    private static final long RGB_MASK = (1L << RGB_SHIFT) - 1;
+
+    /**
+     * Immutable table of a single channel.
+     */
+    private static class ChannelTable
+    {
+        final long[] rgb;
+        final float[] alpha;
+        final boolean enabled;
+        final boolean alphaType;
+        final double[] scalerBounds;
+
+        ChannelTable(long[] rgb, float[] alpha, boolean enabled, boolean alphaType, double[] scalerBounds)
+        {
+            super();
+
+            this.rgb = rgb;
+            this.alpha = alpha;
+            this.enabled = enabled;
+            this.alphaType = alphaType;
+            this.scalerBounds = scalerBounds;
+        }
+    }
+
+    /**
+     * Per thread working buffers
+     */
+    private static class Buffers
+    {
+        final long[] rgb;
+        final float[] alpha;
+        final float[] maxLocalAlpha;
+
+        Buffers(int size)
+        {
+            super();
+
+            rgb = new long[size];
+            alpha = new float[size];
+            maxLocalAlpha = new float[size];
+        }
+    }
+
+    private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>();
+
+    private final DataType dataType;
+    private final boolean signed;
+    private final int size;
+    private volatile ChannelTable[] channels;
+    private boolean[] colormapDirty;
+
+    /**
+     * Returns <code>true</code> if a lookup table can be used for the specified data type.
+     */
+    static boolean isSupported(DataType dataType)
+    {
+        switch (dataType.getJavaType())
+        {
+            case BYTE:
+            case SHORT:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    ARGBLookupTable(LUT lut, DataType dataType)
+    {
+        super();
+
+        this.dataType = dataType;
+        signed = dataType.isSigned();
+        size = (dataType.getJavaType() == DataType.BYTE) ? (1 << 8) : (1 << 16);
+        channels = new ChannelTable[lut.getNumChannel()];
+        colormapDirty = new boolean[channels.length];
+
+        // we want to know about colormap changes
+        lut.addListener(this);
+    }
+
+    /**
+     * Returns the data type this table has been built for.
+     */
+    DataType getDataType()
+    {
+        return dataType;
+    }
+
+    /**
+     * Rebuild channel tables which are not anymore up to date.
+     */
+    synchronized void update(LUT lut)
+    {
+        final int numChannel = lut.getNumChannel();
+        final Scaler[] scalers = lut.getScalers();
+        final ChannelTable[] result;
+
+        if (channels.length != numChannel)
+        {
+            result = new ChannelTable[numChannel];
+            colormapDirty = new boolean[numChannel];
+        }
+        else
+            result = channels.clone();
+
+        boolean changed = result != channels;
+
+        for (int c = 0; c < numChannel; c++)
+        {
+            final ChannelTable table = result[c];
+            final double[] bounds = getBounds(scalers[c]);
+
+            if ((table == null) || colormapDirty[c] || !equals(table.scalerBounds, bounds))
+            {
+                result[c] = build(scalers[c], lut.getColorSpace().getColorMap(c), bounds);
+                colormapDirty[c] = false;
+                changed = true;
+            }
+        }
+
+        if (changed)
+            channels = result;
+    }
+
+    private static double[] getBounds(Scaler scaler)
+    {
+        return new double[] {scaler.getLeftIn(), scaler.getRightIn(), scaler.getLeftOut(), scaler.getRightOut()};
+    }
+
+    private static boolean equals(double[] a1, double[] a2)
+    {
+        for (int i = 0; i < a1.length; i++)
+            if (Double.compare(a1[i], a2[i]) != 0)
+                return false;
+
+        return true;
+    }
+
+    private ChannelTable build(Scaler scaler, IcyColorMap colorMap, double[] scalerBounds)
+    {
+        final int[] indexes = new int[size];
+
+        // use the scaler on all possible values so we get exactly the same result as direct scaling
+        if (dataType.getJavaType() == DataType.BYTE)
+        {
+            final byte[] values = new byte[size];
+
+            for (int v = 0; v < size; v++)
+                values[v] = (byte) v;
+
+            scaler.scale(values, 0, indexes, 0, size, signed);
+        }
+        else
+        {
+            final short[] values = new short[size];
+
+            for (int v = 0; v < size; v++)
+                values[v] = (short) v;
+
+            scaler.scale(values, 0, indexes, 0, size, signed);
+        }
+
+        final int[][] premulRGB = colorMap.getPremulRGB();
+        final float[] mapf = colorMap.alpha.mapf;
+        final long[] rgb = new long[size];
+        final float[] alpha = new float[size];
+
+        for (int v = 0; v < size; v++)
+        {
+            final int index = Math.max(0, Math.min(IcyColorMap.MAX_LEVEL, indexes[v]));
+            final int[] premul = premulRGB[index];
+
+            rgb[v] = premul[0] | ((long) premul[1] << RGB_SHIFT) | ((long) premul[2] << (RGB_SHIFT * 2));
+            alpha[v] = mapf[index];
+        }
+
+        return new ChannelTable(rgb, alpha, colorMap.isEnabled(), colorMap.getType() == IcyColorMapType.ALPHA,
+                scalerBounds);
+    }
+
+    /**
+     * Fill the ARGB destination buffer from the specified image data.
+     */
+    void fillARGBBuffer(IcyBufferedImage image, int[] dest, int offset, int length)
+    {
+        final ChannelTable[] tables = channels;
+        Buffers buf = buffers.get();
+
+        if ((buf == null) || (buf.rgb.length < length))
+        {
+            buf = new Buffers(length);
+            buffers.set(buf);
+        }
+
+        final long[] rgbAcc = buf.rgb;
+        final float[] alphaAcc = buf.alpha;
+        final float[] maxLocalAlphaAcc = buf.maxLocalAlpha;
+
+        for (int i = 0; i < length; i++)
+        {
+            rgbAcc[i] = 0L;
+            alphaAcc[i] = 1f;
+            maxLocalAlphaAcc[i] = 0f;
+        }
+
+        // accumulate channels contribution
+        for (int c = 0; c < tables.length; c++)
+        {
+            final ChannelTable table = tables[c];
+
+            if (!table.enabled)
+                continue;
+
+            final long[] rgb = table.rgb;
+            final float[] alpha = table.alpha;
+            final float[] alphaDest = table.alphaType ? alphaAcc : maxLocalAlphaAcc;
+            final boolean keepMax = !table.alphaType;
+
+            if (dataType.getJavaType() == DataType.BYTE)
+            {
+                final byte[] data = (byte[]) image.getDataXY(c);
+
+                for (int i = 0; i < length; i++)
+                {
+                    final int v = data[offset + i] & 0xFF;
+                    final float a = alpha[v];
+
+                    rgbAcc[i] += rgb[v];
+                    if (!keepMax || (a > alphaDest[i]))
+                        alphaDest[i] = a;
+                }
+            }
+            else
+            {
+                final short[] data = (short[]) image.getDataXY(c);
+
+                for (int i = 0; i < length; i++)
+                {
+                    final int v = data[offset + i] & 0xFFFF;
+                    final float a = alpha[v];
+
+                    rgbAcc[i] += rgb[v];
+                    if (!keepMax || (a > alphaDest[i]))
+                        alphaDest[i] = a;
+                }
+            }
+        }
+
+        // normalize and pack result (same as IcyColorSpace.toRGBUnnorm(..))
+        for (int i = 0; i < length; i++)
+        {
+            final long rgb = rgbAcc[i];
+            int b = (int) (rgb & RGB_MASK);
+            int g = (int) ((rgb >> RGB_SHIFT) & RGB_MASK);
+            int r = (int) ((rgb >> (RGB_SHIFT * 2)) & RGB_MASK);
+
+            // final alpha = alpha component value * maximum local alpha value
+            final int a = (int) (alphaAcc[i] * maxLocalAlphaAcc[i] * IcyColorMap.MAX_LEVEL);
+
+            if (a != 0)
+            {
+                final int inv = (1 << (IcyColorMap.COLORMAP_BITS + 8)) / a;
+
+                // normalize on alpha
+                b = (b * inv) >> 8;
+                g = (g * inv) >> 8;
+                r = (r * inv) >> 8;
+            }
+
+            dest[offset + i] = ((b > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : b)
+                    | (((g > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : g) << 8)
+                    | (((r > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : r) << 16) | (a << 24);
+        }
+    }
+
+    @Override
+    public synchronized void lutChanged(LUTEvent event)
+    {
+        // scaler changes are detected from scaler bounds
+        if (event.getType() != LUTEventType.COLORMAP_CHANGED)
+            return;
+
+        final int component = event.getComponent();
+
+        for (int c = 0; c < colormapDirty.length; c++)
+            if ((component == -1) || (component == c))
+                colormapDirty[c] = true;
+    }
+}
@@ -975,15 +975,8 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      */
     private double[] getCalculatedChannelBounds(int channel)
     {
-        final DataType dataType = getDataType_();
-
-        final boolean signed = dataType.isSigned();
-        final Object data = getDataXY(channel);
-
-        final double min = ArrayMath.min(data, signed);
-        final double max = ArrayMath.max(data, signed);
-
-        return new double[] {min, max};
+        // single pass min / max calculation
+        return ArrayMath.minMax(getDataXY(channel), getDataType_().isSigned());
     }
 
     /**
@@ -1831,6 +1824,39 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         dataChanged();
     }
 
+    /**
+     * Set 1D array data ([XY]) of the specified region for specified component.<br>
+     * <code>values</code> contains the region data line by line (region.width * region.height
+     * elements).<br>
+     * Only the modified region is reported in the data changed event so listeners (as canvas) can
+     * process it incrementally.
+     */
+    public void setDataXY(int c, Rectangle region, Object values)
+    {
+        final int sizeX = getSizeX();
+        final Rectangle adjRegion = region.intersection(new Rectangle(sizeX, getSizeY()));
+
+        // nothing to copy
+        if (adjRegion.isEmpty())
+            return;
+
+        final boolean signed = getDataType_().isSigned();
+        final Object dst = getDataXY(c);
+        final int w = adjRegion.width;
+        int srcOffset = (adjRegion.x - region.x) + ((adjRegion.y - region.y) * region.width);
+        int dstOffset = adjRegion.x + (adjRegion.y * sizeX);
+
+        for (int y = 0; y < adjRegion.height; y++)
+        {
+            ArrayUtil.arrayToArray(values, srcOffset, dst, dstOffset, w, signed);
+            srcOffset += region.width;
+            dstOffset += sizeX;
+        }
+
+        // notify data changed
+        dataChanged(adjRegion);
+    }
+
     /**
      * Set 1D array data [C] of specified (x, y) position
      */
@@ -2580,7 +2606,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2602,7 +2628,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2619,7 +2645,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2636,7 +2662,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2653,7 +2679,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2674,7 +2700,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         Array1DUtil.setValue(getDataXY(c), getOffset(x, y), getDataType_(), value);
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2695,7 +2721,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferByte) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2725,7 +2751,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             (((DataBufferShort) db).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2746,7 +2772,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferInt) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2767,7 +2793,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferFloat) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2788,7 +2814,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferDouble) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1));
     }
 
     /**
@@ -2857,8 +2883,8 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             dstOffset += dstSizeX;
         }
 
-        // notify data changed
-        dataChanged();
+        // notify data changed (only the modified region)
+        dataChanged(new Rectangle(adjDstRect.x, adjDstRect.y, w, h));
     }
 
     /**
@@ -3505,6 +3531,15 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         updater.changed(new IcyBufferedImageEvent(this, IcyBufferedImageEventType.DATA_CHANGED));
     }
 
+    /**
+     * notify image data has changed in the specified region only (<code>null</code> means the
+     * whole image)
+     */
+    public void dataChanged(Rectangle region)
+    {
+        updater.changed(new IcyBufferedImageEvent(this, region));
+    }
+
     /**
      * notify image colorMap has changed
      */
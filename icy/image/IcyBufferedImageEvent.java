@@ -19,11 +19,14 @@
 package icy.image;
 
 import icy.common.EventHierarchicalChecker;
+import icy.common.EventHierarchicalGroup;
+
+import java.awt.Rectangle;
 
 /**
  * @author Stephane
  */
-public class IcyBufferedImageEvent implements EventHierarchicalChecker
+public class IcyBufferedImageEvent implements EventHierarchicalGroup
 {
     public enum IcyBufferedImageEventType
     {
@@ -33,6 +36,7 @@ public class IcyBufferedImageEvent implements EventHierarchicalChecker
     private final IcyBufferedImage image;
     private final IcyBufferedImageEventType type;
     private final int param;
+    private Rectangle region;
 
     /**
      * @param image
@@ -55,6 +59,22 @@ public class IcyBufferedImageEvent implements EventHierarchicalChecker
         this.image = image;
         this.type = type;
         this.param = param;
+        region = null;
+    }
+
+    /**
+     * Create a DATA_CHANGED event for the specified image region.
+     * 
+     * @param image
+     * @param region
+     *        modified region (<code>null</code> means the whole image)
+     */
+    public IcyBufferedImageEvent(IcyBufferedImage image, Rectangle region)
+    {
+        this(image, IcyBufferedImageEventType.DATA_CHANGED, -1);
+
+        if (region != null)
+            this.region = new Rectangle(region);
     }
 
     /**
@@ -81,6 +101,22 @@ public class IcyBufferedImageEvent implements EventHierarchicalChecker
         return param;
     }
 
+    /**
+     * Returns the modified region for DATA_CHANGED event (<code>null</code> means the whole image
+     * has changed).
+     */
+    public Rectangle getRegion()
+    {
+        return region;
+    }
+
+    @Override
+    public Object getEventGroupKey()
+    {
+        // only events with same type can be collapsed
+        return type;
+    }
+
     @Override
     public boolean isEventRedundantWith(EventHierarchicalChecker event)
     {
@@ -88,6 +124,17 @@ public class IcyBufferedImageEvent implements EventHierarchicalChecker
         {
             final IcyBufferedImageEvent e = (IcyBufferedImageEvent) event;
 
+            if ((type == IcyBufferedImageEventType.DATA_CHANGED) && (e.getType() == type))
+            {
+                // join modified regions
+                if ((region != null) && (e.getRegion() != null))
+                    region = region.union(e.getRegion());
+                else
+                    region = null;
+
+                return true;
+            }
+
             return (type == e.getType()) && ((param == -1) || (param == e.getParam()));
         }
 
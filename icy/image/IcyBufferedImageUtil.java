@@ -186,6 +186,24 @@ public class IcyBufferedImageUtil
         return getARGBImage(source, null, dest);
     }
 
+    /**
+     * Returns the build time (in ms) of the last ARGB image built with
+     * {@link #getARGBImage(IcyBufferedImage, LUT, BufferedImage)}.
+     */
+    public static double getLastARGBBuildTime()
+    {
+        return argbImageBuilder.getLastBuildTime();
+    }
+
+    /**
+     * Returns the average build time (in ms) of ARGB images built with
+     * {@link #getARGBImage(IcyBufferedImage, LUT, BufferedImage)} (recent builds have more weight).
+     */
+    public static double getAverageARGBBuildTime()
+    {
+        return argbImageBuilder.getAverageBuildTime();
+    }
+
     /**
      * Convert the current {@link IcyBufferedImage} into a ARGB {@link BufferedImage}.
      * 
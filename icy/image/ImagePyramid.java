@@ -0,0 +1,216 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import icy.image.IcyBufferedImageEvent.IcyBufferedImageEventType;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+/**
+ * Multi resolution pyramid of an {@link IcyBufferedImage}.<br>
+ * Level 0 is the source image, each next level is half the size of the previous one (2x2 pixels
+ * average). Levels are lazily built on request and invalidated as soon as the source image data
+ * changes.
+ */
+public class ImagePyramid implements IcyBufferedImageListener
+{
+    /**
+     * Minimum size (in pixel) of the lowest resolution level
+     */
+    public static final int MIN_LEVEL_SIZE = 16;
+
+    protected final IcyBufferedImage image;
+    protected final IcyBufferedImage[] levels;
+
+    public ImagePyramid(IcyBufferedImage image)
+    {
+        super();
+
+        this.image = image;
+
+        levels = new IcyBufferedImage[getMaxLevel(image.getSizeX(), image.getSizeY()) + 1];
+        levels[0] = image;
+
+        // we want to be informed about data change
+        image.addListener(this);
+    }
+
+    /**
+     * Returns the maximum level available for an image of specified size.
+     */
+    public static int getMaxLevel(int sizeX, int sizeY)
+    {
+        int result = 0;
+        int size = Math.min(sizeX, sizeY);
+
+        while (size >= (MIN_LEVEL_SIZE * 2))
+        {
+            size /= 2;
+            result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the level which best fit the specified display scale factor (that is the lowest
+     * resolution level which is still at least as precise as the display).
+     */
+    public static int getLevelForScale(double scale)
+    {
+        if ((scale <= 0d) || (scale >= 1d))
+            return 0;
+
+        return (int) Math.floor(Math.log(1d / scale) / Math.log(2d));
+    }
+
+    /**
+     * Returns the source image.
+     */
+    public IcyBufferedImage getSourceImage()
+    {
+        return image;
+    }
+
+    /**
+     * Returns the maximum level available.
+     */
+    public int getMaxLevel()
+    {
+        return levels.length - 1;
+    }
+
+    /**
+     * Returns the image at the specified level (level 0 is the source image).<br>
+     * Level is clamped to {@link #getMaxLevel()} and built if needed.
+     */
+    public synchronized IcyBufferedImage getLevel(int level)
+    {
+        final int l = Math.max(0, Math.min(level, getMaxLevel()));
+
+        if (levels[l] == null)
+            levels[l] = downscale(getLevel(l - 1));
+
+        return levels[l];
+    }
+
+    /**
+     * Returns <code>true</code> if the specified level is already built.
+     */
+    public synchronized boolean isLevelBuilt(int level)
+    {
+        if ((level < 0) || (level > getMaxLevel()))
+            return false;
+
+        return levels[level] != null;
+    }
+
+    /**
+     * Invalidate all built levels (except source image).
+     */
+    public synchronized void invalidate()
+    {
+        for (int l = 1; l < levels.length; l++)
+            levels[l] = null;
+    }
+
+    /**
+     * Release resources (the pyramid should not be used anymore after this call).
+     */
+    public void release()
+    {
+        image.removeListener(this);
+        invalidate();
+    }
+
+    /**
+     * Returns an estimation of the memory size (in bytes) of all levels (source image excluded).
+     */
+    public long getEstimatedSize()
+    {
+        // geometric serie 1/4 + 1/16 + ... ~ 1/3
+        return ((long) image.getSizeX() * (long) image.getSizeY() * (long) image.getSizeC() * (long) image
+                .getDataType_().getSize()) / 3;
+    }
+
+    /**
+     * Build a half size image of the source image (2x2 pixels average).
+     */
+    public static IcyBufferedImage downscale(IcyBufferedImage source)
+    {
+        final int srcSizeX = source.getSizeX();
+        final int srcSizeY = source.getSizeY();
+        final int sizeX = Math.max(1, (srcSizeX + 1) / 2);
+        final int sizeY = Math.max(1, (srcSizeY + 1) / 2);
+        final int sizeC = source.getSizeC();
+        final DataType dataType = source.getDataType_();
+        final boolean signed = dataType.isSigned();
+
+        final IcyBufferedImage result = new IcyBufferedImage(sizeX, sizeY, sizeC, dataType);
+        // work line by line to limit memory usage
+        final double[] line0 = new double[srcSizeX];
+        final double[] line1 = new double[srcSizeX];
+        final double[] out = new double[sizeX];
+
+        result.beginUpdate();
+        try
+        {
+            for (int c = 0; c < sizeC; c++)
+            {
+                final Object src = source.getDataXY(c);
+                final Object dst = result.getDataXY(c);
+
+                for (int y = 0; y < sizeY; y++)
+                {
+                    final int y0 = y * 2;
+                    final int y1 = Math.min(y0 + 1, srcSizeY - 1);
+
+                    Array1DUtil.arrayToDoubleArray(src, y0 * srcSizeX, line0, 0, srcSizeX, signed);
+                    Array1DUtil.arrayToDoubleArray(src, y1 * srcSizeX, line1, 0, srcSizeX, signed);
+
+                    for (int x = 0; x < sizeX; x++)
+                    {
+                        final int x0 = x * 2;
+                        final int x1 = Math.min(x0 + 1, srcSizeX - 1);
+
+                        out[x] = (line0[x0] + line0[x1] + line1[x0] + line1[x1]) / 4d;
+                    }
+
+                    Array1DUtil.doubleArrayToSafeArray(out, 0, dst, y * sizeX, sizeX, signed);
+                }
+            }
+
+            result.dataChanged();
+        }
+        finally
+        {
+            result.endUpdate();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void imageChanged(IcyBufferedImageEvent e)
+    {
+        // source data changed --> levels are not anymore valid
+        if (e.getType() == IcyBufferedImageEventType.DATA_CHANGED)
+            invalidate();
+    }
+}
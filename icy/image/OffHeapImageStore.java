@@ -0,0 +1,714 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import icy.image.colormodel.IcyColorModel;
+import icy.system.SystemUtil;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Off heap storage for image data.<br>
+ * Image data is stored outside the java heap, either in direct {@link ByteBuffer} or in a
+ * temporary memory mapped file, so it doesn't count in the java heap usage and doesn't have to be
+ * scanned by the garbage collector.<br>
+ * As {@link IcyBufferedImage} requires java arrays for its data, images are copied in the store
+ * with {@link #put(Object, IcyBufferedImage)} and a new heap image is rebuilt with
+ * {@link #get(Object)} (which is much faster than decoding it again from the image file).<br>
+ * Released buffers are reused for images of same size, contiguous released parts of the mapped
+ * file are merged to store images of another size.<br>
+ * Allocated memory is limited (see {@link #setMaxSize(long)}): least recently used images are
+ * evicted when the limit is reached and direct buffers fall back to a temporary mapped file when
+ * direct memory is exhausted.
+ */
+public class OffHeapImageStore<K>
+{
+    /**
+     * Default maximum size (in bytes) of off heap memory allocated by the store
+     */
+    public static final long DEFAULT_MAX_SIZE = SystemUtil.getJavaMaxMemory();
+
+    protected static class Slot
+    {
+        final ByteBuffer buffer;
+        final int sizeX;
+        final int sizeY;
+        final int sizeC;
+        final DataType dataType;
+        final IcyColorModel colorModel;
+
+        // number of threads currently copying data from / to the buffer
+        int pins;
+        // removed from the store, buffer is released when not anymore pinned
+        boolean removed;
+
+        Slot(ByteBuffer buffer, int sizeX, int sizeY, int sizeC, DataType dataType, IcyColorModel colorModel)
+        {
+            super();
+
+            this.buffer = buffer;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeC = sizeC;
+            this.dataType = dataType;
+            this.colorModel = colorModel;
+
+            pins = 0;
+            removed = false;
+        }
+    }
+
+    protected final boolean mapped;
+    // access ordered so first entry is the least recently used one
+    protected final LinkedHashMap<K, Slot> slots;
+    // released buffers by capacity
+    protected final Map<Integer, List<ByteBuffer>> freeBuffers;
+    // file offset of mapped buffers
+    protected final Map<ByteBuffer, Long> mappedOffsets;
+
+    // mapped file (also used as fallback when direct memory is exhausted)
+    protected File file;
+    protected RandomAccessFile raf;
+    protected FileChannel channel;
+    protected long fileSize;
+
+    protected long usedSize;
+    protected long allocatedSize;
+    protected long maxSize;
+    protected boolean closed;
+
+    /**
+     * Create a new off heap image store.
+     * 
+     * @param mapped
+     *        if <code>true</code> image data is stored in a temporary memory mapped file, otherwise
+     *        direct byte buffers are used.
+     * @param maxSize
+     *        maximum size (in bytes) of off heap memory allocated by the store
+     */
+    public OffHeapImageStore(boolean mapped, long maxSize)
+    {
+        super();
+
+        this.mapped = mapped;
+        this.maxSize = maxSize;
+        slots = new LinkedHashMap<K, Slot>(16, 0.75f, true);
+        freeBuffers = new HashMap<Integer, List<ByteBuffer>>();
+        mappedOffsets = new IdentityHashMap<ByteBuffer, Long>();
+
+        file = null;
+        raf = null;
+        channel = null;
+        fileSize = 0L;
+        usedSize = 0L;
+        allocatedSize = 0L;
+        closed = false;
+    }
+
+    /**
+     * Create a new off heap image store limited to {@link #DEFAULT_MAX_SIZE} bytes.
+     * 
+     * @param mapped
+     *        if <code>true</code> image data is stored in a temporary memory mapped file, otherwise
+     *        direct byte buffers are used.
+     */
+    public OffHeapImageStore(boolean mapped)
+    {
+        this(mapped, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Returns <code>true</code> if the store uses a memory mapped file.
+     */
+    public boolean isMapped()
+    {
+        return mapped;
+    }
+
+    /**
+     * Returns the maximum size (in bytes) of off heap memory allocated by the store.
+     */
+    public synchronized long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum size (in bytes) of off heap memory allocated by the store.<br>
+     * When the limit is reached the least recently used images are evicted from the store.
+     */
+    public synchronized void setMaxSize(long value)
+    {
+        maxSize = value;
+    }
+
+    /**
+     * Returns the size (in bytes) of image data currently stored.
+     */
+    public synchronized long getUsedSize()
+    {
+        return usedSize;
+    }
+
+    /**
+     * Returns the size (in bytes) of off heap memory allocated by the store.<br>
+     * Released parts of the mapped file are not counted as they are reused for any image size.
+     */
+    public synchronized long getAllocatedSize()
+    {
+        return allocatedSize;
+    }
+
+    /**
+     * Returns the number of stored images.
+     */
+    public synchronized int getCount()
+    {
+        return slots.size();
+    }
+
+    /**
+     * Returns <code>true</code> if an image is stored for the specified key.
+     */
+    public synchronized boolean contains(K key)
+    {
+        return slots.containsKey(key);
+    }
+
+    /**
+     * Copy the image data in the store (replace previous image stored with the same key).<br>
+     * Least recently used images are evicted if needed to stay in the size limit.<br>
+     * Returns <code>false</code> if the image cannot be stored (too large or no more space
+     * available), in which case any previous image stored with the same key is removed.
+     * 
+     * @throws IOException
+     *         if the mapped file cannot be extended
+     */
+    public boolean put(K key, IcyBufferedImage image) throws IOException
+    {
+        final int sizeX = image.getSizeX();
+        final int sizeY = image.getSizeY();
+        final int sizeC = image.getSizeC();
+        final DataType dataType = image.getDataType_();
+        final int planeSize = sizeX * sizeY;
+        final long size = (long) sizeX * (long) sizeY * (long) sizeC * (long) dataType.getSize();
+
+        // a buffer cannot exceed 2 GB
+        if (size > Integer.MAX_VALUE)
+        {
+            remove(key);
+            return false;
+        }
+
+        final int capacity = (int) size;
+        final Slot slot;
+
+        synchronized (this)
+        {
+            if (closed)
+                return false;
+
+            // previous image is removed anyway, we don't want to keep an outdated version
+            release(slots.remove(key));
+
+            final ByteBuffer buffer = allocate(capacity);
+
+            if (buffer == null)
+                return false;
+
+            slot = new Slot(buffer, sizeX, sizeY, sizeC, dataType, IcyColorModel.createInstance(
+                    image.getIcyColorModel(), true, false));
+            // pinned during the copy, not yet visible
+            slot.pins = 1;
+        }
+
+        boolean done = false;
+
+        try
+        {
+            // copy data (outside lock)
+            final ByteBuffer bb = slot.buffer.duplicate();
+            bb.order(ByteOrder.nativeOrder());
+            bb.clear();
+
+            for (int c = 0; c < sizeC; c++)
+                put(bb, image.getDataXY(c), dataType, planeSize);
+
+            done = true;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (done && !closed)
+                {
+                    // publish the slot now the data is ready (and release any concurrent one)
+                    release(slots.remove(key));
+                    slots.put(key, slot);
+                    usedSize += capacity;
+                }
+                else
+                    slot.removed = true;
+
+                unpin(slot);
+            }
+        }
+
+        return done;
+    }
+
+    /**
+     * Returns a new heap image built from the data stored for the specified key (<code>null</code>
+     * if no image is stored for this key).
+     */
+    public IcyBufferedImage get(K key)
+    {
+        final Slot slot;
+
+        synchronized (this)
+        {
+            slot = slots.get(key);
+
+            if (slot == null)
+                return null;
+
+            // buffer can't be reused while we copy data from it
+            slot.pins++;
+        }
+
+        try
+        {
+            final int planeSize = slot.sizeX * slot.sizeY;
+            final Object[] data = new Object[slot.sizeC];
+            final ByteBuffer bb = slot.buffer.duplicate();
+            bb.order(ByteOrder.nativeOrder());
+            bb.clear();
+
+            for (int c = 0; c < slot.sizeC; c++)
+            {
+                data[c] = Array1DUtil.createArray(slot.dataType, planeSize);
+                get(bb, data[c], slot.dataType, planeSize);
+            }
+
+            // restore colormaps
+            return new IcyBufferedImage(IcyColorModel.createInstance(slot.colorModel, true, false), data, slot.sizeX,
+                    slot.sizeY, true);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                unpin(slot);
+            }
+        }
+    }
+
+    /**
+     * Remove the image stored for the specified key.
+     */
+    public synchronized boolean remove(K key)
+    {
+        final Slot slot = slots.remove(key);
+
+        release(slot);
+
+        return slot != null;
+    }
+
+    /**
+     * Remove all stored images (allocated memory is kept for reuse).
+     */
+    public synchronized void clear()
+    {
+        for (Slot slot : slots.values())
+            release(slot);
+
+        slots.clear();
+    }
+
+    /**
+     * Release all resources (the store cannot be used anymore after this call).
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        // buffers still pinned are simply dropped once the copy is done
+        slots.clear();
+        freeBuffers.clear();
+        mappedOffsets.clear();
+        usedSize = 0L;
+        allocatedSize = 0L;
+
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+                raf.close();
+            }
+            catch (IOException e)
+            {
+                // ignore
+            }
+
+            channel = null;
+            raf = null;
+        }
+
+        // mapped buffers can still exist until they are garbage collected, so we may not be able to
+        // delete the file right now
+        if ((file != null) && !file.delete())
+            file.deleteOnExit();
+
+        file = null;
+    }
+
+    /**
+     * Allocate a buffer of the specified capacity, evicting least recently used images if needed
+     * to stay in the size limit.<br>
+     * Returns <code>null</code> if there is no more space available.
+     */
+    protected ByteBuffer allocate(int capacity) throws IOException
+    {
+        // try to reuse a released direct buffer first (already counted)
+        ByteBuffer result = getFreeBuffer(capacity, false);
+
+        if (result != null)
+            return result;
+        // evicting images won't help
+        if (capacity > maxSize)
+            return null;
+
+        // evict least recently used images until we have enough space (evicted direct buffers are
+        // dropped and evicted mapped buffers are not counted anymore so each eviction frees space)
+        while ((allocatedSize + capacity) > maxSize)
+        {
+            if (!evictOne())
+                return null;
+
+            // evicted buffer can be reused ?
+            result = getFreeBuffer(capacity, false);
+            if (result != null)
+                return result;
+
+            // drop direct buffers of different size (memory is reclaimed by the GC)
+            if (!mapped)
+                dropFreeDirectBuffers();
+        }
+
+        // then try to reuse a released mapped buffer
+        result = getFreeBuffer(capacity, true);
+
+        if ((result == null) && !mapped)
+        {
+            try
+            {
+                result = ByteBuffer.allocateDirect(capacity);
+            }
+            catch (OutOfMemoryError e)
+            {
+                // direct memory exhausted --> fall back to disk (mapped file)
+            }
+        }
+
+        if (result == null)
+            result = map(capacity);
+
+        allocatedSize += capacity;
+
+        return result;
+    }
+
+    /**
+     * Map a new buffer of the specified capacity in the file.<br>
+     * The first contiguous released part of the file large enough is used, else the file is
+     * extended.
+     */
+    protected ByteBuffer map(int capacity) throws IOException
+    {
+        if (channel == null)
+        {
+            file = File.createTempFile("icy", ".store");
+            file.deleteOnExit();
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+        }
+
+        // released mapped buffers by file offset
+        final TreeMap<Long, ByteBuffer> free = new TreeMap<Long, ByteBuffer>();
+
+        for (List<ByteBuffer> buffers : freeBuffers.values())
+            for (ByteBuffer buffer : buffers)
+                if (buffer instanceof MappedByteBuffer)
+                    free.put(mappedOffsets.get(buffer), buffer);
+
+        // search first run of contiguous released buffers large enough
+        long start = 0L;
+        long end = -1L;
+
+        for (Map.Entry<Long, ByteBuffer> entry : free.entrySet())
+        {
+            final long offset = entry.getKey().longValue();
+
+            if (offset != end)
+                start = offset;
+            end = offset + entry.getValue().capacity();
+
+            if ((end - start) >= capacity)
+                break;
+        }
+
+        // no released run large enough and not at end of file --> extend the file
+        if (((end - start) < capacity) && (end != fileSize))
+            start = fileSize;
+
+        // take released buffers of the used part
+        for (Map.Entry<Long, ByteBuffer> entry : free.tailMap(Long.valueOf(start)).entrySet())
+        {
+            final long offset = entry.getKey().longValue();
+
+            if (offset >= (start + capacity))
+                break;
+
+            final ByteBuffer buffer = entry.getValue();
+            final long bufferEnd = offset + buffer.capacity();
+
+            // ByteBuffer.equals() compares content so remove by identity
+            for (Iterator<ByteBuffer> it = freeBuffers.get(Integer.valueOf(buffer.capacity())).iterator(); it
+                    .hasNext();)
+            {
+                if (it.next() == buffer)
+                {
+                    it.remove();
+                    break;
+                }
+            }
+            mappedOffsets.remove(buffer);
+
+            // keep the remaining part released
+            if (bufferEnd > (start + capacity))
+                addFreeBuffer(map(start + capacity, (int) (bufferEnd - (start + capacity))));
+        }
+
+        return map(start, capacity);
+    }
+
+    protected ByteBuffer map(long offset, int capacity) throws IOException
+    {
+        final ByteBuffer result = channel.map(FileChannel.MapMode.READ_WRITE, offset, capacity);
+
+        mappedOffsets.put(result, Long.valueOf(offset));
+        fileSize = Math.max(fileSize, offset + capacity);
+
+        return result;
+    }
+
+    /**
+     * Returns a released buffer of the specified capacity (<code>null</code> if none).
+     * 
+     * @param mappedBuffer
+     *        if <code>true</code> a buffer of the mapped file is returned, otherwise a direct
+     *        buffer.
+     */
+    protected ByteBuffer getFreeBuffer(int capacity, boolean mappedBuffer)
+    {
+        final List<ByteBuffer> buffers = freeBuffers.get(Integer.valueOf(capacity));
+
+        if (buffers != null)
+        {
+            for (int i = buffers.size() - 1; i >= 0; i--)
+                if ((buffers.get(i) instanceof MappedByteBuffer) == mappedBuffer)
+                    return buffers.remove(i);
+        }
+
+        return null;
+    }
+
+    /**
+     * Drop released direct buffers so their memory can be reclaimed.
+     */
+    protected void dropFreeDirectBuffers()
+    {
+        for (List<ByteBuffer> buffers : freeBuffers.values())
+        {
+            for (Iterator<ByteBuffer> it = buffers.iterator(); it.hasNext();)
+            {
+                final ByteBuffer buffer = it.next();
+
+                // mapped buffers are part of the file and can't be reclaimed
+                if (!(buffer instanceof MappedByteBuffer))
+                {
+                    allocatedSize -= buffer.capacity();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used image which is not currently read.<br>
+     * Returns <code>false</code> if no image can be evicted.
+     */
+    protected boolean evictOne()
+    {
+        for (Iterator<Slot> it = slots.values().iterator(); it.hasNext();)
+        {
+            final Slot slot = it.next();
+
+            if (slot.pins == 0)
+            {
+                it.remove();
+                release(slot);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    protected void release(Slot slot)
+    {
+        if ((slot == null) || slot.removed)
+            return;
+
+        usedSize -= slot.buffer.capacity();
+        slot.removed = true;
+
+        // buffer is released once not anymore pinned
+        if (slot.pins == 0)
+            freeBuffer(slot.buffer);
+    }
+
+    protected void unpin(Slot slot)
+    {
+        slot.pins--;
+
+        if ((slot.pins == 0) && slot.removed)
+            freeBuffer(slot.buffer);
+    }
+
+    protected void freeBuffer(ByteBuffer buffer)
+    {
+        // store closed --> just drop it
+        if (closed)
+            return;
+
+        // released part of the file can be reused for any size (see map(int))
+        if (buffer instanceof MappedByteBuffer)
+            allocatedSize -= buffer.capacity();
+
+        addFreeBuffer(buffer);
+    }
+
+    protected void addFreeBuffer(ByteBuffer buffer)
+    {
+        final Integer capacity = Integer.valueOf(buffer.capacity());
+        List<ByteBuffer> buffers = freeBuffers.get(capacity);
+
+        if (buffers == null)
+        {
+            buffers = new ArrayList<ByteBuffer>();
+            freeBuffers.put(capacity, buffers);
+        }
+
+        buffers.add(buffer);
+    }
+
+    protected static void put(ByteBuffer bb, Object array, DataType dataType, int len)
+    {
+        switch (dataType.getJavaType())
+        {
+            case BYTE:
+                bb.put((byte[]) array, 0, len);
+                break;
+
+            case SHORT:
+                bb.asShortBuffer().put((short[]) array, 0, len);
+                bb.position(bb.position() + (len * 2));
+                break;
+
+            case INT:
+                bb.asIntBuffer().put((int[]) array, 0, len);
+                bb.position(bb.position() + (len * 4));
+                break;
+
+            case FLOAT:
+                bb.asFloatBuffer().put((float[]) array, 0, len);
+                bb.position(bb.position() + (len * 4));
+                break;
+
+            case DOUBLE:
+                bb.asDoubleBuffer().put((double[]) array, 0, len);
+                bb.position(bb.position() + (len * 8));
+                break;
+
+            default:
+                throw new IllegalArgumentException("OffHeapImageStore: unsupported data type " + dataType);
+        }
+    }
+
+    protected static void get(ByteBuffer bb, Object array, DataType dataType, int len)
+    {
+        switch (dataType.getJavaType())
+        {
+            case BYTE:
+                bb.get((byte[]) array, 0, len);
+                break;
+
+            case SHORT:
+                bb.asShortBuffer().get((short[]) array, 0, len);
+                bb.position(bb.position() + (len * 2));
+                break;
+
+            case INT:
+                bb.asIntBuffer().get((int[]) array, 0, len);
+                bb.position(bb.position() + (len * 4));
+                break;
+
+            case FLOAT:
+                bb.asFloatBuffer().get((float[]) array, 0, len);
+                bb.position(bb.position() + (len * 4));
+                break;
+
+            case DOUBLE:
+                bb.asDoubleBuffer().get((double[]) array, 0, len);
+                bb.position(bb.position() + (len * 8));
+                break;
+
+            default:
+                throw new IllegalArgumentException("OffHeapImageStore: unsupported data type " + dataType);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import icy.util.ColorUtil;
 
 import java.awt.color.ColorSpace;
 import java.awt.image.ColorModel;
+import java.util.Arrays;
 
 import javax.swing.event.EventListenerList;
 
@@ -454,20 +455,202 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
     {
         final int numComponents = getNumComponents();
 
-        if (numComponents > 0)
+        if (numComponents <= 0)
+            return;
+
+        // get enabled colormaps
+        final IcyColorMap[] maps = new IcyColorMap[numComponents];
+        final int[][] srcs = new int[numComponents][];
+        int numEnabled = 0;
+        boolean hasAlpha = false;
+
+        for (int comp = 0; comp < numComponents; comp++)
         {
-            final int[] input = new int[numComponents];
+            final IcyColorMap cm = toRGBmaps[comp];
 
-            for (int i = 0; i < length; i++)
+            if (cm.isEnabled())
             {
-                // get data value
-                for (int comp = 0; comp < numComponents; comp++)
-                    input[comp] = unnormSrc[comp][i];
+                maps[numEnabled] = cm;
+                srcs[numEnabled] = unnormSrc[comp];
+                numEnabled++;
+                hasAlpha |= (cm.getType() == IcyColorMapType.ALPHA);
+            }
+        }
 
-                // convert to RGBA
-                dest[offset + i] = toRGBUnnorm(input);
+        // use specialized implementation for 1 to 4 channels without alpha channel
+        if (!hasAlpha)
+        {
+            switch (numEnabled)
+            {
+                case 0:
+                    // nothing visible
+                    Arrays.fill(dest, offset, offset + length, 0);
+                    return;
+
+                case 1:
+                    fillARGBBuffer1(maps[0], srcs[0], dest, offset, length);
+                    return;
+
+                case 2:
+                    fillARGBBuffer2(maps, srcs, dest, offset, length);
+                    return;
+
+                case 3:
+                    fillARGBBuffer3(maps, srcs, dest, offset, length);
+                    return;
+
+                case 4:
+                    fillARGBBuffer4(maps, srcs, dest, offset, length);
+                    return;
             }
         }
+
+        // generic implementation
+        final int[] input = new int[numComponents];
+
+        for (int i = 0; i < length; i++)
+        {
+            // get data value
+            for (int comp = 0; comp < numComponents; comp++)
+                input[comp] = unnormSrc[comp][i];
+
+            // convert to RGBA
+            dest[offset + i] = toRGBUnnorm(input);
+        }
+    }
+
+    /**
+     * Returns ARGB value from premultiplied RGB components and alpha (same as
+     * {@link #toRGBUnnorm(int[])} final step).
+     */
+    private static int toARGB(int b, int g, int r, float alpha)
+    {
+        final int a = (int) (alpha * IcyColorMap.MAX_LEVEL);
+
+        if (a != 0)
+        {
+            final int inv = (1 << (IcyColorMap.COLORMAP_BITS + 8)) / a;
+
+            // normalize on alpha
+            b = (b * inv) >> 8;
+            g = (g * inv) >> 8;
+            r = (r * inv) >> 8;
+        }
+
+        return ((b > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : b)
+                | (((g > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : g) << 8)
+                | (((r > IcyColorMap.MAX_LEVEL) ? IcyColorMap.MAX_LEVEL : r) << 16) | (a << 24);
+    }
+
+    /**
+     * Single channel (gray or single color) : direct lookup.
+     */
+    private static void fillARGBBuffer1(IcyColorMap map, int[] src, int[] dest, int offset, int length)
+    {
+        final int[][] premul = map.getPremulRGB();
+        final float[] alpha = map.alpha.mapf;
+        final int[] argb = new int[IcyColorMap.SIZE];
+
+        // build direct ARGB lookup table
+        for (int i = 0; i < IcyColorMap.SIZE; i++)
+            argb[i] = toARGB(premul[i][0], premul[i][1], premul[i][2], alpha[i]);
+
+        for (int i = 0; i < length; i++)
+            dest[offset + i] = argb[src[i]];
+    }
+
+    private static void fillARGBBuffer2(IcyColorMap[] maps, int[][] srcs, int[] dest, int offset, int length)
+    {
+        final int[][] premul0 = maps[0].getPremulRGB();
+        final int[][] premul1 = maps[1].getPremulRGB();
+        final float[] alpha0 = maps[0].alpha.mapf;
+        final float[] alpha1 = maps[1].alpha.mapf;
+        final int[] src0 = srcs[0];
+        final int[] src1 = srcs[1];
+
+        for (int i = 0; i < length; i++)
+        {
+            final int v0 = src0[i];
+            final int v1 = src1[i];
+            final int[] p0 = premul0[v0];
+            final int[] p1 = premul1[v1];
+
+            float a = alpha0[v0];
+            if (alpha1[v1] > a)
+                a = alpha1[v1];
+
+            dest[offset + i] = toARGB(p0[0] + p1[0], p0[1] + p1[1], p0[2] + p1[2], a);
+        }
+    }
+
+    private static void fillARGBBuffer3(IcyColorMap[] maps, int[][] srcs, int[] dest, int offset, int length)
+    {
+        final int[][] premul0 = maps[0].getPremulRGB();
+        final int[][] premul1 = maps[1].getPremulRGB();
+        final int[][] premul2 = maps[2].getPremulRGB();
+        final float[] alpha0 = maps[0].alpha.mapf;
+        final float[] alpha1 = maps[1].alpha.mapf;
+        final float[] alpha2 = maps[2].alpha.mapf;
+        final int[] src0 = srcs[0];
+        final int[] src1 = srcs[1];
+        final int[] src2 = srcs[2];
+
+        for (int i = 0; i < length; i++)
+        {
+            final int v0 = src0[i];
+            final int v1 = src1[i];
+            final int v2 = src2[i];
+            final int[] p0 = premul0[v0];
+            final int[] p1 = premul1[v1];
+            final int[] p2 = premul2[v2];
+
+            float a = alpha0[v0];
+            if (alpha1[v1] > a)
+                a = alpha1[v1];
+            if (alpha2[v2] > a)
+                a = alpha2[v2];
+
+            dest[offset + i] = toARGB(p0[0] + p1[0] + p2[0], p0[1] + p1[1] + p2[1], p0[2] + p1[2] + p2[2], a);
+        }
+    }
+
+    private static void fillARGBBuffer4(IcyColorMap[] maps, int[][] srcs, int[] dest, int offset, int length)
+    {
+        final int[][] premul0 = maps[0].getPremulRGB();
+        final int[][] premul1 = maps[1].getPremulRGB();
+        final int[][] premul2 = maps[2].getPremulRGB();
+        final int[][] premul3 = maps[3].getPremulRGB();
+        final float[] alpha0 = maps[0].alpha.mapf;
+        final float[] alpha1 = maps[1].alpha.mapf;
+        final float[] alpha2 = maps[2].alpha.mapf;
+        final float[] alpha3 = maps[3].alpha.mapf;
+        final int[] src0 = srcs[0];
+        final int[] src1 = srcs[1];
+        final int[] src2 = srcs[2];
+        final int[] src3 = srcs[3];
+
+        for (int i = 0; i < length; i++)
+        {
+            final int v0 = src0[i];
+            final int v1 = src1[i];
+            final int v2 = src2[i];
+            final int v3 = src3[i];
+            final int[] p0 = premul0[v0];
+            final int[] p1 = premul1[v1];
+            final int[] p2 = premul2[v2];
+            final int[] p3 = premul3[v3];
+
+            float a = alpha0[v0];
+            if (alpha1[v1] > a)
+                a = alpha1[v1];
+            if (alpha2[v2] > a)
+                a = alpha2[v2];
+            if (alpha3[v3] > a)
+                a = alpha3[v3];
+
+            dest[offset + i] = toARGB(p0[0] + p1[0] + p2[0] + p3[0], p0[1] + p1[1] + p2[1] + p3[1], p0[2] + p1[2]
+                    + p2[2] + p3[2], a);
+        }
     }
 
     /**
@@ -494,20 +677,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
         }
 
         if (numComponents > 0)
-        {
-            final int size = unnormSrc[0].length;
-            final int[] input = new int[numComponents];
-
-            for (int i = 0; i < size; i++)
-            {
-                // get data value
-                for (int comp = 0; comp < numComponents; comp++)
-                    input[comp] = unnormSrc[comp][i];
-
-                // convert to RGBA
-                dest[i] = toRGBUnnorm(input);
-            }
-        }
+            fillARGBBuffer(unnormSrc, dest, 0, unnormSrc[0].length);
     }
 
     /**
@@ -2369,6 +2369,251 @@ public class ArrayMath
         return max;
     }
 
+    /**
+     * Find the minimum and maximum values of a generic array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(Object array, boolean signed)
+    {
+        switch (ArrayUtil.getDataType(array))
+        {
+            case BYTE:
+                return minMax((byte[]) array, signed);
+            case SHORT:
+                return minMax((short[]) array, signed);
+            case INT:
+                return minMax((int[]) array, signed);
+            case LONG:
+                return minMax((long[]) array, signed);
+            case FLOAT:
+                return minMax((float[]) array);
+            case DOUBLE:
+                return minMax((double[]) array);
+            default:
+                return new double[] {0d, 0d};
+        }
+    }
+
+    /**
+     * Find the minimum and maximum values of an array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(byte[] array, boolean signed)
+    {
+        if (signed)
+        {
+            byte min = Byte.MAX_VALUE;
+            byte max = Byte.MIN_VALUE;
+
+            for (byte v : array)
+            {
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+
+            return new double[] {min, max};
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        for (int i = 0; i < array.length; i++)
+        {
+            final int v = TypeUtil.unsign(array[i]);
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(short[] array, boolean signed)
+    {
+        if (signed)
+        {
+            short min = Short.MAX_VALUE;
+            short max = Short.MIN_VALUE;
+
+            for (short v : array)
+            {
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+
+            return new double[] {min, max};
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        for (int i = 0; i < array.length; i++)
+        {
+            final int v = TypeUtil.unsign(array[i]);
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(int[] array, boolean signed)
+    {
+        if (signed)
+        {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+
+            for (int v : array)
+            {
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+
+            return new double[] {min, max};
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        for (int i = 0; i < array.length; i++)
+        {
+            final long v = TypeUtil.unsign(array[i]);
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(long[] array, boolean signed)
+    {
+        if (signed)
+        {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+
+            for (long v : array)
+            {
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+
+            return new double[] {min, max};
+        }
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+
+        for (int i = 0; i < array.length; i++)
+        {
+            // need to compare in double
+            final double v = TypeUtil.unsign(array[i]);
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(float[] array)
+    {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+
+        for (float v : array)
+        {
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
+    /**
+     * Find the minimum and maximum values of an array in a single pass
+     * 
+     * @param array
+     *        an array
+     * @return the min and max values of the array ([min, max])
+     */
+    public static double[] minMax(double[] array)
+    {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+
+        for (double v : array)
+        {
+            if (v < min)
+                min = v;
+            if (v > max)
+                max = v;
+        }
+
+        return new double[] {min, max};
+    }
+
     /**
      * Element-wise minimum of two arrays
      * 
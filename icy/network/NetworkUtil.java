@@ -1063,7 +1063,7 @@ public class NetworkUtil
      */
     public static void report(final HashMap<String, String> values)
     {
-        ThreadUtil.bgRun(new Runnable()
+        ThreadUtil.bgRunIO(new Runnable()
         {
             @Override
             public void run()
@@ -19,12 +19,13 @@
 package icy.painter;
 
 import icy.common.EventHierarchicalChecker;
+import icy.common.EventHierarchicalGroup;
 import icy.util.StringUtil;
 
 /**
  * @author Stephane
  */
-public class OverlayEvent implements EventHierarchicalChecker
+public class OverlayEvent implements EventHierarchicalGroup
 {
     public enum OverlayEventType
     {
@@ -92,6 +93,13 @@ public class OverlayEvent implements EventHierarchicalChecker
         return false;
     }
 
+    @Override
+    public Object getEventGroupKey()
+    {
+        // only events with same type can be collapsed
+        return type;
+    }
+
     @Override
     public boolean isEventRedundantWith(EventHierarchicalChecker event)
     {
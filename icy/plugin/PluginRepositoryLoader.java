@@ -37,6 +37,7 @@ import java.util.Collections;
 import java.util.EventListener;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.swing.event.EventListenerList;
 
@@ -107,20 +108,8 @@ public class PluginRepositoryLoader
             changed(null);
 
             // we load descriptor
-            for (PluginDescriptor plugin : plugins)
-            {
-                // reload requested --> stop current loading
-                if (processor.hasWaitingTasks())
-                    return;
-                // internet connection lost --> failed
-                if (!NetworkUtil.hasInternetAccess())
-                {
-                    failed = true;
-                    return;
-                }
-
-                plugin.loadDescriptor();
-            }
+            if (!new DescriptorLoader(plugins, false).load())
+                return;
 
             // sort list on plugin name
             synchronized (plugins)
@@ -133,28 +122,142 @@ public class PluginRepositoryLoader
             changed(null);
 
             // then we load images
-            for (PluginDescriptor plugin : plugins)
+            if (!new DescriptorLoader(plugins, true).load())
+                return;
+
+            // images loaded
+            imagesLoaded = true;
+        }
+    }
+
+    /**
+     * Load descriptors (or images) of plugins on the I/O processor.<br>
+     * Plugins are loaded by the loader thread with the help of a few I/O threads so we don't
+     * wait for each download in turn.
+     */
+    private class DescriptorLoader implements Runnable
+    {
+        final List<PluginDescriptor> plugins;
+        final boolean images;
+        int next;
+        int running;
+        boolean stopped;
+
+        DescriptorLoader(List<PluginDescriptor> plugins, boolean images)
+        {
+            super();
+
+            this.plugins = plugins;
+            this.images = images;
+            next = 0;
+            running = 0;
+            stopped = false;
+        }
+
+        /**
+         * Load all plugins and returns <code>false</code> if loading has been interrupted (reload
+         * requested or internet connection lost).
+         */
+        boolean load()
+        {
+            try
+            {
+                for (int i = 0; i < Math.min(plugins.size() - 1, NUM_LOADER_HELPER); i++)
+                    ThreadUtil.bgRunIO(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // not a problem, we load remaining plugins ourself
+            }
+
+            // current thread participates so we never wait for a helper which didn't start
+            run();
+            waitDone();
+
+            return !stopped;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
             {
-                // reload requested --> stop current loading
-                if (processor.hasWaitingTasks())
-                    return;
-                // internet connection lost --> failed
-                if (!NetworkUtil.hasInternetAccess())
+                final PluginDescriptor plugin;
+
+                synchronized (this)
                 {
-                    failed = true;
-                    return;
+                    if (stopped || (next >= plugins.size()))
+                        return;
+
+                    plugin = plugins.get(next++);
+                    running++;
                 }
 
-                plugin.loadImages();
-                // notify change
-                changed(plugin);
+                try
+                {
+                    // reload requested --> stop current loading
+                    if (processor.hasWaitingTasks())
+                        stop();
+                    // internet connection lost --> failed
+                    else if (!NetworkUtil.hasInternetAccess())
+                    {
+                        failed = true;
+                        stop();
+                    }
+                    else if (images)
+                    {
+                        plugin.loadImages();
+                        // notify change
+                        changed(plugin);
+                    }
+                    else
+                        plugin.loadDescriptor();
+                }
+                finally
+                {
+                    synchronized (this)
+                    {
+                        running--;
+                        if (running == 0)
+                            notifyAll();
+                    }
+                }
             }
+        }
 
-            // images loaded
-            imagesLoaded = true;
+        synchronized void stop()
+        {
+            stopped = true;
+        }
+
+        /**
+         * Wait until plugins being loaded by helpers are done.
+         */
+        synchronized void waitDone()
+        {
+            boolean interrupted = false;
+
+            while (running > 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+
+            // restore interrupted state
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
     }
 
+    // number of I/O threads helping the loader thread to download descriptors
+    private static final int NUM_LOADER_HELPER = 4;
+
     private static final String ID_ROOT = "plugins";
     private static final String ID_PLUGIN = "plugin";
     // private static final String ID_PATH = "path";
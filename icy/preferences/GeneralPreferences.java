@@ -47,6 +47,7 @@ public class GeneralPreferences
     public static final String ID_GUI_FONT_SIZE = "guiFontSize";
     public static final String ID_STARTUP_TOOLTIP = "startupTooltip";
     public static final String ID_RESULT_FOLDER = "resultFolder";
+    public static final String ID_LOADER_THREADS = "loaderThreads";
 
     /**
      * id confirm
@@ -141,6 +142,14 @@ public class GeneralPreferences
         return prefGeneral.get(ID_RESULT_FOLDER, FileUtil.getApplicationDirectory() + FileUtil.separator + "result");
     }
 
+    /**
+     * Returns the number of worker used to load image planes (1 = sequential loading).
+     */
+    public static int getLoaderThreads()
+    {
+        return prefGeneral.getInt(ID_LOADER_THREADS, 1);
+    }
+
     public static int getGuiFontSize()
     {
         return prefGeneral.getInt(ID_GUI_FONT_SIZE, LookAndFeelUtil.getDefaultFontSize());
@@ -191,6 +200,14 @@ public class GeneralPreferences
         prefGeneral.put(ID_RESULT_FOLDER, value);
     }
 
+    /**
+     * Set the number of worker used to load image planes (1 = sequential loading).
+     */
+    public static void setLoaderThreads(int value)
+    {
+        prefGeneral.putInt(ID_LOADER_THREADS, Math.max(1, value));
+    }
+
     public static void setGuiFontSize(int value)
     {
         prefGeneral.putInt(ID_GUI_FONT_SIZE, value);
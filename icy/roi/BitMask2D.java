@@ -0,0 +1,579 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * Bit packed 2D mask: each row of the mask is stored in <code>long</code> words (64 pixels per
+ * word) so boolean operations (union, intersection...) are done 64 pixels at once.<br>
+ * Pixel (x, y) is bit <code>(x - bounds.x) & 63</code> of word
+ * <code>((y - bounds.y) * getRowWords()) + ((x - bounds.x) >> 6)</code>.<br>
+ * Bits beyond the mask width are always 0.<br>
+ * Use {@link #BitMask2D(BooleanMask2D)} and {@link #toBooleanMask2D()} to convert from / to
+ * {@link BooleanMask2D}.
+ */
+public class BitMask2D implements Cloneable
+{
+    private static final int OP_OR = 0;
+    private static final int OP_AND = 1;
+    private static final int OP_XOR = 2;
+    private static final int OP_ANDNOT = 3;
+
+    /**
+     * Returns the number of word needed to store a row of the specified width.
+     */
+    public static int getRowWords(int width)
+    {
+        return (width + 63) >> 6;
+    }
+
+    /**
+     * Build global mask from union of all specified mask
+     */
+    public static BitMask2D getUnion(List<BitMask2D> masks)
+    {
+        BitMask2D result = null;
+
+        for (BitMask2D bm : masks)
+        {
+            if (result == null)
+                result = (BitMask2D) bm.clone();
+            else
+                result = getUnion(result, bm);
+        }
+
+        // return an empty BitMask2D instead of null
+        if (result == null)
+            result = new BitMask2D();
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from union of the mask1 and mask2.<br>
+     * If <code>mask1</code> is <code>null</code> or empty then a copy of <code>mask2</code> is
+     * returned.<br>
+     * If <code>mask2</code> is <code>null</code> or empty then a copy of <code>mask1</code> is
+     * returned.<br>
+     * An empty mask is returned if both <code>mask1</code> and <code>mask2</code> are
+     * <code>null</code>.
+     */
+    public static BitMask2D getUnion(BitMask2D mask1, BitMask2D mask2)
+    {
+        if ((mask1 == null) && (mask2 == null))
+            return new BitMask2D();
+
+        if ((mask1 == null) || mask1.isEmpty())
+            return (BitMask2D) mask2.clone();
+        if ((mask2 == null) || mask2.isEmpty())
+            return (BitMask2D) mask1.clone();
+
+        final Rectangle union = mask1.bounds.union(mask2.bounds);
+
+        if (union.isEmpty())
+            return new BitMask2D();
+
+        return compute(mask1, mask2, union, OP_OR);
+    }
+
+    /**
+     * Build global mask from intersection of all specified mask
+     */
+    public static BitMask2D getIntersection(List<BitMask2D> masks)
+    {
+        BitMask2D result = null;
+
+        for (BitMask2D bm : masks)
+        {
+            if (result == null)
+                result = (BitMask2D) bm.clone();
+            else
+                result = getIntersection(result, bm);
+        }
+
+        // return an empty BitMask2D instead of null
+        if (result == null)
+            result = new BitMask2D();
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from intersection of the mask1 and mask2.<br>
+     * An empty mask is returned if <code>mask1</code> or <code>mask2</code> is <code>null</code>.
+     */
+    public static BitMask2D getIntersection(BitMask2D mask1, BitMask2D mask2)
+    {
+        if ((mask1 == null) || (mask2 == null))
+            return new BitMask2D();
+
+        final Rectangle intersect = mask1.bounds.intersection(mask2.bounds);
+
+        if (intersect.isEmpty())
+            return new BitMask2D();
+
+        return compute(mask1, mask2, intersect, OP_AND);
+    }
+
+    /**
+     * Build global mask from exclusive union of all specified mask
+     */
+    public static BitMask2D getExclusiveUnion(List<BitMask2D> masks)
+    {
+        BitMask2D result = null;
+
+        for (BitMask2D bm : masks)
+        {
+            if (result == null)
+                result = (BitMask2D) bm.clone();
+            else
+                result = getExclusiveUnion(result, bm);
+        }
+
+        // return an empty BitMask2D instead of null
+        if (result == null)
+            result = new BitMask2D();
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from exclusive union of the mask1 and mask2.<br>
+     * If <code>mask1</code> is <code>null</code> or empty then a copy of <code>mask2</code> is
+     * returned.<br>
+     * If <code>mask2</code> is <code>null</code> or empty then a copy of <code>mask1</code> is
+     * returned.<br>
+     * An empty mask is returned if both <code>mask1</code> and <code>mask2</code> are
+     * <code>null</code>.
+     */
+    public static BitMask2D getExclusiveUnion(BitMask2D mask1, BitMask2D mask2)
+    {
+        if ((mask1 == null) && (mask2 == null))
+            return new BitMask2D();
+
+        if ((mask1 == null) || mask1.isEmpty())
+            return (BitMask2D) mask2.clone();
+        if ((mask2 == null) || mask2.isEmpty())
+            return (BitMask2D) mask1.clone();
+
+        final Rectangle union = mask1.bounds.union(mask2.bounds);
+
+        if (union.isEmpty())
+            return new BitMask2D();
+
+        final BitMask2D result = compute(mask1, mask2, union, OP_XOR);
+
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from the subtraction of mask2 from mask1.<br>
+     * If <code>mask2</code> is <code>null</code> then a copy of <code>mask1</code> is returned.<br>
+     * If <code>mask1</code> is <code>null</code> then a empty mask is returned.
+     */
+    public static BitMask2D getSubtraction(BitMask2D mask1, BitMask2D mask2)
+    {
+        if (mask1 == null)
+            return new BitMask2D();
+        if (mask2 == null)
+            return (BitMask2D) mask1.clone();
+
+        // nothing to subtract
+        if (mask1.bounds.intersection(mask2.bounds).isEmpty())
+            return (BitMask2D) mask1.clone();
+
+        final BitMask2D result = compute(mask1, mask2, new Rectangle(mask1.bounds), OP_ANDNOT);
+
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Compute <code>mask1 op mask2</code> on the specified area.
+     */
+    private static BitMask2D compute(BitMask2D mask1, BitMask2D mask2, Rectangle area, int op)
+    {
+        final BitMask2D result = new BitMask2D(area);
+        final long[] dst = result.words;
+        final int rowWords = result.rowWords;
+        final long lastMask = getLastWordMask(area.width);
+        int off = 0;
+
+        for (int j = 0; j < area.height; j++)
+        {
+            final int y = area.y + j;
+
+            for (int k = 0; k < rowWords; k++)
+            {
+                final int x = area.x + (k << 6);
+                final long v1 = mask1.getWord(x, y);
+                final long v2 = mask2.getWord(x, y);
+
+                switch (op)
+                {
+                    default:
+                    case OP_OR:
+                        dst[off + k] = v1 | v2;
+                        break;
+                    case OP_AND:
+                        dst[off + k] = v1 & v2;
+                        break;
+                    case OP_XOR:
+                        dst[off + k] = v1 ^ v2;
+                        break;
+                    case OP_ANDNOT:
+                        dst[off + k] = v1 & ~v2;
+                        break;
+                }
+            }
+
+            // clear bits outside area
+            dst[(off + rowWords) - 1] &= lastMask;
+            off += rowWords;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the mask to apply on the last word of a row of the specified width.
+     */
+    private static long getLastWordMask(int width)
+    {
+        final int rem = width & 63;
+
+        if (rem == 0)
+            return -1L;
+
+        return (1L << rem) - 1L;
+    }
+
+    /**
+     * Region represented by the mask.
+     */
+    public Rectangle bounds;
+    /**
+     * Bit packed mask data (row aligned on <code>long</code> word).
+     */
+    public long[] words;
+    /**
+     * number of word for a row
+     */
+    private int rowWords;
+
+    /**
+     * Create an empty (all pixels unset) mask for the specified region.
+     */
+    public BitMask2D(Rectangle bounds)
+    {
+        super();
+
+        this.bounds = bounds;
+        rowWords = getRowWords(bounds.width);
+        words = new long[rowWords * Math.max(0, bounds.height)];
+    }
+
+    /**
+     * Create a mask from the specified boolean mask array.<br>
+     * <code>mask[(y * bounds.width) + x]</code> is pixel <code>(bounds.x + x, bounds.y + y)</code>.
+     */
+    public BitMask2D(Rectangle bounds, boolean[] mask)
+    {
+        this(bounds);
+
+        final int w = bounds.width;
+        int offSrc = 0;
+        int offDst = 0;
+
+        for (int y = 0; y < bounds.height; y++)
+        {
+            for (int x = 0; x < w; x++)
+                if (mask[offSrc++])
+                    words[offDst + (x >> 6)] |= 1L << x;
+
+            offDst += rowWords;
+        }
+    }
+
+    /**
+     * Create a mask from the specified {@link BooleanMask2D}.
+     */
+    public BitMask2D(BooleanMask2D mask)
+    {
+        this(new Rectangle(mask.bounds), mask.mask);
+    }
+
+    /**
+     * Create an empty BitMask2D
+     */
+    public BitMask2D()
+    {
+        this(new Rectangle());
+    }
+
+    /**
+     * Returns the number of word for a row of the mask.
+     */
+    public int getRowWords()
+    {
+        return rowWords;
+    }
+
+    /**
+     * Return true if mask is empty<br>
+     */
+    public boolean isEmpty()
+    {
+        return bounds.isEmpty();
+    }
+
+    /**
+     * Return true if mask contains the specified point
+     */
+    public boolean contains(int x, int y)
+    {
+        if (bounds.contains(x, y))
+        {
+            final int dx = x - bounds.x;
+            return (words[((y - bounds.y) * rowWords) + (dx >> 6)] & (1L << dx)) != 0L;
+        }
+
+        return false;
+    }
+
+    /**
+     * Set the specified pixel state (should be inside the mask bounds)
+     */
+    public void set(int x, int y, boolean value)
+    {
+        final int dx = x - bounds.x;
+        final int off = ((y - bounds.y) * rowWords) + (dx >> 6);
+
+        if (value)
+            words[off] |= 1L << dx;
+        else
+            words[off] &= ~(1L << dx);
+    }
+
+    /**
+     * Returns the 64 pixels starting at position (x, y) packed in a <code>long</code> word (bit 0
+     * is pixel (x, y)).<br>
+     * Pixels outside the mask bounds are considered unset.
+     */
+    public long getWord(int x, int y)
+    {
+        final int j = y - bounds.y;
+
+        if ((j < 0) || (j >= bounds.height))
+            return 0L;
+
+        final int pos = x - bounds.x;
+
+        // fully outside
+        if ((pos <= -64) || (pos >= bounds.width))
+            return 0L;
+
+        final int off = j * rowWords;
+        // floor division
+        final int k = pos >> 6;
+        final int shift = pos & 63;
+        final long lo = ((k >= 0) && (k < rowWords)) ? words[off + k] : 0L;
+
+        // aligned
+        if (shift == 0)
+            return lo;
+
+        final long hi = ((k + 1) < rowWords) ? words[off + k + 1] : 0L;
+
+        return (lo >>> shift) | (hi << (64 - shift));
+    }
+
+    /**
+     * Returns the number of set pixel in the mask.
+     */
+    public int getNumberOfPoints()
+    {
+        int result = 0;
+
+        for (long w : words)
+            result += Long.bitCount(w);
+
+        return result;
+    }
+
+    /**
+     * Return an array of boolean representing the mask.<br>
+     * <code>result[(y * bounds.width) + x]</code> is pixel <code>(bounds.x + x, bounds.y + y)</code>.
+     */
+    public boolean[] toBooleanArray()
+    {
+        final int w = bounds.width;
+        final int h = bounds.height;
+
+        if ((w <= 0) || (h <= 0))
+            return new boolean[0];
+
+        final boolean[] result = new boolean[w * h];
+        int offSrc = 0;
+        int offDst = 0;
+
+        for (int y = 0; y < h; y++)
+        {
+            for (int k = 0; k < rowWords; k++)
+            {
+                long v = words[offSrc + k];
+
+                // only iterate over set bits
+                while (v != 0L)
+                {
+                    final int bit = Long.numberOfTrailingZeros(v);
+
+                    result[offDst + (k << 6) + bit] = true;
+                    v &= v - 1L;
+                }
+            }
+
+            offSrc += rowWords;
+            offDst += w;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the equivalent {@link BooleanMask2D}.
+     */
+    public BooleanMask2D toBooleanMask2D()
+    {
+        if (isEmpty())
+            return new BooleanMask2D(new Rectangle(bounds), new boolean[0]);
+
+        return new BooleanMask2D(new Rectangle(bounds), toBooleanArray());
+    }
+
+    /**
+     * Return an optimized bounds which fit the mask content (set pixels).
+     */
+    public Rectangle getOptimizedBounds()
+    {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        int off = 0;
+
+        for (int y = 0; y < bounds.height; y++)
+        {
+            int first = -1;
+            int last = -1;
+
+            for (int k = 0; k < rowWords; k++)
+            {
+                if (words[off + k] != 0L)
+                {
+                    if (first == -1)
+                        first = k;
+                    last = k;
+                }
+            }
+
+            if (first != -1)
+            {
+                final int rowMinX = (first << 6) + Long.numberOfTrailingZeros(words[off + first]);
+                final int rowMaxX = (last << 6) + (63 - Long.numberOfLeadingZeros(words[off + last]));
+
+                if (rowMinX < minX)
+                    minX = rowMinX;
+                if (rowMaxX > maxX)
+                    maxX = rowMaxX;
+                if (minY == Integer.MAX_VALUE)
+                    minY = y;
+                maxY = y;
+            }
+
+            off += rowWords;
+        }
+
+        // empty --> return empty bounds
+        if (maxY == -1)
+            return new Rectangle(bounds.x, bounds.y, 0, 0);
+
+        // new calculated bounds
+        return new Rectangle(bounds.x + minX, bounds.y + minY, (maxX - minX) + 1, (maxY - minY) + 1);
+    }
+
+    /**
+     * Optimize mask bounds so it fit mask content.
+     */
+    public void optimizeBounds()
+    {
+        moveBounds(getOptimizedBounds());
+    }
+
+    /**
+     * Change the bounds of the mask.<br>
+     * Keep mask data intersecting from old bounds.
+     */
+    public void moveBounds(Rectangle value)
+    {
+        // bounds changed ?
+        if (!bounds.equals(value))
+        {
+            final Rectangle newBounds = new Rectangle(value);
+            final int newRowWords = getRowWords(newBounds.width);
+            final long[] newWords = new long[newRowWords * Math.max(0, newBounds.height)];
+            final long lastMask = getLastWordMask(newBounds.width);
+            int off = 0;
+
+            for (int j = 0; j < newBounds.height; j++)
+            {
+                final int y = newBounds.y + j;
+
+                for (int k = 0; k < newRowWords; k++)
+                    newWords[off + k] = getWord(newBounds.x + (k << 6), y);
+
+                // clear bits outside bounds
+                if (newRowWords > 0)
+                    newWords[(off + newRowWords) - 1] &= lastMask;
+                off += newRowWords;
+            }
+
+            words = newWords;
+            rowWords = newRowWords;
+            bounds = newBounds;
+        }
+    }
+
+    @Override
+    public Object clone()
+    {
+        final BitMask2D result = new BitMask2D(new Rectangle(bounds));
+
+        System.arraycopy(words, 0, result.words, 0, words.length);
+
+        return result;
+    }
+}
@@ -122,23 +122,13 @@ public class BooleanMask2D implements Cloneable
      */
     public static BooleanMask2D getUnion(List<BooleanMask2D> masks)
     {
-        BooleanMask2D result = null;
+        final List<BitMask2D> bitMasks = new ArrayList<BitMask2D>(masks.size());
 
-        // compute global union boolean mask of all ROI2D
+        // use bit packed masks to compute the global union
         for (BooleanMask2D bm : masks)
-        {
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bm.bounds, bm.mask);
-            else
-                result = getUnion(result, bm);
-        }
-
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            result = new BooleanMask2D();
+            bitMasks.add(new BitMask2D(bm));
 
-        return result;
+        return BitMask2D.getUnion(bitMasks).toBooleanMask2D();
     }
 
     /**
@@ -221,23 +211,13 @@ public class BooleanMask2D implements Cloneable
      */
     public static BooleanMask2D getIntersection(List<BooleanMask2D> masks)
     {
-        BooleanMask2D result = null;
+        final List<BitMask2D> bitMasks = new ArrayList<BitMask2D>(masks.size());
 
-        // compute global intersect boolean mask of all ROI2D
+        // use bit packed masks to compute the global intersect
         for (BooleanMask2D bm : masks)
-        {
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bm.bounds, bm.mask);
-            else
-                result = getIntersection(result, bm);
-        }
+            bitMasks.add(new BitMask2D(bm));
 
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            result = new BooleanMask2D();
-
-        return result;
+        return BitMask2D.getIntersection(bitMasks).toBooleanMask2D();
     }
 
     /**
@@ -301,23 +281,13 @@ public class BooleanMask2D implements Cloneable
      */
     public static BooleanMask2D getExclusiveUnion(List<BooleanMask2D> masks)
     {
-        BooleanMask2D result = null;
+        final List<BitMask2D> bitMasks = new ArrayList<BitMask2D>(masks.size());
 
-        // compute global exclusive union boolean mask of all ROI2D
+        // use bit packed masks to compute the global exclusive union
         for (BooleanMask2D bm : masks)
-        {
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bm.bounds, bm.mask);
-            else
-                result = getExclusiveUnion(result, bm);
-        }
-
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            result = new BooleanMask2D();
+            bitMasks.add(new BitMask2D(bm));
 
-        return result;
+        return BitMask2D.getExclusiveUnion(bitMasks).toBooleanMask2D();
     }
 
     /**
@@ -99,6 +99,11 @@ public abstract class ROI implements ChangeListener, XMLPersistent
 
     public static final ROIIdComparator idComparator = new ROIIdComparator();
 
+    /**
+     * max number of pixel rasterized at once when building a {@link RunLengthMask2D}
+     */
+    protected static final int RUN_LENGTH_BAND_SIZE = 1024 * 1024;
+
     public static final int DEFAULT_STROKE = 2;
     public static final Color DEFAULT_COLOR = Color.GREEN;
     /**
@@ -559,6 +564,14 @@ public abstract class ROI implements ChangeListener, XMLPersistent
             canBeRemoved = false;
         }
 
+        /**
+         * Returns the ROI attached to this painter.
+         */
+        public ROI getROI()
+        {
+            return ROI.this;
+        }
+
         /**
          * Return the ROI painter stroke.
          */
@@ -1846,6 +1859,49 @@ public abstract class ROI implements ChangeListener, XMLPersistent
                 t, c, inclusive));
     }
 
+    /**
+     * Get the {@link RunLengthMask2D} object representing the roi for specified Z,T,C position.<br>
+     * Unlike {@link #getBooleanMask2D(int, int, int, boolean)} the ROI area is rasterized by bands
+     * of rows so we never allocate a dense mask of the whole ROI bounds.
+     * 
+     * @param z
+     *        Z position we want to retrieve the mask
+     * @param t
+     *        T position we want to retrieve the mask
+     * @param c
+     *        C position we want to retrieve the mask
+     * @param inclusive
+     *        If true then all partially contained (intersected) pixels are included in the mask.
+     */
+    public RunLengthMask2D getRunLengthMask2D(int z, int t, int c, boolean inclusive)
+    {
+        final Rectangle bounds2D = getBounds5D().toRectangle2D().getBounds();
+
+        // empty ROI --> return empty mask
+        if (bounds2D.isEmpty())
+            return new RunLengthMask2D();
+
+        final RunLengthMask2D.Builder builder = new RunLengthMask2D.Builder(bounds2D.y);
+        final int bandHeight = Math.max(1, RUN_LENGTH_BAND_SIZE / bounds2D.width);
+
+        for (int y = 0; y < bounds2D.height; y += bandHeight)
+        {
+            final int h = Math.min(bandHeight, bounds2D.height - y);
+            final boolean[] band = getBooleanMask2D(bounds2D.x, bounds2D.y + y, bounds2D.width, h, z, t, c,
+                    inclusive);
+            int offset = 0;
+
+            for (int j = 0; j < h; j++)
+            {
+                builder.addRow(band, offset, bounds2D.width, bounds2D.x);
+                builder.nextRow();
+                offset += bounds2D.width;
+            }
+        }
+
+        return builder.build();
+    }
+
     /**
      * Compute the resulting bounds for <i>subtraction</i> operation with the specified ROI.<br>
      * It returns <code>null</code> or throw an exception if the <i>subtraction</i> operation cannot
@@ -2106,35 +2162,13 @@ public abstract class ROI implements ChangeListener, XMLPersistent
             {
                 final BooleanMask2D mask3D[] = new BooleanMask2D[sizeZ];
 
-                // process union
+                // process operation plane by plane on run length masks so operands never need a
+                // dense mask of their whole bounds (result planes are still stored as dense masks
+                // on their fitted bounds)
                 for (int z = 0; z < sizeZ; z++)
-                {
-                    // special case for subtraction
-                    if (op == null)
-                    {
-                        mask3D[z] = BooleanMask2D.getSubtraction(
-                                getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true),
-                                roi.getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true));
-                    }
-                    else if (op == BooleanOperator.AND)
-                    {
-                        mask3D[z] = BooleanMask2D.getIntersection(
-                                roi.getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true),
-                                getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true));
-                    }
-                    else if (op == BooleanOperator.OR)
-                    {
-                        mask3D[z] = BooleanMask2D.getUnion(
-                                roi.getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true),
-                                getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true));
-                    }
-                    else if (op == BooleanOperator.XOR)
-                    {
-                        mask3D[z] = BooleanMask2D.getExclusiveUnion(
-                                roi.getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true),
-                                getBooleanMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true));
-                    }
-                }
+                    mask3D[z] = computeOperation(
+                            getRunLengthMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true),
+                            roi.getRunLengthMask2D(bounds.z + z, bounds.t + t, bounds.c + c, true), op);
 
                 mask4D[t] = new BooleanMask3D(bounds3D, mask3D);
             }
@@ -2212,6 +2246,49 @@ public abstract class ROI implements ChangeListener, XMLPersistent
         return result;
     }
 
+    /**
+     * Compute the specified boolean operation between the 2 masks (<code>null</code> operation
+     * means subtraction).<br>
+     * Operation is done on the run length form unless both masks are dense in which case the bit
+     * packed form is faster.<br>
+     * Only the operation itself is sparse: the result is returned as a dense {@link BooleanMask2D}
+     * as this is what ROI masks store.
+     */
+    private static BooleanMask2D computeOperation(RunLengthMask2D mask1, RunLengthMask2D mask2, BooleanOperator op)
+    {
+        if (mask1.isDense() && mask2.isDense())
+        {
+            final BitMask2D bm1 = mask1.toBitMask2D();
+            final BitMask2D bm2 = mask2.toBitMask2D();
+            final BitMask2D result;
+
+            if (op == null)
+                result = BitMask2D.getSubtraction(bm1, bm2);
+            else if (op == BooleanOperator.AND)
+                result = BitMask2D.getIntersection(bm1, bm2);
+            else if (op == BooleanOperator.OR)
+                result = BitMask2D.getUnion(bm1, bm2);
+            else
+                result = BitMask2D.getExclusiveUnion(bm1, bm2);
+
+            return result.toBooleanMask2D();
+        }
+
+        final RunLengthMask2D result;
+
+        if (op == null)
+            result = RunLengthMask2D.getSubtraction(mask1, mask2);
+        else if (op == BooleanOperator.AND)
+            result = RunLengthMask2D.getIntersection(mask1, mask2);
+        else if (op == BooleanOperator.OR)
+            result = RunLengthMask2D.getUnion(mask1, mask2);
+        else
+            result = RunLengthMask2D.getExclusiveUnion(mask1, mask2);
+
+        // result bounds fit its content so the dense mask is as small as possible
+        return result.toBooleanMask2D();
+    }
+
     /**
      * Compute the boolean operation with specified <code>ROI</code> and return result in a new
      * <code>ROI</code>.
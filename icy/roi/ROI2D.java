@@ -1168,6 +1168,52 @@ public abstract class ROI2D extends ROI
         return getBooleanMask(inclusive);
     }
 
+    @Override
+    public RunLengthMask2D getRunLengthMask2D(int z, int t, int c, boolean inclusive)
+    {
+        // not on the correct Z, T, C position --> return empty mask
+        if (!isActiveFor(z, t, c))
+            return new RunLengthMask2D();
+
+        return getRunLengthMask(inclusive);
+    }
+
+    /**
+     * Get the {@link RunLengthMask2D} object representing the roi.<br>
+     * Unlike {@link #getBooleanMask(boolean)} the ROI is rasterized by bands of rows so we never
+     * allocate a dense mask of the whole ROI bounds.
+     * 
+     * @param inclusive
+     *        If true then all partially contained (intersected) pixels are included in the mask.
+     */
+    public RunLengthMask2D getRunLengthMask(boolean inclusive)
+    {
+        final Rectangle bounds = getBounds();
+
+        // empty ROI --> return empty mask
+        if (bounds.isEmpty())
+            return new RunLengthMask2D();
+
+        final RunLengthMask2D.Builder builder = new RunLengthMask2D.Builder(bounds.y);
+        final int bandHeight = Math.max(1, RUN_LENGTH_BAND_SIZE / bounds.width);
+
+        for (int y = 0; y < bounds.height; y += bandHeight)
+        {
+            final int h = Math.min(bandHeight, bounds.height - y);
+            final boolean[] band = getBooleanMask(bounds.x, bounds.y + y, bounds.width, h, inclusive);
+            int offset = 0;
+
+            for (int j = 0; j < h; j++)
+            {
+                builder.addRow(band, offset, bounds.width, bounds.x);
+                builder.nextRow();
+                offset += bounds.width;
+            }
+        }
+
+        return builder.build();
+    }
+
     /**
      * Get the {@link BooleanMask2D} object representing the roi.<br>
      * It contains the rectangle mask bounds and the associated boolean array mask.<br>
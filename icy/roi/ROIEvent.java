@@ -19,11 +19,12 @@
 package icy.roi;
 
 import icy.common.EventHierarchicalChecker;
+import icy.common.EventHierarchicalGroup;
 
 /**
  * @author stephane
  */
-public class ROIEvent implements EventHierarchicalChecker
+public class ROIEvent implements EventHierarchicalGroup
 {
     @Deprecated
     public enum ROIPointEventType
@@ -143,6 +144,13 @@ public class ROIEvent implements EventHierarchicalChecker
         return false;
     }
 
+    @Override
+    public Object getEventGroupKey()
+    {
+        // only events with same type can be collapsed
+        return type;
+    }
+
     @Override
     public boolean isEventRedundantWith(EventHierarchicalChecker event)
     {
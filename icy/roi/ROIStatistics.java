@@ -0,0 +1,684 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.image.IcyBufferedImage;
+import icy.image.IntensityInfo;
+import icy.sequence.Sequence;
+import icy.system.thread.Processor;
+import icy.system.thread.ThreadUtil;
+import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.DynamicArray;
+import icy.type.rectangle.Rectangle5D;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Intensity statistics (number of pixel, min, max, sum, sum of square and optionally percentiles)
+ * of a ROI for each channel of a sequence.<br>
+ * Use {@link ROIUtil#getStatistics(Sequence, List, boolean)} to compute statistics of many ROI at
+ * once: all ROI are rasterized in per plane label maps so each plane of the sequence is read only
+ * once (and planes are processed in parallel) instead of iterating the sequence for each ROI.
+ */
+public class ROIStatistics
+{
+    /**
+     * Computes statistics of all specified ROI on the given sequence.<br>
+     * Planes are processed by the current thread with the help of the specified processor threads
+     * (can be <code>null</code>).
+     * 
+     * @see ROIUtil#getStatistics(Sequence, List, boolean, Processor)
+     */
+    static Map<ROI, ROIStatistics> compute(Sequence sequence, List<? extends ROI> rois, boolean percentiles,
+            Processor processor)
+    {
+        final Map<ROI, ROIStatistics> result = new LinkedHashMap<ROI, ROIStatistics>();
+        final PlaneTask[] tasks = createTasks(sequence, rois, percentiles, result);
+        final PlaneRunner runner = new PlaneRunner(tasks);
+
+        // planes are independent so we can process them in parallel
+        if (processor != null)
+        {
+            final int numHelper = Math.min(tasks.length - 1, processor.getMaximumPoolSize());
+
+            try
+            {
+                for (int i = 0; i < numHelper; i++)
+                    processor.submit(true, runner);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // not a problem, we process remaining planes ourself
+            }
+        }
+
+        // current thread participates so we never wait for a helper which didn't start
+        runner.run();
+        runner.waitDone();
+
+        return result;
+    }
+
+    /**
+     * Computes statistics of all specified ROI on the given sequence (planes are processed in
+     * parallel by the shared compute processor).
+     * 
+     * @see ROIUtil#getStatistics(Sequence, List, boolean)
+     * @see ThreadUtil#getComputeProcessor()
+     */
+    static Map<ROI, ROIStatistics> compute(Sequence sequence, List<? extends ROI> rois, boolean percentiles)
+    {
+        final Map<ROI, ROIStatistics> result = new LinkedHashMap<ROI, ROIStatistics>();
+        final PlaneTask[] tasks = createTasks(sequence, rois, percentiles, result);
+
+        if (tasks.length <= 1)
+        {
+            for (PlaneTask task : tasks)
+                task.run();
+        }
+        else
+        {
+            try
+            {
+                ThreadUtil.getComputeProcessor().runAll(Arrays.asList(tasks));
+            }
+            catch (InterruptedException e)
+            {
+                // restore interrupted state
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates statistics of all specified ROI (stored in <code>result</code>) and returns the
+     * per plane tasks computing them.
+     */
+    private static PlaneTask[] createTasks(Sequence sequence, List<? extends ROI> rois, boolean percentiles,
+            Map<ROI, ROIStatistics> result)
+    {
+        final int sizeC = sequence.getSizeC();
+        final ROIStatistics[] stats = new ROIStatistics[rois.size()];
+        final Rectangle5D[] bounds = new Rectangle5D[rois.size()];
+
+        for (int i = 0; i < stats.length; i++)
+        {
+            final ROI roi = rois.get(i);
+
+            stats[i] = new ROIStatistics(roi, sizeC, percentiles);
+            bounds[i] = roi.getBounds5D();
+            result.put(roi, stats[i]);
+        }
+
+        final int sizeZ = sequence.getSizeZ();
+        final int sizeT = sequence.getSizeT();
+        final PlaneTask[] tasks = new PlaneTask[sizeZ * sizeT];
+
+        for (int t = 0; t < sizeT; t++)
+            for (int z = 0; z < sizeZ; z++)
+                tasks[(t * sizeZ) + z] = new PlaneTask(sequence, rois, bounds, stats, z, t, percentiles);
+
+        return tasks;
+    }
+
+    /**
+     * Process plane tasks until there is no more (can be run by several threads at once).
+     */
+    private static class PlaneRunner implements Runnable
+    {
+        final PlaneTask[] tasks;
+        int next;
+        int done;
+
+        PlaneRunner(PlaneTask[] tasks)
+        {
+            super();
+
+            this.tasks = tasks;
+            next = 0;
+            done = 0;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final PlaneTask task;
+
+                synchronized (this)
+                {
+                    if (next >= tasks.length)
+                        return;
+
+                    task = tasks[next];
+                    // release task (and its accumulators) as soon as done
+                    tasks[next++] = null;
+                }
+
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    synchronized (this)
+                    {
+                        done++;
+                        if (done == tasks.length)
+                            notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Wait until all plane tasks are done.
+         */
+        synchronized void waitDone()
+        {
+            boolean interrupted = false;
+
+            while (done < tasks.length)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+
+            // restore interrupted state
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Computes statistics of all ROI for a single (Z, T) plane.
+     */
+    private static class PlaneTask implements Runnable
+    {
+        final Sequence sequence;
+        final List<? extends ROI> rois;
+        final Rectangle5D[] bounds;
+        final ROIStatistics[] stats;
+        final int z;
+        final int t;
+        final boolean percentiles;
+
+        // local accumulators ((roi index * sizeC) + c)
+        long[] numPixels;
+        double[] min;
+        double[] max;
+        double[] sum;
+        double[] sum2;
+        DynamicArray.Double[] values;
+
+        PlaneTask(Sequence sequence, List<? extends ROI> rois, Rectangle5D[] bounds, ROIStatistics[] stats, int z,
+                int t, boolean percentiles)
+        {
+            super();
+
+            this.sequence = sequence;
+            this.rois = rois;
+            this.bounds = bounds;
+            this.stats = stats;
+            this.z = z;
+            this.t = t;
+            this.percentiles = percentiles;
+        }
+
+        @Override
+        public void run()
+        {
+            final IcyBufferedImage image = sequence.getImage(t, z);
+
+            if (image == null)
+                return;
+
+            final int sizeC = image.getSizeC();
+            final Rectangle imageBounds = image.getBounds();
+            // ROI whose mask doesn't depend on channel and ROI with specific channel(s)
+            final List<Integer> allChannels = new ArrayList<Integer>();
+            final List<Integer> specificChannel = new ArrayList<Integer>();
+
+            for (int i = 0; i < bounds.length; i++)
+            {
+                final Rectangle5D b = bounds[i];
+
+                if (!b.isInfiniteZ() && ((z + 1 <= b.getMinZ()) || (z >= b.getMaxZ())))
+                    continue;
+                if (!b.isInfiniteT() && ((t + 1 <= b.getMinT()) || (t >= b.getMaxT())))
+                    continue;
+
+                if (b.isInfiniteC())
+                    allChannels.add(Integer.valueOf(i));
+                else
+                    specificChannel.add(Integer.valueOf(i));
+            }
+
+            // nothing to do
+            if (allChannels.isEmpty() && specificChannel.isEmpty())
+                return;
+
+            final int size = stats.length * sizeC;
+
+            numPixels = new long[size];
+            min = new double[size];
+            max = new double[size];
+            sum = new double[size];
+            sum2 = new double[size];
+            Arrays.fill(min, Double.MAX_VALUE);
+            Arrays.fill(max, -Double.MAX_VALUE);
+            if (percentiles)
+                values = new DynamicArray.Double[size];
+
+            // label maps for ROI not depending from channel are built only once
+            final List<int[]> sharedLabels = buildLabelMaps(allChannels, imageBounds, 0);
+            final double[] data = new double[imageBounds.width * imageBounds.height];
+            final boolean signed = image.isSignedDataType();
+
+            for (int c = 0; c < sizeC; c++)
+            {
+                final List<Integer> channelRois = new ArrayList<Integer>();
+
+                for (Integer index : specificChannel)
+                {
+                    final Rectangle5D b = bounds[index.intValue()];
+
+                    if ((c + 1 > b.getMinC()) && (c < b.getMaxC()))
+                        channelRois.add(index);
+                }
+
+                final List<int[]> channelLabels = buildLabelMaps(channelRois, imageBounds, c);
+
+                if (sharedLabels.isEmpty() && channelLabels.isEmpty())
+                    continue;
+
+                // single typed conversion pass for the whole plane
+                Array1DUtil.arrayToDoubleArray(image.getDataXY(c), data, signed);
+
+                for (int[] labels : sharedLabels)
+                    accumulate(labels, data, c, sizeC);
+                for (int[] labels : channelLabels)
+                    accumulate(labels, data, c, sizeC);
+            }
+
+            // merge in global result
+            for (int i = 0; i < stats.length; i++)
+                stats[i].merge(this, i * sizeC);
+        }
+
+        /**
+         * Rasterize the specified ROI in label maps (label = roi index + 1).<br>
+         * Overlapping ROI are put in separate label maps so a pixel can belong to several ROI.
+         */
+        private List<int[]> buildLabelMaps(List<Integer> indexes, Rectangle imageBounds, int c)
+        {
+            final List<int[]> result = new ArrayList<int[]>();
+            final int w = imageBounds.width;
+
+            for (Integer index : indexes)
+            {
+                final int label = index.intValue() + 1;
+                final BooleanMask2D mask = rois.get(index.intValue()).getBooleanMask2D(z, t, c, false);
+                final Rectangle region = mask.bounds.intersection(imageBounds);
+
+                if (region.isEmpty())
+                    continue;
+
+                int[] labels = null;
+
+                // find first label map where the ROI doesn't overlap another one
+                for (int[] l : result)
+                {
+                    if (isFree(l, w, mask, region))
+                    {
+                        labels = l;
+                        break;
+                    }
+                }
+
+                if (labels == null)
+                {
+                    labels = new int[w * imageBounds.height];
+                    result.add(labels);
+                }
+
+                // write label
+                for (int y = region.y; y < region.y + region.height; y++)
+                {
+                    int offMask = ((y - mask.bounds.y) * mask.bounds.width) + (region.x - mask.bounds.x);
+                    int off = (y * w) + region.x;
+
+                    for (int x = 0; x < region.width; x++, offMask++, off++)
+                        if (mask.mask[offMask])
+                            labels[off] = label;
+                }
+            }
+
+            return result;
+        }
+
+        private static boolean isFree(int[] labels, int w, BooleanMask2D mask, Rectangle region)
+        {
+            for (int y = region.y; y < region.y + region.height; y++)
+            {
+                int offMask = ((y - mask.bounds.y) * mask.bounds.width) + (region.x - mask.bounds.x);
+                int off = (y * w) + region.x;
+
+                for (int x = 0; x < region.width; x++, offMask++, off++)
+                    if (mask.mask[offMask] && (labels[off] != 0))
+                        return false;
+            }
+
+            return true;
+        }
+
+        private void accumulate(int[] labels, double[] data, int c, int sizeC)
+        {
+            for (int i = 0; i < labels.length; i++)
+            {
+                final int label = labels[i];
+
+                if (label != 0)
+                {
+                    final int ind = ((label - 1) * sizeC) + c;
+                    final double value = data[i];
+
+                    numPixels[ind]++;
+                    if (value < min[ind])
+                        min[ind] = value;
+                    if (value > max[ind])
+                        max[ind] = value;
+                    sum[ind] += value;
+                    sum2[ind] += value * value;
+
+                    if (percentiles)
+                    {
+                        if (values[ind] == null)
+                            values[ind] = new DynamicArray.Double();
+                        values[ind].addSingle(value);
+                    }
+                }
+            }
+        }
+    }
+
+    private final ROI roi;
+    private final long[] numPixels;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final double[] sum2;
+    private final DynamicArray.Double[] values;
+    // sorted values cache
+    private final double[][] sortedValues;
+
+    ROIStatistics(ROI roi, int sizeC, boolean percentiles)
+    {
+        super();
+
+        this.roi = roi;
+        numPixels = new long[sizeC];
+        min = new double[sizeC];
+        max = new double[sizeC];
+        sum = new double[sizeC];
+        sum2 = new double[sizeC];
+        Arrays.fill(min, Double.MAX_VALUE);
+        Arrays.fill(max, -Double.MAX_VALUE);
+
+        if (percentiles)
+        {
+            values = new DynamicArray.Double[sizeC];
+            for (int c = 0; c < sizeC; c++)
+                values[c] = new DynamicArray.Double();
+            sortedValues = new double[sizeC][];
+        }
+        else
+        {
+            values = null;
+            sortedValues = null;
+        }
+    }
+
+    synchronized void merge(PlaneTask task, int offset)
+    {
+        for (int c = 0; c < numPixels.length; c++)
+        {
+            final int ind = offset + c;
+
+            if (task.numPixels[ind] == 0)
+                continue;
+
+            numPixels[c] += task.numPixels[ind];
+            min[c] = Math.min(min[c], task.min[ind]);
+            max[c] = Math.max(max[c], task.max[ind]);
+            sum[c] += task.sum[ind];
+            sum2[c] += task.sum2[ind];
+
+            if ((values != null) && (task.values[ind] != null))
+                values[c].addAll(task.values[ind]);
+        }
+    }
+
+    /**
+     * Returns the ROI.
+     */
+    public ROI getROI()
+    {
+        return roi;
+    }
+
+    /**
+     * Returns the number of channel.
+     */
+    public int getSizeC()
+    {
+        return numPixels.length;
+    }
+
+    /**
+     * Returns the number of pixel of the ROI for the specified channel (-1 = all channels).
+     */
+    public long getNumPixels(int c)
+    {
+        if (c != -1)
+            return numPixels[c];
+
+        long result = 0;
+        for (long n : numPixels)
+            result += n;
+
+        return result;
+    }
+
+    /**
+     * Returns the minimum intensity for the specified channel (-1 = all channels).
+     */
+    public double getMinIntensity(int c)
+    {
+        if (getNumPixels(c) == 0)
+            return 0d;
+        if (c != -1)
+            return min[c];
+
+        double result = Double.MAX_VALUE;
+        for (double v : min)
+            result = Math.min(result, v);
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum intensity for the specified channel (-1 = all channels).
+     */
+    public double getMaxIntensity(int c)
+    {
+        if (getNumPixels(c) == 0)
+            return 0d;
+        if (c != -1)
+            return max[c];
+
+        double result = -Double.MAX_VALUE;
+        for (double v : max)
+            result = Math.max(result, v);
+
+        return result;
+    }
+
+    /**
+     * Returns the sum of intensity for the specified channel (-1 = all channels).
+     */
+    public double getSumIntensity(int c)
+    {
+        if (c != -1)
+            return sum[c];
+
+        double result = 0d;
+        for (double v : sum)
+            result += v;
+
+        return result;
+    }
+
+    /**
+     * Returns the sum of square intensity for the specified channel (-1 = all channels).
+     */
+    public double getSumSquareIntensity(int c)
+    {
+        if (c != -1)
+            return sum2[c];
+
+        double result = 0d;
+        for (double v : sum2)
+            result += v;
+
+        return result;
+    }
+
+    /**
+     * Returns the mean intensity for the specified channel (-1 = all channels).
+     */
+    public double getMeanIntensity(int c)
+    {
+        final long n = getNumPixels(c);
+
+        if (n == 0)
+            return 0d;
+
+        return getSumIntensity(c) / n;
+    }
+
+    /**
+     * Returns the standard deviation for the specified channel (-1 = all channels).
+     */
+    public double getStandardDeviation(int c)
+    {
+        final long n = getNumPixels(c);
+
+        if (n == 0)
+            return 0d;
+
+        final double x1 = getSumSquareIntensity(c) / n;
+        double x2 = getSumIntensity(c) / n;
+        x2 *= x2;
+
+        return Math.sqrt(x1 - x2);
+    }
+
+    /**
+     * Returns min, max and mean intensity for the specified channel (-1 = all channels).
+     */
+    public IntensityInfo getIntensityInfo(int c)
+    {
+        final IntensityInfo result = new IntensityInfo();
+
+        result.minIntensity = getMinIntensity(c);
+        result.maxIntensity = getMaxIntensity(c);
+        result.meanIntensity = getMeanIntensity(c);
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if percentiles are available.
+     */
+    public boolean hasPercentiles()
+    {
+        return values != null;
+    }
+
+    /**
+     * Returns the specified percentile (nearest rank) of intensity for the specified channel (-1 =
+     * all channels).
+     * 
+     * @param percent
+     *        percentile in [0..100] range (50 = median)
+     * @throws UnsupportedOperationException
+     *         if percentiles were not computed
+     */
+    public synchronized double getPercentile(int c, double percent) throws UnsupportedOperationException
+    {
+        if (values == null)
+            throw new UnsupportedOperationException("Percentiles were not computed for this ROI statistics.");
+
+        final double[] sorted;
+
+        if (c != -1)
+        {
+            if (sortedValues[c] == null)
+            {
+                sortedValues[c] = values[c].asArray();
+                Arrays.sort(sortedValues[c]);
+            }
+
+            sorted = sortedValues[c];
+        }
+        else
+        {
+            final DynamicArray.Double all = new DynamicArray.Double();
+
+            for (DynamicArray.Double v : values)
+                all.addAll(v);
+
+            sorted = all.asArray();
+            Arrays.sort(sorted);
+        }
+
+        if (sorted.length == 0)
+            return 0d;
+
+        final int rank = (int) Math.ceil((Math.max(0d, Math.min(100d, percent)) / 100d) * sorted.length);
+
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
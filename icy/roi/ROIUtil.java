@@ -23,6 +23,7 @@ import icy.math.DataIteratorMath;
 import icy.math.MathUtil;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceDataIterator;
+import icy.system.thread.Processor;
 import icy.type.DataIteratorUtil;
 import icy.type.point.Point3D;
 import icy.type.point.Point4D;
@@ -31,7 +32,9 @@ import icy.type.rectangle.Rectangle5D;
 import icy.util.ShapeUtil.BooleanOperator;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * ROI utilities class.
@@ -171,6 +174,50 @@ public class ROIUtil
         }
     }
 
+    /**
+     * Computes intensity statistics (number of pixel, min, max, sum, sum of square and optionally
+     * percentiles) for each channel of all the specified ROI.<br>
+     * All ROI are rasterized in per plane label maps so each plane of the sequence is read only
+     * once whatever is the number of ROI, planes are processed in parallel.<br>
+     * This is much faster than calling {@link #getIntensityInfo(Sequence, ROI)} or
+     * {@link #getStandardDeviation(Sequence, ROI)} for each ROI when there are many ROI.
+     * 
+     * @param sequence
+     *        The sequence we want to get the intensity statistics.
+     * @param rois
+     *        The ROI we want to compute statistics for.
+     * @param percentiles
+     *        If true intensities are kept so percentiles can be computed (need more memory).
+     * @return statistics for each ROI (in the same order than <code>rois</code>)
+     */
+    public static Map<ROI, ROIStatistics> getStatistics(Sequence sequence, List<? extends ROI> rois,
+            boolean percentiles)
+    {
+        return ROIStatistics.compute(sequence, rois, percentiles);
+    }
+
+    /**
+     * Computes intensity statistics for each channel of all the specified ROI (see
+     * {@link #getStatistics(Sequence, List, boolean)}).<br>
+     * Planes are processed by the calling thread with the help of the given processor threads
+     * instead of a temporary thread pool, so callers can bound the number of threads used.
+     * 
+     * @param sequence
+     *        The sequence we want to get the intensity statistics.
+     * @param rois
+     *        The ROI we want to compute statistics for.
+     * @param percentiles
+     *        If true intensities are kept so percentiles can be computed (need more memory).
+     * @param processor
+     *        Processor used to process planes in parallel (<code>null</code> = calling thread only).
+     * @return statistics for each ROI (in the same order than <code>rois</code>)
+     */
+    public static Map<ROI, ROIStatistics> getStatistics(Sequence sequence, List<? extends ROI> rois,
+            boolean percentiles, Processor processor)
+    {
+        return ROIStatistics.compute(sequence, rois, percentiles, processor);
+    }
+
     /**
      * Returns the number of sequence pixels contained in the specified ROI.
      * 
@@ -569,6 +616,12 @@ public class ROIUtil
         if (rois.size() == 0)
             return null;
 
+        // 2D ROIs lying on the same plane are directly merged from their bit packed masks (when
+        // the merge would be done on masks anyway)
+        final ROI result2D = merge2D(rois, operator);
+        if (result2D != null)
+            return result2D;
+
         ROI result = rois.get(0);
 
         for (int i = 1; i < rois.size(); i++)
@@ -592,6 +645,91 @@ public class ROIUtil
         return result;
     }
 
+    /**
+     * Merge the specified list of {@link ROI2D} lying on the same Z, T, C position using
+     * {@link BitMask2D} (avoid building intermediate ROI).<br>
+     * Returns <code>null</code> if ROIs can't be merged this way, which is also the case when the
+     * first two ROIs are shapes: they are merged exactly as a shape (see
+     * {@link ROI#getUnion(ROI)}...) and the result would lose its geometry here.
+     */
+    private static ROI merge2D(List<? extends ROI> rois, BooleanOperator operator)
+    {
+        if ((rois.size() < 2) || (operator == null))
+            return null;
+
+        final ROI first = rois.get(0);
+
+        if (!(first instanceof ROI2D))
+            return null;
+        // shapes are merged as shape (next operations are done on masks as soon as a ROI is not a
+        // shape, exactly as we do here)
+        if ((first instanceof plugins.kernel.roi.roi2d.ROI2DShape)
+                && (rois.get(1) instanceof plugins.kernel.roi.roi2d.ROI2DShape))
+            return null;
+
+        final int z = ((ROI2D) first).getZ();
+        final int t = ((ROI2D) first).getT();
+        final int c = ((ROI2D) first).getC();
+
+        for (ROI roi : rois)
+        {
+            if (!(roi instanceof ROI2D))
+                return null;
+
+            final ROI2D roi2d = (ROI2D) roi;
+
+            if ((roi2d.getZ() != z) || (roi2d.getT() != t) || (roi2d.getC() != c))
+                return null;
+        }
+
+        final List<BitMask2D> masks = new ArrayList<BitMask2D>(rois.size());
+
+        for (ROI roi : rois)
+            masks.add(new BitMask2D(((ROI2D) roi).getBooleanMask(true)));
+
+        final BitMask2D mask;
+        final String name;
+
+        switch (operator)
+        {
+            case AND:
+                mask = BitMask2D.getIntersection(masks);
+                name = "Intersection";
+                break;
+            case OR:
+                mask = BitMask2D.getUnion(masks);
+                name = "Union";
+                break;
+            case XOR:
+                mask = BitMask2D.getExclusiveUnion(masks);
+                name = "Exclusive union";
+                break;
+            default:
+                return null;
+        }
+
+        mask.optimizeBounds();
+
+        final ROI2D result = new plugins.kernel.roi.roi2d.ROI2DArea(mask.toBooleanMask2D());
+
+        // set ZTC position
+        result.beginUpdate();
+        try
+        {
+            result.setZ(z);
+            result.setT(t);
+            result.setC(c);
+        }
+        finally
+        {
+            result.endUpdate();
+        }
+
+        result.setName(name);
+
+        return result;
+    }
+
     /**
      * Builds and returns a ROI corresponding to the union of the specified ROI list.
      */
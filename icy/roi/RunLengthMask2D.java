@@ -0,0 +1,575 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Run length encoded 2D mask: each row is stored as a sorted list of disjoint runs (intervals of
+ * set pixels).<br>
+ * Memory and operations cost depend on the number of runs instead of the mask area so it is well
+ * suited for large and sparse masks (thin structures in large volumes, slices of 3D ROI...).<br>
+ * Bounds always fit the mask content.<br>
+ * Note that it is only used for intermediate computations (ROI boolean operations): ROI masks
+ * ({@link BooleanMask3D}, {@link BooleanMask4D}, {@link BooleanMask5D}) and area ROI still store
+ * their slices as dense {@link BooleanMask2D}.<br>
+ * Use {@link #isDense()} to know if the dense (bit packed) form should be preferred.
+ */
+public class RunLengthMask2D implements Cloneable
+{
+    /**
+     * Used to build a mask row by row.
+     */
+    public static class Builder
+    {
+        private final int startY;
+        private int[] rowOffsets;
+        private int[] runs;
+        private int numRow;
+        private int numRun;
+
+        /**
+         * @param y
+         *        Y position of the first row
+         */
+        public Builder(int y)
+        {
+            super();
+
+            startY = y;
+            rowOffsets = new int[16];
+            runs = new int[64];
+            numRow = 0;
+            numRun = 0;
+        }
+
+        /**
+         * Add the [x0, x1[ run to the current row (runs should be added in increasing X order).
+         */
+        public void addRun(int x0, int x1)
+        {
+            if (x1 <= x0)
+                return;
+
+            final int n = numRun * 2;
+
+            // merge with previous adjacent run of the row
+            if ((numRun > rowOffsets[numRow]) && (runs[n - 1] >= x0))
+            {
+                runs[n - 1] = Math.max(runs[n - 1], x1);
+                return;
+            }
+
+            if (n + 2 > runs.length)
+                runs = Arrays.copyOf(runs, runs.length * 2);
+
+            runs[n] = x0;
+            runs[n + 1] = x1;
+            numRun++;
+        }
+
+        /**
+         * Add runs of the specified boolean row (<code>row[i]</code> is pixel
+         * <code>x + i</code>).
+         */
+        public void addRow(boolean[] row, int offset, int length, int x)
+        {
+            int i = 0;
+
+            while (i < length)
+            {
+                if (row[offset + i])
+                {
+                    final int start = i;
+
+                    while ((i < length) && row[offset + i])
+                        i++;
+
+                    addRun(x + start, x + i);
+                }
+                else
+                    i++;
+            }
+        }
+
+        /**
+         * Terminate the current row and start the next one.
+         */
+        public void nextRow()
+        {
+            if (numRow + 2 > rowOffsets.length)
+                rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+
+            numRow++;
+            rowOffsets[numRow] = numRun;
+        }
+
+        /**
+         * Build the mask (current row is terminated if not empty).
+         */
+        public RunLengthMask2D build()
+        {
+            if (numRun > rowOffsets[numRow])
+                nextRow();
+
+            int minX = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int minRow = -1;
+            int maxRow = -1;
+
+            for (int j = 0; j < numRow; j++)
+            {
+                final int s = rowOffsets[j];
+                final int e = rowOffsets[j + 1];
+
+                if (e > s)
+                {
+                    if (minRow == -1)
+                        minRow = j;
+                    maxRow = j;
+
+                    minX = Math.min(minX, runs[s * 2]);
+                    maxX = Math.max(maxX, runs[(e * 2) - 1]);
+                }
+            }
+
+            // empty
+            if (minRow == -1)
+                return new RunLengthMask2D();
+
+            final int h = (maxRow - minRow) + 1;
+            final int[] offsets = new int[h + 1];
+            final int base = rowOffsets[minRow];
+
+            for (int j = 0; j <= h; j++)
+                offsets[j] = rowOffsets[minRow + j] - base;
+
+            return new RunLengthMask2D(new Rectangle(minX, startY + minRow, maxX - minX, h), offsets,
+                    Arrays.copyOfRange(runs, base * 2, rowOffsets[maxRow + 1] * 2));
+        }
+    }
+
+    private static final int OP_OR = 0;
+    private static final int OP_AND = 1;
+    private static final int OP_XOR = 2;
+    private static final int OP_ANDNOT = 3;
+
+    /**
+     * Build resulting mask from union of the mask1 and mask2.<br>
+     * An empty mask is returned if both <code>mask1</code> and <code>mask2</code> are
+     * <code>null</code>.
+     */
+    public static RunLengthMask2D getUnion(RunLengthMask2D mask1, RunLengthMask2D mask2)
+    {
+        if ((mask1 == null) && (mask2 == null))
+            return new RunLengthMask2D();
+        if ((mask1 == null) || mask1.isEmpty())
+            return (RunLengthMask2D) mask2.clone();
+        if ((mask2 == null) || mask2.isEmpty())
+            return (RunLengthMask2D) mask1.clone();
+
+        return compute(mask1, mask2, mask1.bounds.union(mask2.bounds), OP_OR);
+    }
+
+    /**
+     * Build resulting mask from intersection of the mask1 and mask2.<br>
+     * An empty mask is returned if <code>mask1</code> or <code>mask2</code> is <code>null</code>.
+     */
+    public static RunLengthMask2D getIntersection(RunLengthMask2D mask1, RunLengthMask2D mask2)
+    {
+        if ((mask1 == null) || (mask2 == null))
+            return new RunLengthMask2D();
+
+        final Rectangle intersect = mask1.bounds.intersection(mask2.bounds);
+
+        if (intersect.isEmpty())
+            return new RunLengthMask2D();
+
+        return compute(mask1, mask2, intersect, OP_AND);
+    }
+
+    /**
+     * Build resulting mask from exclusive union of the mask1 and mask2.<br>
+     * An empty mask is returned if both <code>mask1</code> and <code>mask2</code> are
+     * <code>null</code>.
+     */
+    public static RunLengthMask2D getExclusiveUnion(RunLengthMask2D mask1, RunLengthMask2D mask2)
+    {
+        if ((mask1 == null) && (mask2 == null))
+            return new RunLengthMask2D();
+        if ((mask1 == null) || mask1.isEmpty())
+            return (RunLengthMask2D) mask2.clone();
+        if ((mask2 == null) || mask2.isEmpty())
+            return (RunLengthMask2D) mask1.clone();
+
+        return compute(mask1, mask2, mask1.bounds.union(mask2.bounds), OP_XOR);
+    }
+
+    /**
+     * Build resulting mask from the subtraction of mask2 from mask1.<br>
+     * If <code>mask2</code> is <code>null</code> then a copy of <code>mask1</code> is returned.<br>
+     * If <code>mask1</code> is <code>null</code> then a empty mask is returned.
+     */
+    public static RunLengthMask2D getSubtraction(RunLengthMask2D mask1, RunLengthMask2D mask2)
+    {
+        if (mask1 == null)
+            return new RunLengthMask2D();
+        if ((mask2 == null) || mask1.bounds.intersection(mask2.bounds).isEmpty())
+            return (RunLengthMask2D) mask1.clone();
+
+        return compute(mask1, mask2, mask1.bounds, OP_ANDNOT);
+    }
+
+    /**
+     * Compute <code>mask1 op mask2</code> row by row on the specified area by merging runs.
+     */
+    private static RunLengthMask2D compute(RunLengthMask2D mask1, RunLengthMask2D mask2, Rectangle area, int op)
+    {
+        final Builder builder = new Builder(area.y);
+
+        for (int y = area.y; y < area.y + area.height; y++)
+        {
+            final int j1 = y - mask1.bounds.y;
+            final int j2 = y - mask2.bounds.y;
+            final boolean in1 = (j1 >= 0) && (j1 < mask1.bounds.height);
+            final boolean in2 = (j2 >= 0) && (j2 < mask2.bounds.height);
+            // run boundaries index (2 per run)
+            int p1 = in1 ? mask1.rowOffsets[j1] * 2 : 0;
+            final int e1 = in1 ? mask1.rowOffsets[j1 + 1] * 2 : 0;
+            int p2 = in2 ? mask2.rowOffsets[j2] * 2 : 0;
+            final int e2 = in2 ? mask2.rowOffsets[j2 + 1] * 2 : 0;
+            boolean inside1 = false;
+            boolean inside2 = false;
+            boolean inside = false;
+            int start = 0;
+
+            // sweep over run boundaries of both rows
+            while ((p1 < e1) || (p2 < e2))
+            {
+                final int x1 = (p1 < e1) ? mask1.runs[p1] : Integer.MAX_VALUE;
+                final int x2 = (p2 < e2) ? mask2.runs[p2] : Integer.MAX_VALUE;
+                final int x = Math.min(x1, x2);
+
+                if (x1 == x)
+                {
+                    inside1 = !inside1;
+                    p1++;
+                }
+                if (x2 == x)
+                {
+                    inside2 = !inside2;
+                    p2++;
+                }
+
+                final boolean value;
+
+                switch (op)
+                {
+                    default:
+                    case OP_OR:
+                        value = inside1 | inside2;
+                        break;
+                    case OP_AND:
+                        value = inside1 & inside2;
+                        break;
+                    case OP_XOR:
+                        value = inside1 ^ inside2;
+                        break;
+                    case OP_ANDNOT:
+                        value = inside1 & !inside2;
+                        break;
+                }
+
+                if (value != inside)
+                {
+                    if (value)
+                        start = x;
+                    else
+                        builder.addRun(start, x);
+
+                    inside = value;
+                }
+            }
+
+            builder.nextRow();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Mask bounds (fit the mask content).
+     */
+    private final Rectangle bounds;
+    /**
+     * runs of row j are runs[rowOffsets[j]] to runs[rowOffsets[j + 1] - 1]
+     */
+    private final int[] rowOffsets;
+    /**
+     * [start, end[ X positions of runs (2 entries per run)
+     */
+    private final int[] runs;
+
+    RunLengthMask2D(Rectangle bounds, int[] rowOffsets, int[] runs)
+    {
+        super();
+
+        this.bounds = bounds;
+        this.rowOffsets = rowOffsets;
+        this.runs = runs;
+    }
+
+    /**
+     * Create an empty mask
+     */
+    public RunLengthMask2D()
+    {
+        this(new Rectangle(), new int[1], new int[0]);
+    }
+
+    /**
+     * Create a run length mask from the specified boolean mask array.
+     */
+    public RunLengthMask2D(Rectangle bounds, boolean[] mask)
+    {
+        this(fromBooleanMask(bounds, mask));
+    }
+
+    /**
+     * Create a run length mask from the specified {@link BooleanMask2D}.
+     */
+    public RunLengthMask2D(BooleanMask2D mask)
+    {
+        this(mask.bounds, mask.mask);
+    }
+
+    private RunLengthMask2D(RunLengthMask2D mask)
+    {
+        this(mask.bounds, mask.rowOffsets, mask.runs);
+    }
+
+    private static RunLengthMask2D fromBooleanMask(Rectangle bounds, boolean[] mask)
+    {
+        if (bounds.isEmpty())
+            return new RunLengthMask2D();
+
+        final Builder builder = new Builder(bounds.y);
+        int off = 0;
+
+        for (int j = 0; j < bounds.height; j++)
+        {
+            builder.addRow(mask, off, bounds.width, bounds.x);
+            builder.nextRow();
+            off += bounds.width;
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Returns the mask bounds (fit the mask content).
+     */
+    public Rectangle getBounds()
+    {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * Return true if mask is empty
+     */
+    public boolean isEmpty()
+    {
+        return runs.length == 0;
+    }
+
+    /**
+     * Returns the number of run in the mask.
+     */
+    public int getNumberOfRuns()
+    {
+        return runs.length / 2;
+    }
+
+    /**
+     * Returns the number of set pixel in the mask.
+     */
+    public int getNumberOfPoints()
+    {
+        int result = 0;
+
+        for (int i = 0; i < runs.length; i += 2)
+            result += runs[i + 1] - runs[i];
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the mask is better represented in dense (bit packed) form, that
+     * is when the runs need more memory than the {@link BitMask2D} of the same bounds (short runs
+     * or high fill ratio).
+     */
+    public boolean isDense()
+    {
+        if (isEmpty())
+            return false;
+
+        // a run use 2 int (= 1 long) while a long store 64 pixels
+        return (long) getNumberOfRuns() * 64L > (long) bounds.width * (long) bounds.height;
+    }
+
+    /**
+     * Return true if mask contains the specified point
+     */
+    public boolean contains(int x, int y)
+    {
+        final int j = y - bounds.y;
+
+        if ((j < 0) || (j >= bounds.height))
+            return false;
+
+        // binary search on run starts of the row
+        int low = rowOffsets[j];
+        int high = rowOffsets[j + 1] - 1;
+
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+
+            if (runs[mid * 2] > x)
+                high = mid - 1;
+            else if (runs[(mid * 2) + 1] <= x)
+                low = mid + 1;
+            else
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the runs of the specified row as [start, end[ X positions (2 entries per run).
+     */
+    public int[] getRuns(int y)
+    {
+        final int j = y - bounds.y;
+
+        if ((j < 0) || (j >= bounds.height))
+            return new int[0];
+
+        return Arrays.copyOfRange(runs, rowOffsets[j] * 2, rowOffsets[j + 1] * 2);
+    }
+
+    /**
+     * Return an array of integer containing point coordinates contained in the mask.<br>
+     * <code>result.length</code> = number of point * 2<br>
+     * <code>result[(pt * 2) + 0]</code> = X coordinate for point <i>pt</i>.<br>
+     * <code>result[(pt * 2) + 1]</code> = Y coordinate for point <i>pt</i>.<br>
+     */
+    public int[] getPointsAsIntArray()
+    {
+        final int[] result = new int[getNumberOfPoints() * 2];
+        int off = 0;
+
+        for (int j = 0; j < bounds.height; j++)
+        {
+            final int y = bounds.y + j;
+
+            for (int r = rowOffsets[j]; r < rowOffsets[j + 1]; r++)
+            {
+                for (int x = runs[r * 2]; x < runs[(r * 2) + 1]; x++)
+                {
+                    result[off++] = x;
+                    result[off++] = y;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the equivalent {@link BooleanMask2D}.
+     */
+    public BooleanMask2D toBooleanMask2D()
+    {
+        if (isEmpty())
+            return new BooleanMask2D(new Rectangle(bounds), new boolean[0]);
+
+        final int w = bounds.width;
+        final boolean[] mask = new boolean[w * bounds.height];
+        int off = 0;
+
+        for (int j = 0; j < bounds.height; j++)
+        {
+            for (int r = rowOffsets[j]; r < rowOffsets[j + 1]; r++)
+                Arrays.fill(mask, off + runs[r * 2] - bounds.x, off + runs[(r * 2) + 1] - bounds.x, true);
+
+            off += w;
+        }
+
+        return new BooleanMask2D(new Rectangle(bounds), mask);
+    }
+
+    /**
+     * Return the equivalent {@link BitMask2D}.
+     */
+    public BitMask2D toBitMask2D()
+    {
+        final BitMask2D result = new BitMask2D(new Rectangle(bounds));
+        final long[] words = result.words;
+        final int rowWords = result.getRowWords();
+        int off = 0;
+
+        for (int j = 0; j < bounds.height; j++)
+        {
+            for (int r = rowOffsets[j]; r < rowOffsets[j + 1]; r++)
+            {
+                final int x0 = runs[r * 2] - bounds.x;
+                final int x1 = runs[(r * 2) + 1] - bounds.x;
+                final int k0 = x0 >> 6;
+                final int k1 = (x1 - 1) >> 6;
+                // bits from x0 in first word, bits up to x1 (exclusive) in last word
+                final long first = -1L << x0;
+                final long last = -1L >>> (63 - ((x1 - 1) & 63));
+
+                if (k0 == k1)
+                    words[off + k0] |= first & last;
+                else
+                {
+                    words[off + k0] |= first;
+                    for (int k = k0 + 1; k < k1; k++)
+                        words[off + k] = -1L;
+                    words[off + k1] |= last;
+                }
+            }
+
+            off += rowWords;
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object clone()
+    {
+        // immutable
+        return new RunLengthMask2D(this);
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Scanline rasterizer to build boolean mask from {@link Shape}.<br>
+ * The shape is flattened in edges then:<br>
+ * - the interior is filled row by row from an edge table (pixel center test with the winding rule
+ * of the shape)<br>
+ * - pixels crossed by the outline are computed per edge<br>
+ * A pixel is fully contained in the shape if its center is inside and no edge crosses it, it
+ * intersects the shape if its center is inside or an edge crosses it.<br>
+ * Cost is O(edges + pixels) instead of O(pixels * edges) for per pixel
+ * {@link Shape#contains(double, double, double, double)} tests.<br>
+ * Segment crossings are computed from the exact endpoints so the mask is the same as per pixel
+ * {@link Shape#contains(double, double, double, double)} /
+ * {@link Shape#intersects(double, double, double, double)} tests. For curved shapes, pixels at
+ * less than one pixel from the flattened outline are tested again on the exact shape.
+ */
+public class ShapeRasterizer
+{
+    /**
+     * flatness used to convert curves in line segments
+     */
+    public static final double FLATNESS = 0.001d;
+
+    private static class Edge
+    {
+        // oriented so y0 < y1
+        final double x0;
+        final double y0;
+        final double x1;
+        final double y1;
+        final int dir;
+
+        Edge(double xa, double ya, double xb, double yb)
+        {
+            super();
+
+            if (ya < yb)
+            {
+                x0 = xa;
+                y0 = ya;
+                x1 = xb;
+                y1 = yb;
+                dir = 1;
+            }
+            else
+            {
+                x0 = xb;
+                y0 = yb;
+                x1 = xa;
+                y1 = ya;
+                dir = -1;
+            }
+        }
+
+        double getX(double y)
+        {
+            return ShapeRasterizer.getX(x0, y0, x1, y1, y);
+        }
+    }
+
+    private static final Comparator<Edge> edgeComparator = new Comparator<Edge>()
+    {
+        @Override
+        public int compare(Edge e1, Edge e2)
+        {
+            return Double.compare(e1.y0, e2.y0);
+        }
+    };
+
+    /**
+     * Returns the boolean mask of the specified shape for the specified rectangular area.<br>
+     * if the pixel (x,y) is contained in the shape then result[(y * width) + x] = true
+     * 
+     * @param x
+     *        the X coordinate of the upper-left corner of the specified rectangular area
+     * @param y
+     *        the Y coordinate of the upper-left corner of the specified rectangular area
+     * @param width
+     *        the width of the specified rectangular area
+     * @param height
+     *        the height of the specified rectangular area
+     * @param inclusive
+     *        If true then all partially contained (intersected) pixels are included in the mask.
+     */
+    public static boolean[] getBooleanMask(Shape shape, int x, int y, int width, int height, boolean inclusive)
+    {
+        if ((width <= 0) || (height <= 0))
+            return new boolean[0];
+
+        final boolean[] result = new boolean[width * height];
+        final boolean[] outline = new boolean[width * height];
+        // curves are flattened --> pixels near the outline will be tested again on the exact shape
+        final boolean[] near = hasCurve(shape) ? new boolean[width * height] : null;
+        final PathIterator path = shape.getPathIterator(null, FLATNESS);
+        final boolean nonZero = (path.getWindingRule() == PathIterator.WIND_NON_ZERO);
+        final List<Edge> edges = new ArrayList<Edge>();
+
+        // get segments (in mask coordinates)
+        final double[] crd = new double[6];
+        double startX = 0d;
+        double startY = 0d;
+        double lastX = 0d;
+        double lastY = 0d;
+
+        while (!path.isDone())
+        {
+            switch (path.currentSegment(crd))
+            {
+                case PathIterator.SEG_MOVETO:
+                    // implicit close of previous sub path
+                    addSegment(lastX, lastY, startX, startY, edges, outline, near, width, height);
+                    startX = crd[0] - x;
+                    startY = crd[1] - y;
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+
+                case PathIterator.SEG_LINETO:
+                    addSegment(lastX, lastY, crd[0] - x, crd[1] - y, edges, outline, near, width, height);
+                    lastX = crd[0] - x;
+                    lastY = crd[1] - y;
+                    break;
+
+                case PathIterator.SEG_CLOSE:
+                    addSegment(lastX, lastY, startX, startY, edges, outline, near, width, height);
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+            }
+
+            path.next();
+        }
+
+        // implicit close of last sub path
+        addSegment(lastX, lastY, startX, startY, edges, outline, near, width, height);
+
+        // fill interior
+        fill(edges, nonZero, result, width, height);
+
+        // then add or remove pixels crossed by the outline
+        for (int i = 0; i < result.length; i++)
+        {
+            if (outline[i])
+                result[i] = inclusive;
+        }
+
+        // test again pixels close to the flattened outline on the exact shape
+        if (near != null)
+        {
+            for (int j = 0; j < height; j++)
+            {
+                for (int i = 0; i < width; i++)
+                {
+                    final int off = (j * width) + i;
+
+                    if (!near[off])
+                        continue;
+
+                    if (inclusive)
+                        result[off] = shape.intersects(x + i, y + j, 1d, 1d);
+                    else
+                        result[off] = shape.contains(x + i, y + j, 1d, 1d);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the shape contains quadratic or cubic segments.
+     */
+    private static boolean hasCurve(Shape shape)
+    {
+        final PathIterator path = shape.getPathIterator(null);
+        final double[] crd = new double[6];
+
+        while (!path.isDone())
+        {
+            final int type = path.currentSegment(crd);
+
+            if ((type == PathIterator.SEG_QUADTO) || (type == PathIterator.SEG_CUBICTO))
+                return true;
+
+            path.next();
+        }
+
+        return false;
+    }
+
+    /**
+     * Add the segment to the edge table and mark pixels it crosses.
+     */
+    private static void addSegment(double xa, double ya, double xb, double yb, List<Edge> edges, boolean[] outline,
+            boolean[] near, int width, int height)
+    {
+        // horizontal edges don't participate to the filling
+        if (ya != yb)
+            edges.add(new Edge(xa, ya, xb, yb));
+
+        markOutline(xa, ya, xb, yb, outline, width, height);
+        if (near != null)
+            markNear(xa, ya, xb, yb, near, width, height);
+    }
+
+    /**
+     * Mark pixels at less than one pixel from the specified segment (the exact curve is at less than
+     * {@link #FLATNESS} from the flattened segment).
+     */
+    private static void markNear(double xa, double ya, double xb, double yb, boolean[] near, int width, int height)
+    {
+        final double minY = Math.min(ya, yb);
+        final double maxY = Math.max(ya, yb);
+        final int startRow = Math.max(0, (int) Math.floor(minY) - 1);
+        final int endRow = Math.min(height - 1, (int) Math.floor(maxY) + 1);
+
+        for (int j = startRow; j <= endRow; j++)
+        {
+            // part of segment inside the row (or nearest endpoint)
+            final double cy0 = Math.min(maxY, Math.max(minY, j));
+            final double cy1 = Math.min(maxY, Math.max(minY, j + 1));
+            final double cx0 = (minY == maxY) ? xa : getX(xa, ya, xb, yb, cy0);
+            final double cx1 = (minY == maxY) ? xb : getX(xa, ya, xb, yb, cy1);
+            final int start = Math.max(0, (int) Math.floor(Math.min(cx0, cx1)) - 1);
+            final int end = Math.min(width - 1, (int) Math.floor(Math.max(cx0, cx1)) + 1);
+            final int offset = j * width;
+
+            for (int i = start; i <= end; i++)
+                near[offset + i] = true;
+        }
+    }
+
+    /**
+     * Mark pixels whose interior is crossed by the specified segment.
+     */
+    private static void markOutline(double xa, double ya, double xb, double yb, boolean[] outline, int width,
+            int height)
+    {
+        final double minY = Math.min(ya, yb);
+        final double maxY = Math.max(ya, yb);
+
+        // horizontal segment (or point)
+        if (minY == maxY)
+        {
+            // lies on pixel border --> doesn't cross any pixel
+            if (minY == Math.floor(minY))
+                return;
+
+            markRow((int) Math.floor(minY), Math.min(xa, xb), Math.max(xa, xb), outline, width, height);
+            return;
+        }
+
+        final int startRow = Math.max(0, (int) Math.floor(minY));
+        final int endRow = Math.min(height - 1, (int) Math.ceil(maxY) - 1);
+
+        for (int j = startRow; j <= endRow; j++)
+        {
+            // part of segment inside the row
+            final double cy0 = Math.max(minY, j);
+            final double cy1 = Math.min(maxY, j + 1);
+
+            if (cy1 <= cy0)
+                continue;
+
+            final double cx0 = getX(xa, ya, xb, yb, cy0);
+            final double cx1 = getX(xa, ya, xb, yb, cy1);
+
+            markRow(j, Math.min(cx0, cx1), Math.max(cx0, cx1), outline, width, height);
+        }
+    }
+
+    /**
+     * Returns X of the segment at the specified Y.<br>
+     * Exact endpoint is returned on endpoint Y, otherwise X is interpolated from the nearest
+     * endpoint so rounding error can't move a vertex to the neighbor pixel.
+     */
+    private static double getX(double xa, double ya, double xb, double yb, double y)
+    {
+        if (y == ya)
+            return xa;
+        if (y == yb)
+            return xb;
+
+        // multiply before divide: exact result for integer coordinates when X is integer
+        if (Math.abs(y - ya) <= Math.abs(y - yb))
+            return xa + (((y - ya) * (xb - xa)) / (yb - ya));
+
+        return xb + (((y - yb) * (xb - xa)) / (yb - ya));
+    }
+
+    /**
+     * Mark pixels of row j whose interior intersects the ]minX, maxX[ interval (or contains minX if
+     * minX == maxX).
+     */
+    private static void markRow(int j, double minX, double maxX, boolean[] outline, int width, int height)
+    {
+        if ((j < 0) || (j >= height))
+            return;
+
+        final int start;
+        final int end;
+
+        if (minX == maxX)
+        {
+            // lies on pixel border --> doesn't cross any pixel
+            if (minX == Math.floor(minX))
+                return;
+
+            start = (int) Math.floor(minX);
+            end = start;
+        }
+        else
+        {
+            start = (int) Math.floor(minX);
+            end = (int) Math.ceil(maxX) - 1;
+        }
+
+        final int offset = j * width;
+
+        for (int i = Math.max(0, start); i <= Math.min(width - 1, end); i++)
+            outline[offset + i] = true;
+    }
+
+    /**
+     * Fill pixels whose center is inside the shape (edge table scanline algorithm).
+     */
+    private static void fill(List<Edge> edges, boolean nonZero, boolean[] result, int width, int height)
+    {
+        if (edges.isEmpty())
+            return;
+
+        // sort edges on their top Y
+        Collections.sort(edges, edgeComparator);
+
+        final int numEdge = edges.size();
+        final Edge[] active = new Edge[numEdge];
+        final double[] xs = new double[numEdge];
+        final int[] dirs = new int[numEdge];
+        int numActive = 0;
+        int next = 0;
+
+        final int startRow = Math.max(0, (int) Math.floor(edges.get(0).y0));
+
+        for (int j = startRow; j < height; j++)
+        {
+            // pixel center
+            final double yc = j + 0.5d;
+
+            // add edges starting before the row center
+            while ((next < numEdge) && (edges.get(next).y0 <= yc))
+                active[numActive++] = edges.get(next++);
+
+            // remove edges ending before the row center
+            int n = 0;
+            for (int e = 0; e < numActive; e++)
+                if (active[e].y1 > yc)
+                    active[n++] = active[e];
+            numActive = n;
+
+            // no more edges
+            if ((numActive == 0) && (next >= numEdge))
+                break;
+            if (numActive == 0)
+                continue;
+
+            // compute crossings (insertion sort on X as we usually have few crossings)
+            for (int e = 0; e < numActive; e++)
+            {
+                final double cx = active[e].getX(yc);
+                final int dir = active[e].dir;
+                int k = e;
+
+                while ((k > 0) && (xs[k - 1] > cx))
+                {
+                    xs[k] = xs[k - 1];
+                    dirs[k] = dirs[k - 1];
+                    k--;
+                }
+
+                xs[k] = cx;
+                dirs[k] = dir;
+            }
+
+            // fill spans
+            final int offset = j * width;
+            int winding = 0;
+
+            for (int e = 0; e < numActive - 1; e++)
+            {
+                if (nonZero)
+                    winding += dirs[e];
+                else
+                    winding ^= 1;
+
+                if (winding != 0)
+                {
+                    // pixels whose center is in [xs[e], xs[e + 1][
+                    final int start = Math.max(0, (int) Math.ceil(xs[e] - 0.5d));
+                    final int end = Math.min(width, (int) Math.ceil(xs[e + 1] - 0.5d));
+
+                    if (start < end)
+                        Arrays.fill(result, offset + start, offset + end, true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.image.IcyBufferedImage;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental channel bounds index for {@link Sequence}.<br>
+ * Keeps a copy of the channel bounds of each image and the count of each min / max value per
+ * channel (counted extremes) so global bounds are available in O(log N) when an image is added,
+ * removed or has its bounds changed, without scanning all images.<br>
+ * Internal use only.
+ */
+class ChannelBoundsIndex
+{
+    /**
+     * Sorted multiset of double values.
+     */
+    private static class Extremes
+    {
+        final TreeMap<Double, int[]> counts;
+
+        Extremes()
+        {
+            super();
+
+            counts = new TreeMap<Double, int[]>();
+        }
+
+        void add(double value)
+        {
+            final Double key = Double.valueOf(value);
+            final int[] count = counts.get(key);
+
+            if (count == null)
+                counts.put(key, new int[] {1});
+            else
+                count[0]++;
+        }
+
+        void remove(double value)
+        {
+            final Double key = Double.valueOf(value);
+            final int[] count = counts.get(key);
+
+            if (count != null)
+            {
+                if (--count[0] == 0)
+                    counts.remove(key);
+            }
+        }
+
+        boolean isEmpty()
+        {
+            return counts.isEmpty();
+        }
+
+        double getMin()
+        {
+            return counts.firstKey().doubleValue();
+        }
+
+        double getMax()
+        {
+            return counts.lastKey().doubleValue();
+        }
+    }
+
+    /**
+     * Bounds of a single channel (min and max values).
+     */
+    private static class ChannelExtremes
+    {
+        final Extremes mins;
+        final Extremes maxs;
+
+        ChannelExtremes()
+        {
+            super();
+
+            mins = new Extremes();
+            maxs = new Extremes();
+        }
+
+        void add(double[] bounds)
+        {
+            mins.add(bounds[0]);
+            maxs.add(bounds[1]);
+        }
+
+        void remove(double[] bounds)
+        {
+            mins.remove(bounds[0]);
+            maxs.remove(bounds[1]);
+        }
+    }
+
+    /**
+     * Bounds copy of an image.
+     */
+    private static class ImageBounds
+    {
+        final double[][] typeBounds;
+        final double[][] userBounds;
+
+        ImageBounds(IcyBufferedImage image)
+        {
+            super();
+
+            typeBounds = image.getChannelsTypeBounds();
+            userBounds = image.getChannelsBounds();
+        }
+    }
+
+    private final Map<IcyBufferedImage, ImageBounds> images;
+    private final List<ChannelExtremes> typeExtremes;
+    private final List<ChannelExtremes> userExtremes;
+
+    ChannelBoundsIndex()
+    {
+        super();
+
+        images = new IdentityHashMap<IcyBufferedImage, ImageBounds>();
+        typeExtremes = new ArrayList<ChannelExtremes>();
+        userExtremes = new ArrayList<ChannelExtremes>();
+    }
+
+    /**
+     * Add the specified image (replace its bounds if already present).
+     */
+    synchronized void add(IcyBufferedImage image)
+    {
+        final ImageBounds bounds = new ImageBounds(image);
+
+        unindex(images.put(image, bounds));
+        index(bounds);
+    }
+
+    /**
+     * Remove the specified image.
+     */
+    synchronized void remove(IcyBufferedImage image)
+    {
+        unindex(images.remove(image));
+    }
+
+    /**
+     * Update bounds of the specified image (does nothing if image is not present).
+     */
+    synchronized void update(IcyBufferedImage image)
+    {
+        if (images.containsKey(image))
+            add(image);
+    }
+
+    /**
+     * Returns <code>true</code> if the specified image is present.
+     */
+    synchronized boolean contains(IcyBufferedImage image)
+    {
+        return images.containsKey(image);
+    }
+
+    /**
+     * Remove all images.
+     */
+    synchronized void clear()
+    {
+        images.clear();
+        typeExtremes.clear();
+        userExtremes.clear();
+    }
+
+    /**
+     * Returns global type bounds of all images for the specified number of channel (<code>null</code>
+     * if not available).
+     */
+    synchronized double[][] getTypeBounds(int sizeC)
+    {
+        return getBounds(typeExtremes, sizeC);
+    }
+
+    /**
+     * Returns global user bounds of all images for the specified number of channel (<code>null</code>
+     * if not available).
+     */
+    synchronized double[][] getUserBounds(int sizeC)
+    {
+        return getBounds(userExtremes, sizeC);
+    }
+
+    private void index(ImageBounds bounds)
+    {
+        index(typeExtremes, bounds.typeBounds);
+        index(userExtremes, bounds.userBounds);
+    }
+
+    private void unindex(ImageBounds bounds)
+    {
+        if (bounds == null)
+            return;
+
+        unindex(typeExtremes, bounds.typeBounds);
+        unindex(userExtremes, bounds.userBounds);
+    }
+
+    private static void index(List<ChannelExtremes> extremes, double[][] bounds)
+    {
+        for (int c = 0; c < bounds.length; c++)
+        {
+            if (c >= extremes.size())
+                extremes.add(new ChannelExtremes());
+
+            extremes.get(c).add(bounds[c]);
+        }
+    }
+
+    private static void unindex(List<ChannelExtremes> extremes, double[][] bounds)
+    {
+        for (int c = 0; c < bounds.length; c++)
+            extremes.get(c).remove(bounds[c]);
+    }
+
+    private static double[][] getBounds(List<ChannelExtremes> extremes, int sizeC)
+    {
+        if (sizeC > extremes.size())
+            return null;
+
+        final double[][] result = new double[sizeC][];
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            final ChannelExtremes ext = extremes.get(c);
+
+            if (ext.mins.isEmpty())
+                return null;
+
+            result[c] = new double[] {ext.mins.getMin(), ext.maxs.getMax()};
+        }
+
+        return result;
+    }
+}
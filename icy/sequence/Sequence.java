@@ -71,6 +71,8 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.swing.event.EventListenerList;
 
@@ -88,7 +90,18 @@ import org.w3c.dom.Node;
  * <br>
  * The XYC dimensions are bounded into the {@link IcyBufferedImage} object so <code>Sequence</code>
  * define a list of {@link IcyBufferedImage} where each image is associated to a Z and T
- * information.
+ * information.<br>
+ * <br>
+ * Locking model :<br>
+ * The sequence structure (images, ROIs and overlays lists) is protected by a read / write lock
+ * per list: many threads can read the structure concurrently (getters use the read lock) while
+ * structural modifications (add / remove) use the write lock. Lists are always locked in this
+ * order: images, ROIs, overlays.<br>
+ * Use {@link #read(Runnable)} to get a consistent view of the whole structure across several
+ * calls and {@link #write(Runnable)} to apply several modifications atomically for readers. The
+ * structure cannot be modified from a read section (an {@link IllegalStateException} is thrown
+ * as lock upgrade would dead lock).<br>
+ * Image data (pixels) itself is not protected by these locks.
  * 
  * @author Fabrice de Chaumont & Stephane
  */
@@ -155,6 +168,12 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * ROIs
      */
     final Set<ROI> rois;
+    /**
+     * structure locks (see class description)
+     */
+    final ReentrantReadWriteLock imagesLock;
+    final ReentrantReadWriteLock roisLock;
+    final ReentrantReadWriteLock overlaysLock;
 
     /**
      * id of sequence (uniq during an Icy session)
@@ -220,11 +239,20 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * listeners
      */
     final EventListenerList listeners;
+    /**
+     * cached sequence listeners array (avoid allocation on each event)
+     */
+    private volatile SequenceListener[] cachedListeners;
+    /**
+     * asynchronous event dispatcher (<code>null</code> when events are dispatched synchronously)
+     */
+    private volatile SequenceEventDispatcher asyncDispatcher;
 
     /**
      * internals
      */
     boolean channelBoundsInvalid;
+    final ChannelBoundsIndex channelBoundsIndex;
 
     /**
      * Creates a new empty sequence with specified meta data object and name.
@@ -270,16 +298,22 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         volumetricImages = new TreeMap<Integer, VolumetricImage>();
         overlays = new HashSet<Overlay>();
         rois = new HashSet<ROI>();
+        imagesLock = new ReentrantReadWriteLock();
+        roisLock = new ReentrantReadWriteLock();
+        overlaysLock = new ReentrantReadWriteLock();
         persistent = new SequencePersistent(this);
         undoManager = new IcyUndoManager(this);
 
         updater = new UpdateEventHandler(this, false);
         listeners = new EventListenerList();
+        cachedListeners = null;
+        asyncDispatcher = null;
 
         // no colorModel yet
         colorModel = null;
         userLut = null;
         channelBoundsInvalid = false;
+        channelBoundsIndex = new ChannelBoundsIndex();
         // automatic update of channel bounds
         autoUpdateChannelBounds = true;
     }
@@ -375,15 +409,21 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 if (GeneralPreferences.getSequencePersistence())
                     saveXMLData();
 
-                synchronized (overlays)
+                lockWrite(overlaysLock);
+                try
                 {
                     for (Overlay overlay : overlays)
                         overlay.removeOverlayListener(Sequence.this);
 
                     overlays.clear();
                 }
+                finally
+                {
+                    overlaysLock.writeLock().unlock();
+                }
 
-                synchronized (rois)
+                lockWrite(roisLock);
+                try
                 {
                     // remove all listener on ROI
                     for (ROI roi : rois)
@@ -391,6 +431,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
                     rois.clear();
                 }
+                finally
+                {
+                    roisLock.writeLock().unlock();
+                }
             }
         }))
         {
@@ -402,7 +446,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         fireClosedEvent();
     }
 
-    private void setColorModel(IcyColorModel cm)
+    void setColorModel(IcyColorModel cm)
     {
         // remove listener
         if (colorModel != null)
@@ -490,10 +534,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public TreeMap<Integer, VolumetricImage> getVolumetricImages()
     {
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             return new TreeMap<Integer, VolumetricImage>(volumetricImages);
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
     }
 
     /**
@@ -501,10 +550,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ArrayList<VolumetricImage> getAllVolumetricImage()
     {
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             return new ArrayList<VolumetricImage>(volumetricImages.values());
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
     }
 
     /**
@@ -872,7 +926,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public void addListener(SequenceListener listener)
     {
-        listeners.add(SequenceListener.class, listener);
+        synchronized (listeners)
+        {
+            listeners.add(SequenceListener.class, listener);
+            cachedListeners = null;
+
+            final SequenceEventDispatcher dispatcher = asyncDispatcher;
+            if (dispatcher != null)
+                dispatcher.add(listener);
+        }
     }
 
     /**
@@ -880,7 +942,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public void removeListener(SequenceListener listener)
     {
-        listeners.remove(SequenceListener.class, listener);
+        synchronized (listeners)
+        {
+            listeners.remove(SequenceListener.class, listener);
+            cachedListeners = null;
+
+            final SequenceEventDispatcher dispatcher = asyncDispatcher;
+            if (dispatcher != null)
+                dispatcher.remove(listener);
+        }
     }
 
     /**
@@ -891,6 +961,78 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         return listeners.getListeners(SequenceListener.class);
     }
 
+    /**
+     * Returns the cached sequence listeners array (should not be modified)
+     */
+    private SequenceListener[] getCachedListeners()
+    {
+        SequenceListener[] result = cachedListeners;
+
+        if (result == null)
+        {
+            synchronized (listeners)
+            {
+                result = listeners.getListeners(SequenceListener.class);
+                cachedListeners = result;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link SequenceEvent} are dispatched asynchronously to listeners
+     * (see {@link #setAsyncEventDispatch(boolean)}).
+     */
+    public boolean isAsyncEventDispatch()
+    {
+        return asyncDispatcher != null;
+    }
+
+    /**
+     * Enable or disable asynchronous {@link SequenceEvent} dispatch.<br>
+     * When enabled, events are queued per listener and delivered from a background thread so slow
+     * listeners don't slow down the thread modifying the sequence. Pending events are collapsed
+     * when possible so a listener may receive less (but merged) events.<br>
+     * Default is disabled (events are dispatched synchronously on the modifying thread).
+     */
+    public void setAsyncEventDispatch(boolean value)
+    {
+        if (value == isAsyncEventDispatch())
+            return;
+
+        synchronized (listeners)
+        {
+            if (value)
+            {
+                final SequenceEventDispatcher dispatcher = new SequenceEventDispatcher(this);
+
+                for (SequenceListener listener : listeners.getListeners(SequenceListener.class))
+                    dispatcher.add(listener);
+
+                asyncDispatcher = dispatcher;
+            }
+            // already queued events are still delivered
+            else
+                asyncDispatcher = null;
+        }
+    }
+
+    /**
+     * Returns the asynchronous event dispatch statistics (latency...) for the specified listener.<br>
+     * Returns <code>null</code> if asynchronous dispatch is disabled or if the listener didn't
+     * receive any event yet.
+     */
+    public SequenceEventDispatcher.Statistics getEventDispatchStatistics(SequenceListener listener)
+    {
+        final SequenceEventDispatcher dispatcher = asyncDispatcher;
+
+        if (dispatcher == null)
+            return null;
+
+        return dispatcher.getStatistics(listener);
+    }
+
     /**
      * Add the specified {@link icy.sequence.SequenceModel.SequenceModelListener} to listeners list
      */
@@ -938,10 +1080,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if (overlay == null)
             return false;
 
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             return overlays.contains(overlay);
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
     }
 
     /**
@@ -952,10 +1099,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if (roi == null)
             return false;
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             return rois.contains(roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
     }
 
     /**
@@ -975,7 +1127,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<Painter> result = new ArrayList<Painter>(overlays.size());
 
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             for (Overlay overlay : overlays)
             {
@@ -985,6 +1138,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                     result.add(overlay);
             }
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -997,7 +1154,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final HashSet<Painter> result = new HashSet<Painter>(overlays.size());
 
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             for (Overlay overlay : overlays)
             {
@@ -1007,6 +1165,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                     result.add(overlay);
             }
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1019,7 +1181,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<Painter> result = new ArrayList<Painter>(overlays.size());
 
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             for (Overlay overlay : overlays)
             {
@@ -1035,6 +1198,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 }
             }
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1052,10 +1219,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public List<Overlay> getOverlays()
     {
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             return new ArrayList<Overlay>(overlays);
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
     }
 
     /**
@@ -1063,10 +1235,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public Set<Overlay> getOverlaySet()
     {
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             return new HashSet<Overlay>(overlays);
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
     }
 
     /**
@@ -1076,12 +1253,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final List<Overlay> result = new ArrayList<Overlay>(overlays.size());
 
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             for (Overlay overlay : overlays)
                 if (overlay.getClass().isAssignableFrom(overlayClass))
                     result.add(overlay);
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1099,10 +1281,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ArrayList<ROI> getROIs()
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             return new ArrayList<ROI>(rois);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
     }
 
     /**
@@ -1110,10 +1297,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public HashSet<ROI> getROISet()
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             return new HashSet<ROI>(rois);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
     }
 
     /**
@@ -1123,12 +1315,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<ROI2D> result = new ArrayList<ROI2D>(rois.size());
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi instanceof ROI2D)
                     result.add((ROI2D) roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1140,12 +1337,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<ROI3D> result = new ArrayList<ROI3D>(rois.size());
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi instanceof ROI3D)
                     result.add((ROI3D) roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1155,12 +1357,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public boolean hasROI(Class<? extends ROI> roiClass)
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi.getClass().isAssignableFrom(roiClass))
                     return true;
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return false;
     }
@@ -1172,12 +1379,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<ROI> result = new ArrayList<ROI>(rois.size());
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi.getClass().isAssignableFrom(roiClass))
                     result.add(roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1189,12 +1401,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         int result = 0;
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi.getClass().isAssignableFrom(roiClass))
                     result++;
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1204,12 +1421,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ROI getSelectedROI()
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi.isSelected())
                     return roi;
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return null;
     }
@@ -1219,12 +1441,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ROI2D getSelectedROI2D()
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if ((roi instanceof ROI2D) && roi.isSelected())
                     return (ROI2D) roi;
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return null;
     }
@@ -1234,12 +1461,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ROI3D getSelectedROI3D()
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if ((roi instanceof ROI3D) && roi.isSelected())
                     return (ROI3D) roi;
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return null;
     }
@@ -1251,12 +1483,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<ROI> result = new ArrayList<ROI>(rois.size());
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi.isSelected())
                     result.add(roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1268,12 +1505,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<ROI2D> result = new ArrayList<ROI2D>(rois.size());
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if ((roi instanceof ROI2D) && roi.isSelected())
                     result.add((ROI2D) roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1285,12 +1527,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<ROI3D> result = new ArrayList<ROI3D>(rois.size());
 
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if ((roi instanceof ROI3D) && roi.isSelected())
                     result.add((ROI3D) roi);
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -1300,12 +1547,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ROI getFocusedROI()
     {
-        synchronized (rois)
+        roisLock.readLock().lock();
+        try
         {
             for (ROI roi : rois)
                 if (roi.isFocused())
                     return roi;
         }
+        finally
+        {
+            roisLock.readLock().unlock();
+        }
 
         return null;
     }
@@ -1325,12 +1577,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         beginUpdate();
         try
         {
-            synchronized (rois)
-            {
-                for (ROI currentRoi : rois)
-                    if (currentRoi != roi)
-                        currentRoi.setSelected(false);
-            }
+            // work on a copy as ROI listeners are notified synchronously
+            for (ROI currentRoi : getROIs())
+                if (currentRoi != roi)
+                    currentRoi.setSelected(false);
 
             if (contains(roi))
             {
@@ -1473,10 +1723,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if ((roi == null) || contains(roi))
             return false;
 
-        synchronized (rois)
+        lockWrite(roisLock);
+        try
         {
             rois.add(roi);
         }
+        finally
+        {
+            roisLock.writeLock().unlock();
+        }
         // add listener to ROI
         roi.addListener(this);
         // notify roi added
@@ -1520,10 +1775,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
             removeOverlay(roi.getOverlay());
 
             // remove ROI
-            synchronized (rois)
+            lockWrite(roisLock);
+            try
             {
                 rois.remove(roi);
             }
+            finally
+            {
+                roisLock.writeLock().unlock();
+            }
             // remove listener
             roi.removeListener(this);
             // notify roi removed
@@ -1568,7 +1828,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         beginUpdate();
         try
         {
-            synchronized (rois)
+            lockWrite(roisLock);
+            try
             {
                 for (ROI roi : getROIs())
                 {
@@ -1588,6 +1849,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                     }
                 }
             }
+            finally
+            {
+                roisLock.writeLock().unlock();
+            }
 
             if (canUndo)
                 undoManager.addEdit(new ROIRemovesEdit(this, undoList));
@@ -1620,7 +1885,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         {
             final List<ROI> allROIs = getROIs();
 
-            synchronized (overlays)
+            lockWrite(overlaysLock);
+            try
             {
                 // remove associated painters first
                 for (ROI roi : allROIs)
@@ -1633,15 +1899,24 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                     overlays.remove(overlay);
                 }
             }
+            finally
+            {
+                overlaysLock.writeLock().unlock();
+            }
 
             // notify overlays removed
             overlayChanged(null, SequenceEventType.REMOVED);
 
-            synchronized (rois)
+            lockWrite(roisLock);
+            try
             {
                 // clear list
                 rois.clear();
             }
+            finally
+            {
+                roisLock.writeLock().unlock();
+            }
 
             // remove listeners
             for (ROI roi : allROIs)
@@ -1665,13 +1940,18 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if (painter instanceof Overlay)
             return (Overlay) painter;
 
-        synchronized (overlays)
+        overlaysLock.readLock().lock();
+        try
         {
             for (Overlay overlay : overlays)
                 if (overlay instanceof OverlayWrapper)
                     if (((OverlayWrapper) overlay).getPainter() == painter)
                         return overlay;
         }
+        finally
+        {
+            overlaysLock.readLock().unlock();
+        }
 
         return null;
     }
@@ -1713,10 +1993,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if ((overlay == null) || contains(overlay))
             return false;
 
-        synchronized (overlays)
+        lockWrite(overlaysLock);
+        try
         {
             overlays.add(overlay);
         }
+        finally
+        {
+            overlaysLock.writeLock().unlock();
+        }
 
         // add listener
         overlay.addOverlayListener(this);
@@ -1733,10 +2018,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         boolean result;
 
-        synchronized (overlays)
+        lockWrite(overlaysLock);
+        try
         {
             result = overlays.remove(overlay);
         }
+        finally
+        {
+            overlaysLock.writeLock().unlock();
+        }
 
         if (result)
         {
@@ -1754,10 +2044,24 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public VolumetricImage getVolumetricImage(int t)
     {
-        synchronized (volumetricImages)
+        return getResidentVolumetricImage(t);
+    }
+
+    /**
+     * Returns the VolumetricImage stored in the sequence structure at position t (internal use
+     * only, subclasses may override {@link #getVolumetricImage(int)}).
+     */
+    VolumetricImage getResidentVolumetricImage(int t)
+    {
+        imagesLock.readLock().lock();
+        try
         {
             return volumetricImages.get(Integer.valueOf(t));
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
     }
 
     /**
@@ -1767,10 +2071,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final Entry<Integer, VolumetricImage> entry;
 
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             entry = volumetricImages.firstEntry();
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
 
         if (entry != null)
             return entry.getValue();
@@ -1785,10 +2094,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final Entry<Integer, VolumetricImage> entry;
 
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             entry = volumetricImages.lastEntry();
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
 
         if (entry != null)
             return entry.getValue();
@@ -1814,10 +2128,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
         final VolumetricImage volImg = new VolumetricImage(this);
 
-        synchronized (volumetricImages)
+        lockWrite(imagesLock);
+        try
         {
             volumetricImages.put(new Integer(t), volImg);
         }
+        finally
+        {
+            imagesLock.writeLock().unlock();
+        }
 
         return volImg;
     }
@@ -1867,7 +2186,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public IcyBufferedImage getLastImage(int t)
     {
-        final VolumetricImage volImg = getVolumetricImage(t);
+        final VolumetricImage volImg = getResidentVolumetricImage(t);
 
         if (volImg != null)
             return volImg.getLastImage();
@@ -1893,7 +2212,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public IcyBufferedImage getFirstNonNullImage()
     {
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             for (VolumetricImage volImg : volumetricImages.values())
             {
@@ -1905,6 +2225,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 }
             }
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
 
         return null;
     }
@@ -1952,7 +2276,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     @Override
     public IcyBufferedImage getImage(int t, int z)
     {
-        final VolumetricImage volImg = getVolumetricImage(t);
+        final VolumetricImage volImg = getResidentVolumetricImage(t);
 
         if (volImg != null)
             return volImg.getImage(z);
@@ -1965,7 +2289,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public ArrayList<IcyBufferedImage> getImages(int t)
     {
-        final VolumetricImage volImg = getVolumetricImage(t);
+        final VolumetricImage volImg = getResidentVolumetricImage(t);
 
         if (volImg != null)
             return volImg.getAllImage();
@@ -1980,7 +2304,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final ArrayList<IcyBufferedImage> result = new ArrayList<IcyBufferedImage>();
 
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             for (VolumetricImage volImg : volumetricImages.values())
             {
@@ -1990,6 +2315,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 }
             }
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -2049,7 +2378,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if (image == null)
             return;
 
-        VolumetricImage volImg = getVolumetricImage(t);
+        VolumetricImage volImg = getResidentVolumetricImage(t);
 
         if (volImg == null)
         {
@@ -2100,7 +2429,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public boolean removeImage(int t, int z)
     {
-        final VolumetricImage volImg = getVolumetricImage(t);
+        final VolumetricImage volImg = getResidentVolumetricImage(t);
 
         if (volImg != null)
         {
@@ -2134,10 +2463,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         final VolumetricImage volImg;
 
-        synchronized (volumetricImages)
+        lockWrite(imagesLock);
+        try
         {
             volImg = volumetricImages.remove(Integer.valueOf(t));
         }
+        finally
+        {
+            imagesLock.writeLock().unlock();
+        }
 
         // we do manual clear to dispatch events correctly
         if (volImg != null)
@@ -2154,7 +2488,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         beginUpdate();
         try
         {
-            synchronized (volumetricImages)
+            lockWrite(imagesLock);
+            try
             {
                 while (!volumetricImages.isEmpty())
                 {
@@ -2164,6 +2499,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                         volImg.clear();
                 }
             }
+            finally
+            {
+                imagesLock.writeLock().unlock();
+            }
         }
         finally
         {
@@ -2197,7 +2536,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         beginUpdate();
         try
         {
-            synchronized (volumetricImages)
+            lockWrite(imagesLock);
+            try
             {
                 for (Entry<Integer, VolumetricImage> entry : volumetricImages.entrySet())
                 {
@@ -2217,6 +2557,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                     }
                 }
             }
+            finally
+            {
+                imagesLock.writeLock().unlock();
+            }
         }
         finally
         {
@@ -2231,12 +2575,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         int result = 0;
 
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             for (VolumetricImage volImg : volumetricImages.values())
                 if (volImg != null)
                     result += volImg.getNumImage();
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
 
         return result;
     }
@@ -2246,12 +2595,17 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public boolean isEmpty()
     {
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             for (VolumetricImage volImg : volumetricImages.values())
                 if ((volImg != null) && (!volImg.isEmpty()))
                     return false;
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
 
         return true;
     }
@@ -2291,13 +2645,18 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     @Override
     public int getSizeT()
     {
-        synchronized (volumetricImages)
+        imagesLock.readLock().lock();
+        try
         {
             if (volumetricImages.isEmpty())
                 return 0;
 
             return volumetricImages.lastKey().intValue() + 1;
         }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
     }
 
     /**
@@ -2337,7 +2696,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if (t == -1)
             return getSizeZ();
 
-        final VolumetricImage volImg = getVolumetricImage(t);
+        final VolumetricImage volImg = getResidentVolumetricImage(t);
 
         if (volImg != null)
             return volImg.getSize();
@@ -2647,7 +3006,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     /**
      * Internal use only.
      */
-    private double[][] adjustBounds(double[][] curBounds, double[][] bounds)
+    double[][] adjustBounds(double[][] curBounds, double[][] bounds)
     {
         if (bounds == null)
             return curBounds;
@@ -2676,15 +3035,47 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if ((colorModel == null) || isEmpty())
             return;
 
-        final ArrayList<VolumetricImage> volumes = getAllVolumetricImage();
+        final ArrayList<IcyBufferedImage> images = new ArrayList<IcyBufferedImage>();
+
+        for (VolumetricImage volImg : getAllVolumetricImage())
+            images.addAll(volImg.getAllImage());
 
         beginUpdate();
         try
         {
             // recalculate images bounds (automatically update sequence bounds with event)
-            for (VolumetricImage volImg : volumes)
-                for (IcyBufferedImage img : volImg.getAllImage())
+            if (images.size() <= 1)
+            {
+                for (IcyBufferedImage img : images)
                     img.updateChannelsBounds();
+            }
+            else
+            {
+                // images are independent so we can process them in parallel (shared processor)
+                final List<Runnable> tasks = new ArrayList<Runnable>(images.size());
+
+                for (final IcyBufferedImage img : images)
+                {
+                    tasks.add(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            img.updateChannelsBounds();
+                        }
+                    });
+                }
+
+                try
+                {
+                    ThreadUtil.getComputeProcessor().runAll(tasks);
+                }
+                catch (InterruptedException e)
+                {
+                    // restore interrupted state
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
         finally
         {
@@ -2695,6 +3086,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     /**
      * Update channels bounds (min and max values)<br>
      * At this point we assume images has correct channels bounds information.<br>
+     * Bounds are retrieved from the channel bounds index which is incrementally updated on image
+     * add / remove / bounds change so we don't need to scan all images here.<br>
      * Internal use only.
      */
     private void internalUpdateChannelsBounds()
@@ -2703,41 +3096,19 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         if ((colorModel == null) || isEmpty())
             return;
 
-        double[][] bounds;
-
-        bounds = null;
-        // recalculate bounds from all images
-        synchronized (volumetricImages)
-        {
-            for (VolumetricImage volImg : volumetricImages.values())
-            {
-                synchronized (volImg.images)
-                {
-                    for (IcyBufferedImage img : volImg.images.values())
-                        bounds = adjustBounds(img.getChannelsTypeBounds(), bounds);
-                }
-            }
-        }
+        final int sizeC = colorModel.getNumComponents();
+        final double[][] typeBounds = channelBoundsIndex.getTypeBounds(sizeC);
 
-        // set new computed bounds
-        colorModel.setComponentsAbsBounds(bounds);
+        // no image bounds available (virtual sequence) --> keep current bounds
+        if (typeBounds == null)
+            return;
 
-        bounds = null;
-        // recalculate user bounds from all images
-        synchronized (volumetricImages)
-        {
-            for (VolumetricImage volImg : volumetricImages.values())
-            {
-                synchronized (volImg.images)
-                {
-                    for (IcyBufferedImage img : volImg.images.values())
-                        bounds = adjustBounds(img.getChannelsBounds(), bounds);
-                }
-            }
-        }
+        final double[][] userBounds = channelBoundsIndex.getUserBounds(sizeC);
 
         // set new computed bounds
-        colorModel.setComponentsUserBounds(bounds);
+        colorModel.setComponentsAbsBounds(typeBounds);
+        if (userBounds != null)
+            colorModel.setComponentsUserBounds(userBounds);
     }
 
     /**
@@ -5278,6 +5649,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
         // add listener to image
         image.addListener(this);
+        // index image bounds
+        channelBoundsIndex.add(image);
 
         // notify changed
         dataChanged(image, SequenceEventType.ADDED);
@@ -5307,11 +5680,13 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
             // remove listener from old image
             oldImage.removeListener(this);
+            channelBoundsIndex.remove(oldImage);
             // notify about old image remove
             dataChanged(oldImage, SequenceEventType.REMOVED);
 
             // add listener to new image
             newImage.addListener(this);
+            channelBoundsIndex.add(newImage);
             // notify about new image added
             dataChanged(newImage, SequenceEventType.ADDED);
         }
@@ -5335,6 +5710,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
         // remove listener from image
         image.removeListener(this);
+        channelBoundsIndex.remove(image);
 
         // notify changed
         dataChanged(image, SequenceEventType.REMOVED);
@@ -5346,8 +5722,16 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     @SuppressWarnings("deprecation")
     private void fireChangedEvent(SequenceEvent e)
     {
-        for (SequenceListener listener : listeners.getListeners(SequenceListener.class))
-            listener.sequenceChanged(e);
+        final SequenceListener[] seqListeners = getCachedListeners();
+        final SequenceEventDispatcher dispatcher = asyncDispatcher;
+
+        if (dispatcher != null)
+            dispatcher.dispatch(seqListeners, e);
+        else
+        {
+            for (SequenceListener listener : seqListeners)
+                listener.sequenceChanged(e);
+        }
 
         // provide backward compatibility for painter
         if (e.getSourceType() == SequenceEventSourceType.SEQUENCE_OVERLAY)
@@ -5362,8 +5746,13 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
             final SequenceEvent event = new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_PAINTER, painter,
                     e.getType(), e.getParam());
 
-            for (SequenceListener listener : listeners.getListeners(SequenceListener.class))
-                listener.sequenceChanged(event);
+            if (dispatcher != null)
+                dispatcher.dispatch(seqListeners, event);
+            else
+            {
+                for (SequenceListener listener : seqListeners)
+                    listener.sequenceChanged(event);
+            }
         }
     }
 
@@ -5372,8 +5761,16 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     private void fireClosedEvent()
     {
-        for (SequenceListener listener : listeners.getListeners(SequenceListener.class))
-            listener.sequenceClosed(this);
+        final SequenceListener[] seqListeners = getCachedListeners();
+        final SequenceEventDispatcher dispatcher = asyncDispatcher;
+
+        if (dispatcher != null)
+            dispatcher.dispatchClosed(seqListeners);
+        else
+        {
+            for (SequenceListener listener : seqListeners)
+                listener.sequenceClosed(this);
+        }
     }
 
     /**
@@ -5423,6 +5820,157 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         return updater.isUpdating();
     }
 
+    /**
+     * Acquire the write lock of the specified structure lock (internal use only).
+     * 
+     * @throws IllegalStateException
+     *         if the current thread holds the read lock (lock upgrade would dead lock)
+     */
+    static void lockWrite(ReentrantReadWriteLock lock)
+    {
+        if ((lock.getReadHoldCount() > 0) && !lock.isWriteLockedByCurrentThread())
+            throw new IllegalStateException("Sequence structure cannot be modified from a read section.");
+
+        lock.writeLock().lock();
+    }
+
+    private void lockReadAll()
+    {
+        imagesLock.readLock().lock();
+        roisLock.readLock().lock();
+        overlaysLock.readLock().lock();
+    }
+
+    private void unlockReadAll()
+    {
+        overlaysLock.readLock().unlock();
+        roisLock.readLock().unlock();
+        imagesLock.readLock().unlock();
+    }
+
+    private void lockWriteAll()
+    {
+        lockWrite(imagesLock);
+        try
+        {
+            lockWrite(roisLock);
+            try
+            {
+                lockWrite(overlaysLock);
+            }
+            catch (IllegalStateException e)
+            {
+                roisLock.writeLock().unlock();
+                throw e;
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            imagesLock.writeLock().unlock();
+            throw e;
+        }
+    }
+
+    private void unlockWriteAll()
+    {
+        overlaysLock.writeLock().unlock();
+        roisLock.writeLock().unlock();
+        imagesLock.writeLock().unlock();
+    }
+
+    /**
+     * Execute the specified task in a read section: the sequence structure (images, ROIs and
+     * overlays lists) cannot be modified by another thread during the task execution.<br>
+     * Several threads can be in a read section at the same time.
+     */
+    public void read(Runnable task)
+    {
+        lockReadAll();
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            unlockReadAll();
+        }
+    }
+
+    /**
+     * Execute the specified task in a read section and returns its result.
+     * 
+     * @see #read(Runnable)
+     */
+    public <T> T read(Callable<T> task) throws Exception
+    {
+        lockReadAll();
+        try
+        {
+            return task.call();
+        }
+        finally
+        {
+            unlockReadAll();
+        }
+    }
+
+    /**
+     * Execute the specified task in a write section: other threads cannot read or modify the
+     * sequence structure until the task is done so they never see partial modifications.<br>
+     * Sequence events are fired at the end of the section (after the lock release) but listeners
+     * of modified objects (ROI, image...) are still notified synchronously so the task should not
+     * wait for another thread reading the sequence.
+     * 
+     * @throws IllegalStateException
+     *         if called from a read section
+     */
+    public void write(Runnable task)
+    {
+        beginUpdate();
+        try
+        {
+            lockWriteAll();
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                unlockWriteAll();
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Execute the specified task in a write section and returns its result.
+     * 
+     * @see #write(Runnable)
+     */
+    public <T> T write(Callable<T> task) throws Exception
+    {
+        beginUpdate();
+        try
+        {
+            lockWriteAll();
+            try
+            {
+                return task.call();
+            }
+            finally
+            {
+                unlockWriteAll();
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
     /**
      * sequence meta has changed
      */
@@ -5542,7 +6090,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     private void dataChanged(IcyBufferedImage image, SequenceEventType type)
     {
-        updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_DATA, image, type, 0));
+        dataChanged(image, type, null);
+    }
+
+    /**
+     * data has changed in the specified image region (<code>null</code> means the whole image)
+     */
+    private void dataChanged(IcyBufferedImage image, SequenceEventType type, Rectangle region)
+    {
+        updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_DATA, image, type, 0, region));
     }
 
     @Override
@@ -5568,6 +6124,9 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         switch (e.getType())
         {
             case BOUNDS_CHANGED:
+                // keep image bounds index up to date
+                channelBoundsIndex.update(image);
+
                 // update sequence channel bounds
                 if (autoUpdateChannelBounds)
                 {
@@ -5585,8 +6144,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 break;
 
             case DATA_CHANGED:
-                // image data changed
-                dataChanged(image, SequenceEventType.CHANGED);
+                // image data changed (keep trace of modified region)
+                dataChanged(image, SequenceEventType.CHANGED, e.getRegion());
                 break;
         }
     }
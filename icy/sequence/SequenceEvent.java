@@ -19,9 +19,12 @@
 package icy.sequence;
 
 import icy.common.EventHierarchicalChecker;
+import icy.common.EventHierarchicalGroup;
 import icy.util.StringUtil;
 
-public class SequenceEvent implements EventHierarchicalChecker
+import java.awt.Rectangle;
+
+public class SequenceEvent implements EventHierarchicalGroup
 {
     public enum SequenceEventSourceType
     {
@@ -43,6 +46,7 @@ public class SequenceEvent implements EventHierarchicalChecker
     private SequenceEventType type;
     private Object source;
     private int param;
+    private Rectangle region;
 
     public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType)
     {
@@ -71,6 +75,12 @@ public class SequenceEvent implements EventHierarchicalChecker
 
     public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType, Object source, SequenceEventType type,
             int param)
+    {
+        this(sequence, sourceType, source, type, param, null);
+    }
+
+    public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType, Object source, SequenceEventType type,
+            int param, Rectangle region)
     {
         super();
 
@@ -79,6 +89,7 @@ public class SequenceEvent implements EventHierarchicalChecker
         this.source = source;
         this.type = type;
         this.param = param;
+        this.region = region;
     }
 
     /**
@@ -157,6 +168,16 @@ public class SequenceEvent implements EventHierarchicalChecker
         return param;
     }
 
+    /**
+     * Modified image region when <code>sourceType</code> is <code>SEQUENCE_DATA</code> and
+     * <code>type</code> is <code>SequenceEventType.CHANGED</code>.<br>
+     * <code>null</code> means the whole image (or severals images) has changed.
+     */
+    public Rectangle getRegion()
+    {
+        return region;
+    }
+
     /**
      * Collapse event
      */
@@ -181,9 +202,20 @@ public class SequenceEvent implements EventHierarchicalChecker
                 case SEQUENCE_DATA:
                     // optimize different type event to a single CHANGED event (for DATA only)
                     if (e.getType() != type)
+                    {
                         type = SequenceEventType.CHANGED;
+                        region = null;
+                    }
                     if (e.getSource() != source)
+                    {
                         source = null;
+                        region = null;
+                    }
+                    // join modified regions
+                    if ((region != null) && (e.getRegion() != null))
+                        region = region.union(e.getRegion());
+                    else
+                        region = null;
                     return true;
 
                 case SEQUENCE_PAINTER:
@@ -207,6 +239,13 @@ public class SequenceEvent implements EventHierarchicalChecker
         return false;
     }
 
+    @Override
+    public Object getEventGroupKey()
+    {
+        // only events with same sourceType can be collapsed
+        return sourceType;
+    }
+
     @Override
     public boolean isEventRedundantWith(EventHierarchicalChecker event)
     {
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.Processor;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Asynchronous {@link SequenceEvent} dispatcher.<br>
+ * Each listener has its own event queue processed in a background thread so a slow listener
+ * doesn't block the thread modifying the sequence. A new event is collapsed into the last pending
+ * event with
+ * {@link SequenceEvent#isEventRedundantWith(icy.common.EventHierarchicalChecker)} so a listener
+ * falling behind only receives the coalesced changes.<br>
+ * Events are always delivered in order for a given listener.<br>
+ * Dispatch latency (delay between the event emission and its delivery) is measured per listener
+ * (see {@link #getStatistics(SequenceListener)}).
+ */
+public class SequenceEventDispatcher
+{
+    /**
+     * Dispatch statistics of a listener.
+     */
+    public static class Statistics
+    {
+        long numEvents;
+        long numCollapsed;
+        long totalLatency;
+        long maxLatency;
+        long lastLatency;
+        long totalProcessTime;
+
+        Statistics()
+        {
+            super();
+        }
+
+        Statistics(Statistics stats)
+        {
+            super();
+
+            numEvents = stats.numEvents;
+            numCollapsed = stats.numCollapsed;
+            totalLatency = stats.totalLatency;
+            maxLatency = stats.maxLatency;
+            lastLatency = stats.lastLatency;
+            totalProcessTime = stats.totalProcessTime;
+        }
+
+        /**
+         * Returns the number of events delivered to the listener.
+         */
+        public long getNumEvents()
+        {
+            return numEvents;
+        }
+
+        /**
+         * Returns the number of events collapsed with a pending event (not delivered).
+         */
+        public long getNumCollapsed()
+        {
+            return numCollapsed;
+        }
+
+        /**
+         * Returns the mean dispatch latency (in ms).
+         */
+        public double getMeanLatency()
+        {
+            if (numEvents == 0)
+                return 0d;
+
+            return (totalLatency / 1000000d) / numEvents;
+        }
+
+        /**
+         * Returns the maximum dispatch latency (in ms).
+         */
+        public double getMaxLatency()
+        {
+            return maxLatency / 1000000d;
+        }
+
+        /**
+         * Returns the dispatch latency of the last delivered event (in ms).
+         */
+        public double getLastLatency()
+        {
+            return lastLatency / 1000000d;
+        }
+
+        /**
+         * Returns the mean time spent in the listener per event (in ms).
+         */
+        public double getMeanProcessTime()
+        {
+            if (numEvents == 0)
+                return 0d;
+
+            return (totalProcessTime / 1000000d) / numEvents;
+        }
+    }
+
+    private static class PendingEvent
+    {
+        // null for sequence closed event
+        final SequenceEvent event;
+        final long time;
+
+        PendingEvent(SequenceEvent event)
+        {
+            super();
+
+            this.event = event;
+            time = System.nanoTime();
+        }
+    }
+
+    private class ListenerQueue implements Runnable
+    {
+        final SequenceListener listener;
+        final LinkedList<PendingEvent> pendingEvents;
+        final Statistics statistics;
+
+        boolean scheduled;
+        boolean removed;
+
+        ListenerQueue(SequenceListener listener)
+        {
+            super();
+
+            this.listener = listener;
+            pendingEvents = new LinkedList<PendingEvent>();
+            statistics = new Statistics();
+            scheduled = false;
+            removed = false;
+        }
+
+        synchronized void add(SequenceEvent event)
+        {
+            if (removed)
+                return;
+
+            if (event != null)
+            {
+                // only collapse with the last pending event so we preserve events order
+                final PendingEvent last = pendingEvents.peekLast();
+
+                if ((last != null) && (last.event != null) && last.event.isEventRedundantWith(event))
+                {
+                    statistics.numCollapsed++;
+                    return;
+                }
+
+                // use a copy as pending events can be modified when collapsed
+                pendingEvents.add(new PendingEvent(new SequenceEvent(event.getSequence(), event.getSourceType(),
+                        event.getSource(), event.getType(), event.getParam(), event.getRegion())));
+            }
+            else
+                pendingEvents.add(new PendingEvent(null));
+
+            if (!scheduled)
+            {
+                scheduled = true;
+                processor.submit(this);
+            }
+        }
+
+        synchronized void remove()
+        {
+            removed = true;
+            pendingEvents.clear();
+        }
+
+        synchronized Statistics getStatistics()
+        {
+            return new Statistics(statistics);
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final PendingEvent pending;
+
+                synchronized (this)
+                {
+                    if (pendingEvents.isEmpty())
+                    {
+                        scheduled = false;
+                        return;
+                    }
+
+                    pending = pendingEvents.removeFirst();
+                }
+
+                final long start = System.nanoTime();
+
+                try
+                {
+                    if (pending.event != null)
+                        listener.sequenceChanged(pending.event);
+                    else
+                        listener.sequenceClosed(sequence);
+                }
+                catch (Throwable t)
+                {
+                    IcyExceptionHandler.showErrorMessage(t, true);
+                }
+
+                final long end = System.nanoTime();
+
+                synchronized (this)
+                {
+                    final long latency = start - pending.time;
+
+                    statistics.numEvents++;
+                    statistics.totalLatency += latency;
+                    statistics.lastLatency = latency;
+                    if (latency > statistics.maxLatency)
+                        statistics.maxLatency = latency;
+                    statistics.totalProcessTime += end - start;
+                }
+            }
+        }
+    }
+
+    /**
+     * shared dispatcher threads
+     */
+    static final Processor processor;
+
+    static
+    {
+        processor = new Processor(-1, Math.max(2, Math.min(SystemUtil.getAvailableProcessors(), 4)));
+        processor.setDefaultThreadName("Sequence event dispatcher");
+    }
+
+    final Sequence sequence;
+    private final Map<SequenceListener, ListenerQueue> queues;
+
+    SequenceEventDispatcher(Sequence sequence)
+    {
+        super();
+
+        this.sequence = sequence;
+        queues = new IdentityHashMap<SequenceListener, ListenerQueue>();
+    }
+
+    private synchronized ListenerQueue getQueue(SequenceListener listener)
+    {
+        return queues.get(listener);
+    }
+
+    /**
+     * Add the specified listener (events are only queued for added listeners).
+     */
+    synchronized void add(SequenceListener listener)
+    {
+        if (!queues.containsKey(listener))
+            queues.put(listener, new ListenerQueue(listener));
+    }
+
+    /**
+     * Queue the specified event for the specified listeners.<br>
+     * Listeners removed in the meantime are ignored.
+     */
+    void dispatch(SequenceListener[] listeners, SequenceEvent event)
+    {
+        for (SequenceListener listener : listeners)
+        {
+            final ListenerQueue queue = getQueue(listener);
+
+            if (queue != null)
+                queue.add(event);
+        }
+    }
+
+    /**
+     * Queue the sequence closed event for the specified listeners.<br>
+     * Listeners removed in the meantime are ignored.
+     */
+    void dispatchClosed(SequenceListener[] listeners)
+    {
+        for (SequenceListener listener : listeners)
+        {
+            final ListenerQueue queue = getQueue(listener);
+
+            if (queue != null)
+                queue.add(null);
+        }
+    }
+
+    /**
+     * Remove the specified listener (pending events are discarded).
+     */
+    synchronized void remove(SequenceListener listener)
+    {
+        final ListenerQueue queue = queues.remove(listener);
+
+        if (queue != null)
+            queue.remove();
+    }
+
+    /**
+     * Remove all listeners (pending events are discarded).
+     */
+    synchronized void clear()
+    {
+        for (Iterator<ListenerQueue> it = queues.values().iterator(); it.hasNext();)
+        {
+            it.next().remove();
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if some events are waiting to be delivered.
+     */
+    public synchronized boolean hasPendingEvents()
+    {
+        for (ListenerQueue queue : queues.values())
+        {
+            synchronized (queue)
+            {
+                if (queue.scheduled)
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns a snapshot of dispatch statistics for the specified listener (<code>null</code> if
+     * the listener is not registered in this dispatcher).
+     */
+    public synchronized Statistics getStatistics(SequenceListener listener)
+    {
+        final ListenerQueue queue = queues.get(listener);
+
+        if (queue == null)
+            return null;
+
+        return queue.getStatistics();
+    }
+}
@@ -0,0 +1,690 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.common.exception.UnsupportedFormatException;
+import icy.image.IcyBufferedImage;
+import icy.image.IcyBufferedImageEvent;
+import icy.image.IcyBufferedImageEvent.IcyBufferedImageEventType;
+import icy.image.ImageProvider;
+import icy.image.OffHeapImageStore;
+import icy.image.colormodel.IcyColorModel;
+import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.type.collection.LRUCache;
+import icy.util.OMEUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import loci.formats.ome.OMEXMLMetadataImpl;
+
+/**
+ * Virtual (on demand) Sequence.<br>
+ * Images are not loaded at creation time but fetched from the {@link ImageProvider} when
+ * requested through {@link #getImage(int, int)} (and so all <code>getDataXX(..)</code> methods).
+ * Fetched images are kept in a LRU cache limited by a maximum size in bytes so huge dataset can be
+ * browsed without being fully loaded in memory.<br>
+ * Sequence dimensions come from the provider metadata.<br>
+ * Images explicitly set with {@link #setImage(int, int, java.awt.image.BufferedImage)} or which
+ * have been modified are kept in the sequence (never evicted).<br>
+ * <br>
+ * The image provider should stay opened for the whole sequence life, it is closed when the sequence
+ * is closed if it's a {@link SequenceIdImporter}.
+ */
+public class VirtualSequence extends Sequence
+{
+    /**
+     * Default plane cache size (in bytes)
+     */
+    public static final long DEFAULT_CACHE_SIZE = SystemUtil.getJavaMaxMemory() / 4;
+
+    protected class PlaneCache extends LRUCache<Long, IcyBufferedImage>
+    {
+        public PlaneCache(long maxSize)
+        {
+            super(maxSize);
+        }
+
+        @Override
+        protected long getSize(IcyBufferedImage value)
+        {
+            return getImageSize(value);
+        }
+
+        @Override
+        protected void removed(Long key, IcyBufferedImage value)
+        {
+            synchronized (cachedKeys)
+            {
+                // remove reverse mapping only if it still refers to this entry
+                if (key.equals(cachedKeys.get(value)))
+                    cachedKeys.remove(value);
+            }
+
+            // image is not anymore in the cache --> we don't need to listen it anymore
+            if (!isResident(value))
+            {
+                value.removeListener(VirtualSequence.this);
+
+                final OffHeapImageStore<Long> store = offHeapStore;
+
+                // spill it to the off heap store so we don't have to fetch it again
+                if (store != null)
+                {
+                    try
+                    {
+                        store.put(key, value);
+                    }
+                    catch (IOException e)
+                    {
+                        IcyExceptionHandler.showErrorMessage(e, false);
+                    }
+                    catch (OutOfMemoryError e)
+                    {
+                        // not enough direct memory --> image will be fetched again if needed
+                        store.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    protected final ImageProvider provider;
+    protected final int serie;
+
+    protected final int virtualSizeX;
+    protected final int virtualSizeY;
+    protected final int virtualSizeZ;
+    protected final int virtualSizeT;
+
+    protected final PlaneCache cache;
+    protected volatile OffHeapImageStore<Long> offHeapStore;
+
+    /**
+     * cached image --> key reverse mapping
+     */
+    protected final Map<IcyBufferedImage, Long> cachedKeys;
+    /**
+     * per key fetch locks (avoid fetching the same image twice at the same time)
+     */
+    protected final Map<Long, int[]> fetchLocks;
+
+    /**
+     * Creates a new virtual sequence for the specified serie of the image provider.
+     * 
+     * @param provider
+     *        opened image provider (should stay opened for the whole sequence life)
+     * @param serie
+     *        serie index (use 0 if unsure)
+     * @param cacheSize
+     *        maximum size (in bytes) of cached images
+     */
+    public VirtualSequence(ImageProvider provider, int serie, long cacheSize) throws UnsupportedFormatException,
+            IOException
+    {
+        this(provider, provider.getMetaData(), serie, cacheSize);
+    }
+
+    /**
+     * Creates a new virtual sequence for the specified serie of the image provider.<br>
+     * Plane cache size is set to {@link #DEFAULT_CACHE_SIZE}.
+     * 
+     * @param provider
+     *        opened image provider (should stay opened for the whole sequence life)
+     * @param serie
+     *        serie index (use 0 if unsure)
+     */
+    public VirtualSequence(ImageProvider provider, int serie) throws UnsupportedFormatException, IOException
+    {
+        this(provider, serie, DEFAULT_CACHE_SIZE);
+    }
+
+    private VirtualSequence(ImageProvider provider, OMEXMLMetadataImpl meta, int serie, long cacheSize)
+            throws UnsupportedFormatException, IOException
+    {
+        super(OMEUtil.createOMEMetadata(meta, serie));
+
+        this.provider = provider;
+        this.serie = serie;
+
+        virtualSizeX = MetaDataUtil.getSizeX(meta, serie);
+        virtualSizeY = MetaDataUtil.getSizeY(meta, serie);
+        virtualSizeZ = MetaDataUtil.getSizeZ(meta, serie);
+        virtualSizeT = MetaDataUtil.getSizeT(meta, serie);
+
+        cache = new PlaneCache(cacheSize);
+        offHeapStore = null;
+        cachedKeys = new IdentityHashMap<IcyBufferedImage, Long>();
+        fetchLocks = new HashMap<Long, int[]>();
+
+        // load first image to define sequence type
+        if ((virtualSizeZ > 0) && (virtualSizeT > 0))
+            getImage(0, 0);
+    }
+
+    /**
+     * Returns the image provider of this virtual sequence.
+     */
+    public ImageProvider getImageProvider()
+    {
+        return provider;
+    }
+
+    /**
+     * Returns the maximum size (in bytes) of the plane cache.
+     */
+    public long getCacheSize()
+    {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * Set the maximum size (in bytes) of the plane cache.
+     */
+    public void setCacheSize(long value)
+    {
+        cache.setMaxSize(value);
+    }
+
+    /**
+     * Returns the plane cache hit rate (from 0 to 1).
+     */
+    public double getCacheHitRate()
+    {
+        return cache.getHitRate();
+    }
+
+    /**
+     * Returns the off heap store used to keep images evicted from the plane cache (can be
+     * <code>null</code>).
+     */
+    public OffHeapImageStore<Long> getOffHeapStore()
+    {
+        return offHeapStore;
+    }
+
+    /**
+     * Enable or disable the off heap store.<br>
+     * When enabled, images evicted from the plane cache are copied outside the java heap (in direct
+     * buffers or in a memory mapped temporary file) so they can be retrieved quickly without having
+     * to fetch them again from the image provider. Heap usage stays limited by the cache size.
+     * 
+     * @param enabled
+     *        enable the off heap store
+     * @param mapped
+     *        use a memory mapped temporary file instead of direct buffers (recommended for very
+     *        large dataset as memory is then managed by the system)
+     */
+    public void setOffHeapStoreEnabled(boolean enabled, boolean mapped)
+    {
+        final OffHeapImageStore<Long> store = offHeapStore;
+
+        if (store != null)
+        {
+            // already in the wanted state
+            if (enabled && (store.isMapped() == mapped))
+                return;
+
+            offHeapStore = null;
+            store.close();
+        }
+
+        if (enabled)
+            offHeapStore = new OffHeapImageStore<Long>(mapped);
+    }
+
+    /**
+     * Clear the plane cache (modified images are kept).<br>
+     * Cached images are moved to the off heap store if enabled.
+     */
+    public void clearCache()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Returns <code>true</code> if the image at specified position is available without having to
+     * fetch it from the image provider.
+     */
+    public boolean isImageLoaded(int t, int z)
+    {
+        final Long key = getKey(t, z);
+        final OffHeapImageStore<Long> store = offHeapStore;
+
+        return (super.getImage(t, z) != null) || cache.containsKey(key) || ((store != null) && store.contains(key));
+    }
+
+    /**
+     * Fetch the image at specified position from the image provider if it's not already loaded.<br>
+     * Can be used to prefetch images in background.
+     */
+    public void loadImage(int t, int z)
+    {
+        if (!isImageLoaded(t, z))
+            getImage(t, z);
+    }
+
+    protected static Long getKey(int t, int z)
+    {
+        return Long.valueOf((((long) t) << 32) | (z & 0xFFFFFFFFL));
+    }
+
+    protected static long getImageSize(IcyBufferedImage image)
+    {
+        return (long) image.getSizeX() * (long) image.getSizeY() * (long) image.getSizeC()
+                * (long) image.getDataType_().getSize();
+    }
+
+    /**
+     * Returns <code>true</code> if the specified image is stored in the sequence structure (not only
+     * in the cache).
+     */
+    protected boolean isResident(IcyBufferedImage image)
+    {
+        imagesLock.readLock().lock();
+        try
+        {
+            for (VolumetricImage volImg : volumetricImages.values())
+                if (volImg.getImages().containsValue(image))
+                    return true;
+        }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the fetch lock for the specified key (should be released with
+     * {@link #releaseFetchLock(Long, int[])}).
+     */
+    protected int[] acquireFetchLock(Long key)
+    {
+        synchronized (fetchLocks)
+        {
+            int[] result = fetchLocks.get(key);
+
+            if (result == null)
+            {
+                // lock object also stores the number of user
+                result = new int[1];
+                fetchLocks.put(key, result);
+            }
+
+            result[0]++;
+
+            return result;
+        }
+    }
+
+    protected void releaseFetchLock(Long key, int[] lock)
+    {
+        synchronized (fetchLocks)
+        {
+            if (--lock[0] == 0)
+                fetchLocks.remove(key);
+        }
+    }
+
+    /**
+     * Fetch image from the image provider (internal use only).<br>
+     * Different images can be fetched concurrently (the importer is responsible of its own reader
+     * pooling / synchronization), only requests for the same image are serialized.
+     */
+    protected IcyBufferedImage fetchImage(int t, int z)
+    {
+        final Long key = getKey(t, z);
+        final int[] lock = acquireFetchLock(key);
+        IcyBufferedImage result;
+
+        try
+        {
+            synchronized (lock)
+            {
+                // check again, another thread may have loaded it in the meantime
+                if (cache.containsKey(key))
+                    return cache.get(key);
+
+                final OffHeapImageStore<Long> store = offHeapStore;
+
+                // try to retrieve it from the off heap store first
+                try
+                {
+                    result = (store != null) ? store.get(key) : null;
+                }
+                catch (OutOfMemoryError e)
+                {
+                    // not enough memory to rebuild the image from the store
+                    result = null;
+                }
+
+                try
+                {
+                    if (result == null)
+                        result = provider.getImage(serie, z, t);
+                }
+                catch (Exception e)
+                {
+                    IcyExceptionHandler.showErrorMessage(e, false);
+                    return null;
+                }
+
+                if (result != null)
+                {
+                    synchronized (cachedKeys)
+                    {
+                        cachedKeys.put(result, key);
+                    }
+
+                    cache.put(key, result);
+                }
+            }
+        }
+        finally
+        {
+            releaseFetchLock(key, lock);
+        }
+
+        if (result != null)
+            imageFetched(result);
+
+        return result;
+    }
+
+    /**
+     * Called when a new image has been fetched from the image provider (internal use only).
+     */
+    protected void imageFetched(IcyBufferedImage image)
+    {
+        // colorModel not yet defined ?
+        if (colorModel == null)
+            // define it from the image colorModel
+            setColorModel(IcyColorModel.createInstance(image.getIcyColorModel(), true, true));
+        else if (!isCompatible(image))
+            throw new IllegalArgumentException("VirtualSequence: image is not compatible !");
+        // extend sequence channel bounds with image bounds
+        else if (autoUpdateChannelBounds)
+        {
+            colorModel.setComponentsAbsBounds(adjustBounds(image.getChannelsTypeBounds(), getChannelsTypeBounds()));
+            colorModel.setComponentsUserBounds(adjustBounds(image.getChannelsBounds(), getChannelsBounds()));
+        }
+
+        // listen image so we can keep it if it's modified
+        image.addListener(this);
+    }
+
+    /**
+     * Returns image at time t and depth z.<br>
+     * The image is fetched from the image provider if it's not already loaded.
+     */
+    @Override
+    public IcyBufferedImage getImage(int t, int z)
+    {
+        // modified / explicitly set image ?
+        final IcyBufferedImage result = super.getImage(t, z);
+
+        if (result != null)
+            return result;
+
+        // out of bounds
+        if ((t < 0) || (z < 0) || (t >= virtualSizeT) || (z >= virtualSizeZ))
+            return null;
+
+        final IcyBufferedImage cached = cache.get(getKey(t, z));
+
+        if (cached != null)
+            return cached;
+
+        return fetchImage(t, z);
+    }
+
+    /**
+     * Returns the volumetric image at specified t position.<br>
+     * Be careful, this method fetches all images of the volume. For a virtual position the
+     * returned object is a detached view: modifying it doesn't modify the sequence (use
+     * {@link #setImage(int, int, java.awt.image.BufferedImage)} instead).
+     */
+    @Override
+    public VolumetricImage getVolumetricImage(int t)
+    {
+        // out of virtual bounds
+        if ((t < 0) || (t >= virtualSizeT))
+            return super.getVolumetricImage(t);
+
+        final VolumetricImage result = new VolumetricImage();
+        final int sizeZ = getSizeZ(t);
+
+        for (int z = 0; z < sizeZ; z++)
+        {
+            final IcyBufferedImage img = getImage(t, z);
+
+            // direct access so we don't raise events
+            if (img != null)
+                result.images.put(Integer.valueOf(z), img);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns all images at specified t position.<br>
+     * Be careful, this method fetches all images of the volume.
+     */
+    @Override
+    public ArrayList<IcyBufferedImage> getImages(int t)
+    {
+        final ArrayList<IcyBufferedImage> result = new ArrayList<IcyBufferedImage>();
+        final int sizeZ = getSizeZ(t);
+
+        for (int z = 0; z < sizeZ; z++)
+        {
+            final IcyBufferedImage img = getImage(t, z);
+
+            if (img != null)
+                result.add(img);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns all images of sequence.<br>
+     * Be careful, this method fetches all images of the sequence and so may require a lot of
+     * memory.
+     */
+    @Override
+    public ArrayList<IcyBufferedImage> getAllImage()
+    {
+        final ArrayList<IcyBufferedImage> result = new ArrayList<IcyBufferedImage>();
+        final int sizeT = getSizeT();
+
+        for (int t = 0; t < sizeT; t++)
+            result.addAll(getImages(t));
+
+        return result;
+    }
+
+    @Override
+    public IcyBufferedImage getFirstImage()
+    {
+        final IcyBufferedImage result = getImage(0, 0);
+
+        if (result != null)
+            return result;
+
+        return super.getFirstImage();
+    }
+
+    @Override
+    public IcyBufferedImage getFirstNonNullImage()
+    {
+        return getFirstImage();
+    }
+
+    @Override
+    public IcyBufferedImage getLastImage(int t)
+    {
+        return getImage(t, getSizeZ(t) - 1);
+    }
+
+    @Override
+    public IcyBufferedImage getLastImage()
+    {
+        return getLastImage(getSizeT() - 1);
+    }
+
+    @Override
+    public int getNumImage()
+    {
+        return getSizeT() * getSizeZ();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        if ((virtualSizeT > 0) && (virtualSizeZ > 0))
+            return false;
+
+        return super.isEmpty();
+    }
+
+    @Override
+    public int getSizeT()
+    {
+        return Math.max(virtualSizeT, super.getSizeT());
+    }
+
+    @Override
+    public int getSizeZ()
+    {
+        int result = virtualSizeZ;
+
+        imagesLock.readLock().lock();
+        try
+        {
+            for (VolumetricImage volImg : volumetricImages.values())
+                result = Math.max(result, volImg.getSize());
+        }
+        finally
+        {
+            imagesLock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    @Override
+    public int getSizeZ(int t)
+    {
+        // t = -1 means global Z size
+        if (t == -1)
+            return getSizeZ();
+
+        if ((t >= 0) && (t < virtualSizeT))
+            return Math.max(virtualSizeZ, super.getSizeZ(t));
+
+        return super.getSizeZ(t);
+    }
+
+    @Override
+    public int getSizeX()
+    {
+        return virtualSizeX;
+    }
+
+    @Override
+    public int getSizeY()
+    {
+        return virtualSizeY;
+    }
+
+    @Override
+    public void imageChanged(IcyBufferedImageEvent e)
+    {
+        final IcyBufferedImage image = e.getImage();
+
+        // cached image has been modified --> store it in the sequence so it won't be evicted
+        if (e.getType() == IcyBufferedImageEventType.DATA_CHANGED)
+        {
+            final Long key;
+
+            synchronized (cachedKeys)
+            {
+                key = cachedKeys.get(image);
+            }
+
+            if (key != null)
+            {
+                final long k = key.longValue();
+                final int t = (int) (k >> 32);
+                final int z = (int) k;
+
+                if (super.getImage(t, z) == null)
+                {
+                    // remove listener first as setImage(..) will add it again
+                    image.removeListener(this);
+                    setImage(t, z, image);
+                    cache.remove(key);
+
+                    final OffHeapImageStore<Long> store = offHeapStore;
+
+                    // stored data is not anymore up to date
+                    if (store != null)
+                        store.remove(key);
+                }
+            }
+        }
+
+        super.imageChanged(e);
+    }
+
+    @Override
+    public void closed()
+    {
+        super.closed();
+
+        final OffHeapImageStore<Long> store = offHeapStore;
+
+        // disable store first so cached images are not spilled to it
+        offHeapStore = null;
+        // release cached images
+        cache.clear();
+        if (store != null)
+            store.close();
+
+        // close the importer
+        if (provider instanceof SequenceIdImporter)
+        {
+            try
+            {
+                ((SequenceIdImporter) provider).close();
+            }
+            catch (IOException e)
+            {
+                IcyExceptionHandler.showErrorMessage(e, false);
+            }
+        }
+    }
+}
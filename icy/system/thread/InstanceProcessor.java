@@ -63,7 +63,7 @@ public class InstanceProcessor extends Processor
     @Override
     protected synchronized <T> Future<T> submit(FutureTaskAdapter<T> task)
     {
-        // task already present in queue --> return null (mean the task was ignored)
+        // same task instance already present in queue --> return null (mean the task was ignored)
         if (hasWaitingTasks(task))
             return null;
 
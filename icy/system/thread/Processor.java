@@ -24,7 +24,10 @@ import icy.system.SystemUtil;
 
 import java.util.ArrayList;
 import java.util.EventListener;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
@@ -273,6 +276,10 @@ public class Processor extends ThreadPoolExecutor
      */
     protected Runnable waitingExecution;
     protected long lastAdd;
+    /**
+     * waiting tasks indexed by their Runnable / Callable instance (avoid queue scan)
+     */
+    private final Map<Object, LinkedList<FutureTaskAdapter<?>>> waitingIndex;
 
     /**
      * Create a new Processor with specified number of maximum waiting and processing tasks.<br>
@@ -296,6 +303,7 @@ public class Processor extends ThreadPoolExecutor
         defaultThreadName = "Processor";
 
         waitingExecution = null;
+        waitingIndex = new IdentityHashMap<Object, LinkedList<FutureTaskAdapter<?>>>();
     }
 
     /**
@@ -375,7 +383,26 @@ public class Processor extends ThreadPoolExecutor
         if (waitingExecution == task)
             waitingExecution = null;
 
-        return super.remove(task);
+        final boolean result = super.remove(task);
+
+        if (result && (task instanceof FutureTaskAdapter))
+            unindex((FutureTaskAdapter<?>) task);
+
+        return result;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        final List<Runnable> result = super.shutdownNow();
+
+        // waiting tasks have been removed from queue
+        synchronized (waitingIndex)
+        {
+            waitingIndex.clear();
+        }
+
+        return result;
     }
 
     /**
@@ -442,10 +469,123 @@ public class Processor extends ThreadPoolExecutor
      */
     protected synchronized <T> Future<T> submit(FutureTaskAdapter<T> task)
     {
-        execute(task);
+        index(task);
+        try
+        {
+            execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            unindex(task);
+            throw e;
+        }
+
         return task;
     }
 
+    /**
+     * Returns the key used to index the specified task (its Runnable or Callable instance).
+     */
+    private static Object getIndexKey(FutureTaskAdapter<?> task)
+    {
+        if (task.runnable != null)
+            return task.runnable;
+
+        return task.callable;
+    }
+
+    /**
+     * Add the specified task to the waiting tasks index.
+     */
+    private void index(FutureTaskAdapter<?> task)
+    {
+        final Object key = getIndexKey(task);
+
+        if (key == null)
+            return;
+
+        synchronized (waitingIndex)
+        {
+            LinkedList<FutureTaskAdapter<?>> tasks = waitingIndex.get(key);
+
+            if (tasks == null)
+            {
+                tasks = new LinkedList<FutureTaskAdapter<?>>();
+                waitingIndex.put(key, tasks);
+            }
+
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Remove the specified task from the waiting tasks index.
+     */
+    private void unindex(FutureTaskAdapter<?> task)
+    {
+        final Object key = getIndexKey(task);
+
+        if (key == null)
+            return;
+
+        synchronized (waitingIndex)
+        {
+            final LinkedList<FutureTaskAdapter<?>> tasks = waitingIndex.get(key);
+
+            // tasks are executed in order so it's generally the first one
+            if ((tasks != null) && tasks.remove(task) && tasks.isEmpty())
+                waitingIndex.remove(key);
+        }
+    }
+
+    /**
+     * Returns indexed waiting tasks for the specified Runnable or Callable instance.
+     */
+    private List<FutureTaskAdapter<?>> getIndexedTasks(Object key)
+    {
+        synchronized (waitingIndex)
+        {
+            final LinkedList<FutureTaskAdapter<?>> tasks = waitingIndex.get(key);
+
+            if (tasks == null)
+                return new ArrayList<FutureTaskAdapter<?>>();
+
+            return new ArrayList<FutureTaskAdapter<?>>(tasks);
+        }
+    }
+
+    /**
+     * Returns the first indexed waiting task for the specified Runnable or Callable instance.
+     */
+    private FutureTaskAdapter<?> getFirstIndexedTask(Object key)
+    {
+        synchronized (waitingIndex)
+        {
+            final LinkedList<FutureTaskAdapter<?>> tasks = waitingIndex.get(key);
+
+            if (tasks == null)
+                return null;
+
+            return tasks.getFirst();
+        }
+    }
+
+    /**
+     * Returns the number of indexed waiting tasks for the specified Runnable or Callable instance.
+     */
+    private int getIndexedTasksCount(Object key)
+    {
+        synchronized (waitingIndex)
+        {
+            final LinkedList<FutureTaskAdapter<?>> tasks = waitingIndex.get(key);
+
+            if (tasks == null)
+                return 0;
+
+            return tasks.size();
+        }
+    }
+
     @Override
     public Future<?> submit(Runnable task)
     {
@@ -690,14 +830,7 @@ public class Processor extends ThreadPoolExecutor
      */
     protected List<FutureTaskAdapter<?>> getWaitingTasks(Runnable task)
     {
-        final List<FutureTaskAdapter<?>> result = new ArrayList<FutureTaskAdapter<?>>();
-
-        // scan all tasks
-        for (FutureTaskAdapter<?> f : getWaitingTasks())
-            if (f.runnable == task)
-                result.add(f);
-
-        return result;
+        return getIndexedTasks(task);
     }
 
     /**
@@ -705,14 +838,7 @@ public class Processor extends ThreadPoolExecutor
      */
     protected List<FutureTaskAdapter<?>> getWaitingTasks(Callable<?> task)
     {
-        final List<FutureTaskAdapter<?>> result = new ArrayList<FutureTaskAdapter<?>>();
-
-        // scan all tasks
-        for (FutureTaskAdapter<?> f : getWaitingTasks())
-            if (f.callable == task)
-                result.add(f);
-
-        return result;
+        return getIndexedTasks(task);
     }
 
     /**
@@ -749,13 +875,7 @@ public class Processor extends ThreadPoolExecutor
      */
     public int getWaitingTasksCount(Runnable task)
     {
-        int result = 0;
-
-        for (FutureTaskAdapter<?> f : getWaitingTasks())
-            if (f.runnable == task)
-                result++;
-
-        return result;
+        return getIndexedTasksCount(task);
     }
 
     /**
@@ -763,13 +883,7 @@ public class Processor extends ThreadPoolExecutor
      */
     public int getWaitingTasksCount(Callable<?> task)
     {
-        int result = 0;
-
-        for (FutureTaskAdapter<?> f : getWaitingTasks())
-            if (f.callable == task)
-                result++;
-
-        return result;
+        return getIndexedTasksCount(task);
     }
 
     /**
@@ -798,12 +912,7 @@ public class Processor extends ThreadPoolExecutor
      */
     public boolean hasWaitingTasks(Runnable task)
     {
-        // scan all tasks
-        for (FutureTaskAdapter<?> f : getWaitingTasks())
-            if (f.runnable == task)
-                return true;
-
-        return false;
+        return getIndexedTasksCount(task) > 0;
     }
 
     /**
@@ -812,12 +921,21 @@ public class Processor extends ThreadPoolExecutor
      */
     public boolean hasWaitingTasks(Callable<?> task)
     {
-        // scan all tasks
-        for (FutureTaskAdapter<?> f : getWaitingTasks())
-            if (f.callable == task)
-                return true;
+        return getIndexedTasksCount(task) > 0;
+    }
 
-        return false;
+    /**
+     * Return true if we have at least one task in queue for the Runnable or Callable instance of
+     * the specified task.
+     */
+    protected boolean hasWaitingTasks(FutureTaskAdapter<?> task)
+    {
+        final Object key = getIndexKey(task);
+
+        if (key == null)
+            return false;
+
+        return getIndexedTasksCount(key) > 0;
     }
 
     /**
@@ -840,15 +958,7 @@ public class Processor extends ThreadPoolExecutor
         if (task == null)
             return false;
 
-        synchronized (getQueue())
-        {
-            // remove first task of specified instance
-            for (FutureTaskAdapter<?> f : getWaitingTasks())
-                if (f == task)
-                    return remove(f);
-        }
-
-        return false;
+        return remove(task);
     }
 
     /**
@@ -859,13 +969,10 @@ public class Processor extends ThreadPoolExecutor
         if (task == null)
             return false;
 
-        synchronized (getQueue())
-        {
-            // remove first task of specified instance
-            for (FutureTaskAdapter<?> f : getWaitingTasks())
-                if (f.runnable == task)
-                    return remove(f);
-        }
+        final FutureTaskAdapter<?> f = getFirstIndexedTask(task);
+
+        if (f != null)
+            return remove(f);
 
         return false;
     }
@@ -878,13 +985,10 @@ public class Processor extends ThreadPoolExecutor
         if (task == null)
             return false;
 
-        synchronized (getQueue())
-        {
-            // remove first task of specified instance
-            for (FutureTaskAdapter<?> f : getWaitingTasks())
-                if (f.callable == task)
-                    return remove(f);
-        }
+        final FutureTaskAdapter<?> f = getFirstIndexedTask(task);
+
+        if (f != null)
+            return remove(f);
 
         return false;
     }
@@ -938,7 +1042,7 @@ public class Processor extends ThreadPoolExecutor
     /**
      * Clear all waiting tasks
      */
-    public void removeAllWaitingTasks()
+    public synchronized void removeAllWaitingTasks()
     {
         waitingExecution = null;
 
@@ -947,6 +1051,11 @@ public class Processor extends ThreadPoolExecutor
             // remove all tasks
             getQueue().clear();
         }
+
+        synchronized (waitingIndex)
+        {
+            waitingIndex.clear();
+        }
     }
 
     /**
@@ -1027,5 +1136,8 @@ public class Processor extends ThreadPoolExecutor
 
         // ok we can remove reference...
         waitingExecution = null;
+        // not anymore waiting
+        if (r instanceof FutureTaskAdapter)
+            unindex((FutureTaskAdapter<?>) r);
     }
 }
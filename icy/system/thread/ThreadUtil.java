@@ -87,6 +87,10 @@ public class ThreadUtil
     private static final InstanceProcessor instanceProcessors[];
     // low priority single Runnable / Callable instance processor
     private static final InstanceProcessor bgInstanceProcessors[];
+    // blocking I/O processor (network, file access...)
+    private static final Processor ioProcessor;
+    // data parallel computation processor (shared to avoid oversubscription)
+    private static final WorkStealingProcessor computeProcessor;
 
     static
     {
@@ -99,6 +103,7 @@ public class ThreadUtil
             bgProcessor = new Processor(Math.min(wantedThread, 8));
             instanceProcessors = new InstanceProcessor[Math.min(wantedThread, 4)];
             bgInstanceProcessors = new InstanceProcessor[Math.min(wantedThread, 4)];
+            ioProcessor = new Processor(32);
         }
         else
         {
@@ -109,12 +114,21 @@ public class ThreadUtil
             bgProcessor = new Processor(Math.min(wantedThread, 16));
             instanceProcessors = new InstanceProcessor[Math.min(wantedThread, 8)];
             bgInstanceProcessors = new InstanceProcessor[Math.min(wantedThread, 8)];
+            ioProcessor = new Processor(128);
         }
 
         bgProcessor.setPriority(MIN_PRIORITY);
         bgProcessor.setDefaultThreadName("Background processor");
         bgProcessor.setKeepAliveTime(3, TimeUnit.SECONDS);
 
+        // I/O tasks mostly wait so we can have many threads, they are released when idle
+        ioProcessor.setDefaultThreadName("I/O processor");
+        ioProcessor.setKeepAliveTime(3, TimeUnit.SECONDS);
+
+        // one worker per core, nested tasks are executed by waiting workers
+        computeProcessor = new WorkStealingProcessor(SystemUtil.getAvailableProcessors(), NORM_PRIORITY);
+        computeProcessor.setDefaultThreadName("Compute processor");
+
         for (int i = 0; i < instanceProcessors.length; i++)
         {
             // keep these thread active
@@ -133,6 +147,8 @@ public class ThreadUtil
     public static void shutdown()
     {
         bgProcessor.shutdown();
+        ioProcessor.shutdown();
+        computeProcessor.shutdown();
         for (int i = 0; i < instanceProcessors.length; i++)
         {
             instanceProcessors[i].shutdown();
@@ -152,7 +168,18 @@ public class ThreadUtil
             if (!bgInstanceProcessors[i].isTerminated())
                 return false;
         }
-        return bgProcessor.isTerminated();
+        return bgProcessor.isTerminated() && ioProcessor.isTerminated();
+    }
+
+    /**
+     * Returns the shared processor to use for data parallel computations (image processing
+     * kernels...).<br>
+     * Tasks can submit and join subtasks without blocking a worker thread so kernels can be
+     * nested safely.
+     */
+    public static WorkStealingProcessor getComputeProcessor()
+    {
+        return computeProcessor;
     }
 
     /**
@@ -414,6 +441,33 @@ public class ThreadUtil
         return bgProcessor.submit(callable);
     }
 
+    /**
+     * Adds background processing of specified blocking I/O Runnable (network download, file
+     * access...).<br>
+     * I/O tasks are executed on a separate processor with many threads so they don't wait for nor
+     * block the CPU bound background tasks.<br>
+     * The I/O process queue is unbounded so the task is always accepted (it is silently ignored
+     * while the application is exiting).
+     */
+    public static boolean bgRunIO(Runnable runnable)
+    {
+        return (ioProcessor.submit(true, runnable) != null);
+    }
+
+    /**
+     * Adds background processing of specified blocking I/O Callable task (network download, file
+     * access...).<br>
+     * I/O tasks are executed on a separate processor with many threads so they don't wait for nor
+     * block the CPU bound background tasks.<br>
+     * Returns a Future representing the pending result of the task (the I/O process queue is
+     * unbounded so the task is always accepted, it is silently ignored while the application is
+     * exiting).
+     */
+    public static <T> Future<T> bgRunIO(Callable<T> callable)
+    {
+        return ioProcessor.submit(callable);
+    }
+
     /**
      * @deprecated Use {@link #runSingle(Runnable)} instead and {@link #invokeNow(Runnable)}
      *             separately.
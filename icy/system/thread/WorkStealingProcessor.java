@@ -0,0 +1,810 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.system.thread;
+
+import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Work stealing processor for data parallel tasks.<br>
+ * Each worker thread has its own task queue: tasks submitted from a worker (subtasks) are pushed
+ * in its queue and executed in LIFO order while idle workers steal the oldest tasks from the
+ * others.<br>
+ * Waiting for a task result with {@link Task#join()} from a worker thread executes pending tasks
+ * instead of blocking the thread, so nested fork / join tasks never dead lock nor need extra
+ * threads.<br>
+ * Queue time (from submission to start) and run time are measured for each task and accumulated
+ * at processor level.
+ */
+public class WorkStealingProcessor
+{
+    /**
+     * Task of the work stealing processor.
+     */
+    public class Task<T> extends FutureTask<T>
+    {
+        final boolean handleException;
+        final long submitTime;
+        volatile long startTime;
+        volatile long endTime;
+
+        Task(Callable<T> callable, boolean handleException)
+        {
+            super(callable);
+
+            this.handleException = handleException;
+            submitTime = System.nanoTime();
+            startTime = 0L;
+            endTime = 0L;
+        }
+
+        Task(Runnable runnable, T result, boolean handleException)
+        {
+            super(runnable, result);
+
+            this.handleException = handleException;
+            submitTime = System.nanoTime();
+            startTime = 0L;
+            endTime = 0L;
+        }
+
+        @Override
+        public void run()
+        {
+            // not yet started (can be cancelled)
+            if (startTime == 0L)
+                startTime = System.nanoTime();
+
+            super.run();
+        }
+
+        @Override
+        protected void done()
+        {
+            super.done();
+
+            endTime = System.nanoTime();
+            taskDone(this);
+
+            if (handleException && !isCancelled())
+            {
+                try
+                {
+                    get();
+                }
+                catch (Exception e)
+                {
+                    IcyExceptionHandler.handleException(e.getCause(), true);
+                }
+            }
+        }
+
+        /**
+         * Waits for the task completion and returns its result.<br>
+         * When called from a worker thread of the processor, pending tasks are executed while
+         * waiting.
+         */
+        public T join() throws InterruptedException, ExecutionException
+        {
+            helpUntilDone(this);
+
+            return get();
+        }
+
+        /**
+         * Returns the time spent in queue before execution (in ms).
+         */
+        public double getQueueTime()
+        {
+            if (startTime == 0L)
+                return 0d;
+
+            return (startTime - submitTime) / 1000000d;
+        }
+
+        /**
+         * Returns the execution time (in ms).
+         */
+        public double getRunTime()
+        {
+            if ((startTime == 0L) || (endTime == 0L))
+                return 0d;
+
+            return (endTime - startTime) / 1000000d;
+        }
+    }
+
+    private class Worker extends Thread
+    {
+        final int index;
+        final ArrayDeque<Task<?>> tasks;
+
+        Worker(int index)
+        {
+            super(defaultThreadName + " #" + index);
+
+            this.index = index;
+            tasks = new ArrayDeque<Task<?>>();
+
+            setPriority(priority);
+            setDaemon(true);
+        }
+
+        WorkStealingProcessor getProcessor()
+        {
+            return WorkStealingProcessor.this;
+        }
+
+        void push(Task<?> task)
+        {
+            synchronized (tasks)
+            {
+                tasks.addLast(task);
+            }
+        }
+
+        // newest task first
+        Task<?> pop()
+        {
+            synchronized (tasks)
+            {
+                return tasks.pollLast();
+            }
+        }
+
+        // oldest task first
+        Task<?> steal()
+        {
+            synchronized (tasks)
+            {
+                return tasks.pollFirst();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final Task<?> task = nextTask(this);
+
+                if (task != null)
+                    task.run();
+                else if (!waitForTask())
+                    return;
+            }
+        }
+    }
+
+    /**
+     * parameters
+     */
+    final int numThread;
+    int priority;
+    String defaultThreadName;
+
+    /**
+     * internals
+     */
+    private Worker[] workers;
+    private final ArrayDeque<Task<?>> submissionQueue;
+    // waiting tasks (in queues)
+    private final AtomicInteger waitingCount;
+    // submitted and not yet done tasks
+    private final AtomicInteger unfinishedCount;
+    private final Object idleLock;
+    private final Object doneLock;
+    // workers waiting for a task executed by another worker
+    private final Object helpLock;
+    private volatile int idleCount;
+    private volatile int helpingCount;
+    private volatile boolean shutdown;
+
+    /**
+     * statistics
+     */
+    private final AtomicLong numStolen;
+    private long numCompleted;
+    private long totalQueueTime;
+    private long maxQueueTime;
+    private long totalRunTime;
+    private long maxRunTime;
+
+    /**
+     * Create a new work stealing processor with specified number of worker thread.
+     * 
+     * @param priority
+     *        Processor priority<br>
+     *        <code>Processor.MIN_PRIORITY</code><br>
+     *        <code>Processor.NORM_PRIORITY</code><br>
+     *        <code>Processor.MAX_PRIORITY</code>
+     */
+    public WorkStealingProcessor(int numThread, int priority)
+    {
+        super();
+
+        this.numThread = Math.max(1, numThread);
+        this.priority = priority;
+        defaultThreadName = "WorkStealingProcessor";
+
+        workers = null;
+        submissionQueue = new ArrayDeque<Task<?>>();
+        waitingCount = new AtomicInteger(0);
+        unfinishedCount = new AtomicInteger(0);
+        idleLock = new Object();
+        doneLock = new Object();
+        helpLock = new Object();
+        idleCount = 0;
+        helpingCount = 0;
+        shutdown = false;
+
+        numStolen = new AtomicLong(0L);
+        numCompleted = 0L;
+        totalQueueTime = 0L;
+        maxQueueTime = 0L;
+        totalRunTime = 0L;
+        maxRunTime = 0L;
+    }
+
+    /**
+     * Create a new work stealing processor with specified number of worker thread.
+     */
+    public WorkStealingProcessor(int numThread)
+    {
+        this(numThread, Processor.NORM_PRIORITY);
+    }
+
+    /**
+     * Create a new work stealing processor with one worker thread per available processor.
+     */
+    public WorkStealingProcessor()
+    {
+        this(SystemUtil.getAvailableProcessors());
+    }
+
+    /**
+     * @return the number of worker thread
+     */
+    public int getNumThread()
+    {
+        return numThread;
+    }
+
+    /**
+     * @return the priority
+     */
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Set the priority of worker threads (should be called before first task submission).
+     */
+    public void setPriority(int priority)
+    {
+        this.priority = priority;
+    }
+
+    public String getDefaultThreadName()
+    {
+        return defaultThreadName;
+    }
+
+    /**
+     * Set the name of worker threads (should be called before first task submission).
+     */
+    public void setDefaultThreadName(String defaultThreadName)
+    {
+        this.defaultThreadName = defaultThreadName;
+    }
+
+    private synchronized void startWorkers()
+    {
+        if (workers != null)
+            return;
+
+        final Worker[] result = new Worker[numThread];
+
+        for (int i = 0; i < result.length; i++)
+            result[i] = new Worker(i);
+        // set workers before starting them as they use it
+        workers = result;
+        for (Worker worker : result)
+            worker.start();
+    }
+
+    /**
+     * Returns the worker of this processor corresponding to the current thread (<code>null</code>
+     * if the current thread is not a worker of this processor).
+     */
+    private Worker getCurrentWorker()
+    {
+        final Thread thread = Thread.currentThread();
+
+        if (thread instanceof Worker)
+        {
+            final Worker worker = (Worker) thread;
+
+            if (worker.getProcessor() == this)
+                return worker;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the current thread is a worker thread of this processor.
+     */
+    public boolean isWorkerThread()
+    {
+        return getCurrentWorker() != null;
+    }
+
+    private <T> Task<T> submit(Task<T> task)
+    {
+        if (shutdown)
+            throw new RejectedExecutionException("Processor is shutdown, ignore execution of " + task);
+
+        startWorkers();
+        unfinishedCount.incrementAndGet();
+
+        final Worker worker = getCurrentWorker();
+
+        // subtask --> push in worker queue
+        if (worker != null)
+            worker.push(task);
+        else
+        {
+            synchronized (submissionQueue)
+            {
+                submissionQueue.addLast(task);
+            }
+        }
+
+        waitingCount.incrementAndGet();
+        // wake up an idle worker if any
+        if (idleCount > 0)
+        {
+            synchronized (idleLock)
+            {
+                idleLock.notify();
+            }
+        }
+        // and workers waiting for a joined task so they can help
+        wakeUpHelpers();
+
+        return task;
+    }
+
+    /**
+     * Submits a Runnable task for execution and returns a {@link Task} representing that task.<br>
+     * When called from a worker thread the task is pushed in the worker queue (subtask).
+     */
+    public Task<?> submit(Runnable task)
+    {
+        return submit(false, task);
+    }
+
+    /**
+     * Submits a Callable task for execution and returns a {@link Task} representing that task.<br>
+     * When called from a worker thread the task is pushed in the worker queue (subtask).
+     */
+    public <T> Task<T> submit(Callable<T> task)
+    {
+        return submit(false, task);
+    }
+
+    /**
+     * Submits a Runnable task for execution and returns a {@link Task} representing that task.<br>
+     * 
+     * @param handleException
+     *        if set to <code>true</code> then any occurring exception during the task processing
+     *        will be catch by {@link IcyExceptionHandler}.
+     */
+    public Task<?> submit(boolean handleException, Runnable task)
+    {
+        if (task == null)
+            throw new NullPointerException();
+
+        return submit(new Task<Object>(task, null, handleException));
+    }
+
+    /**
+     * Submits a Callable task for execution and returns a {@link Task} representing that task.<br>
+     * 
+     * @param handleException
+     *        if set to <code>true</code> then any occurring exception during the task processing
+     *        will be catch by {@link IcyExceptionHandler}.
+     */
+    public <T> Task<T> submit(boolean handleException, Callable<T> task)
+    {
+        if (task == null)
+            throw new NullPointerException();
+
+        return submit(new Task<T>(task, handleException));
+    }
+
+    /**
+     * Executes the specified tasks and returns their results (in the same order).<br>
+     * Can be safely called from a worker thread (nested tasks).
+     */
+    public <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException,
+            ExecutionException
+    {
+        final List<Task<T>> submitted = new ArrayList<Task<T>>(tasks.size());
+
+        for (Callable<T> task : tasks)
+            submitted.add(submit(task));
+
+        final List<T> result = new ArrayList<T>(submitted.size());
+
+        // join in reverse order so the current worker executes its own subtasks first
+        for (int i = submitted.size() - 1; i >= 0; i--)
+            submitted.get(i).join();
+        for (Task<T> task : submitted)
+            result.add(task.get());
+
+        return result;
+    }
+
+    /**
+     * Executes the specified tasks and waits for their completion.<br>
+     * Exceptions occurring during tasks processing are catch by {@link IcyExceptionHandler}.<br>
+     * Tasks rejected because the processor is shutdown are executed by the current thread.<br>
+     * Can be safely called from a worker thread (nested tasks).
+     */
+    public void runAll(Collection<? extends Runnable> tasks) throws InterruptedException
+    {
+        final List<Task<?>> submitted = new ArrayList<Task<?>>(tasks.size());
+
+        for (Runnable task : tasks)
+        {
+            try
+            {
+                submitted.add(submit(true, task));
+            }
+            catch (RejectedExecutionException e)
+            {
+                // processor shutdown --> execute it ourself
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable t)
+                {
+                    IcyExceptionHandler.handleException(t, true);
+                }
+            }
+        }
+
+        // join in reverse order so the current worker executes its own subtasks first
+        for (int i = submitted.size() - 1; i >= 0; i--)
+        {
+            try
+            {
+                submitted.get(i).join();
+            }
+            catch (ExecutionException e)
+            {
+                // already handled by the task
+            }
+        }
+    }
+
+    /**
+     * Get the next task to execute for the specified worker: its own newest task, else the oldest
+     * submitted task, else a task stolen from another worker.
+     */
+    Task<?> nextTask(Worker worker)
+    {
+        Task<?> result = worker.pop();
+
+        if (result == null)
+        {
+            synchronized (submissionQueue)
+            {
+                result = submissionQueue.pollFirst();
+            }
+        }
+
+        if (result == null)
+        {
+            final Worker[] ws = workers;
+
+            for (int i = 1; (i < ws.length) && (result == null); i++)
+                result = ws[(worker.index + i) % ws.length].steal();
+
+            if (result != null)
+                numStolen.incrementAndGet();
+        }
+
+        if (result != null)
+            waitingCount.decrementAndGet();
+
+        return result;
+    }
+
+    /**
+     * Wait until a task is available.<br>
+     * Returns <code>false</code> if the processor is shutdown and no more task are waiting.
+     */
+    boolean waitForTask()
+    {
+        synchronized (idleLock)
+        {
+            idleCount++;
+            try
+            {
+                while (waitingCount.get() == 0)
+                {
+                    if (shutdown)
+                        return false;
+
+                    idleLock.wait();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // just continue
+            }
+            finally
+            {
+                idleCount--;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Execute waiting tasks until the specified task is done (when called from a worker thread).
+     */
+    void helpUntilDone(Task<?> task) throws InterruptedException
+    {
+        final Worker worker = getCurrentWorker();
+
+        // not a worker thread --> just wait with Future.get()
+        if (worker == null)
+            return;
+
+        while (!task.isDone())
+        {
+            final Task<?> t = nextTask(worker);
+
+            if (t != null)
+                t.run();
+            else
+            {
+                // task is executed by another worker --> wait for its completion or a new task
+                synchronized (helpLock)
+                {
+                    helpingCount++;
+                    try
+                    {
+                        while (!task.isDone() && (waitingCount.get() == 0))
+                            helpLock.wait();
+                    }
+                    finally
+                    {
+                        helpingCount--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Wake up workers waiting in {@link #helpUntilDone(Task)}.
+     */
+    private void wakeUpHelpers()
+    {
+        if (helpingCount > 0)
+        {
+            synchronized (helpLock)
+            {
+                helpLock.notifyAll();
+            }
+        }
+    }
+
+    void taskDone(Task<?> task)
+    {
+        // task is done at this point --> wake up workers joining it
+        wakeUpHelpers();
+
+        // task was started ? (can be cancelled while waiting)
+        if (task.startTime != 0L)
+        {
+            final long queueTime = task.startTime - task.submitTime;
+            final long runTime = task.endTime - task.startTime;
+
+            synchronized (doneLock)
+            {
+                numCompleted++;
+                totalQueueTime += queueTime;
+                totalRunTime += runTime;
+                if (queueTime > maxQueueTime)
+                    maxQueueTime = queueTime;
+                if (runTime > maxRunTime)
+                    maxRunTime = runTime;
+            }
+        }
+
+        if (unfinishedCount.decrementAndGet() == 0)
+        {
+            synchronized (doneLock)
+            {
+                doneLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting for execution.
+     */
+    public int getWaitingTasksCount()
+    {
+        return waitingCount.get();
+    }
+
+    /**
+     * Return true if one or more task are executing or waiting.
+     */
+    public boolean isProcessing()
+    {
+        return unfinishedCount.get() > 0;
+    }
+
+    /**
+     * Wait for all tasks completion (should not be called from a task).
+     */
+    public void waitAll() throws InterruptedException
+    {
+        synchronized (doneLock)
+        {
+            while (unfinishedCount.get() > 0)
+                doneLock.wait();
+        }
+    }
+
+    /**
+     * Shutdown the processor: waiting tasks are still executed but new tasks are rejected.
+     */
+    public void shutdown()
+    {
+        shutdown = true;
+
+        synchronized (idleLock)
+        {
+            idleLock.notifyAll();
+        }
+    }
+
+    /**
+     * Shutdown and wait current tasks completion.
+     */
+    public void shutdownAndWait() throws InterruptedException
+    {
+        shutdown();
+        waitAll();
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    /**
+     * Returns the number of completed tasks.
+     */
+    public long getCompletedTaskCount()
+    {
+        synchronized (doneLock)
+        {
+            return numCompleted;
+        }
+    }
+
+    /**
+     * Returns the number of tasks stolen from another worker queue.
+     */
+    public long getStolenTaskCount()
+    {
+        return numStolen.get();
+    }
+
+    /**
+     * Returns the mean time spent by tasks in queue before execution (in ms).
+     */
+    public double getMeanQueueTime()
+    {
+        synchronized (doneLock)
+        {
+            if (numCompleted == 0L)
+                return 0d;
+
+            return (totalQueueTime / 1000000d) / numCompleted;
+        }
+    }
+
+    /**
+     * Returns the maximum time spent by a task in queue before execution (in ms).
+     */
+    public double getMaxQueueTime()
+    {
+        synchronized (doneLock)
+        {
+            return maxQueueTime / 1000000d;
+        }
+    }
+
+    /**
+     * Returns the mean execution time of tasks (in ms).
+     */
+    public double getMeanRunTime()
+    {
+        synchronized (doneLock)
+        {
+            if (numCompleted == 0L)
+                return 0d;
+
+            return (totalRunTime / 1000000d) / numCompleted;
+        }
+    }
+
+    /**
+     * Returns the maximum execution time of a task (in ms).
+     */
+    public double getMaxRunTime()
+    {
+        synchronized (doneLock)
+        {
+            return maxRunTime / 1000000d;
+        }
+    }
+
+    /**
+     * Reset tasks statistics.
+     */
+    public void resetStatistics()
+    {
+        numStolen.set(0L);
+
+        synchronized (doneLock)
+        {
+            numCompleted = 0L;
+            totalQueueTime = 0L;
+            maxQueueTime = 0L;
+            totalRunTime = 0L;
+            maxRunTime = 0L;
+        }
+    }
+}
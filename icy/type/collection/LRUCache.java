@@ -0,0 +1,360 @@
+/*
+ * Copyright 2010-2013 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.type.collection;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Thread safe LRU (Least Recently Used) cache with a size budget.<br>
+ * Each entry has a size given by {@link #getSize(Object)} (in bytes for instance) and the least
+ * recently used entries are evicted as soon as the total size exceeds the maximum size.
+ */
+public abstract class LRUCache<K, V>
+{
+    protected final LinkedHashMap<K, V> map;
+    protected long maxSize;
+    protected long size;
+
+    /**
+     * statistics
+     */
+    protected long hitCount;
+    protected long missCount;
+
+    /**
+     * @param maxSize
+     *        maximum total size of cached entries
+     */
+    public LRUCache(long maxSize)
+    {
+        super();
+
+        // access order so first entry is always the least recently used
+        map = new LinkedHashMap<K, V>(16, 0.75f, true);
+        this.maxSize = maxSize;
+        size = 0L;
+        hitCount = 0L;
+        missCount = 0L;
+    }
+
+    /**
+     * Returns the size of the specified value.
+     */
+    protected abstract long getSize(V value);
+
+    /**
+     * Called when an entry is removed from the cache (evicted, replaced or explicitly removed).<br>
+     * Called outside the cache lock.
+     */
+    protected void removed(K key, V value)
+    {
+        // nothing by default
+    }
+
+    /**
+     * Returns the cached value for the specified key (<code>null</code> if not in cache).
+     */
+    public V get(K key)
+    {
+        final V result;
+
+        synchronized (map)
+        {
+            result = map.get(key);
+
+            if (result != null)
+                hitCount++;
+            else
+                missCount++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the cached value for the specified key without changing entry usage nor statistics.
+     */
+    public V peek(K key)
+    {
+        synchronized (map)
+        {
+            // LinkedHashMap.get(..) changes the access order, iterate instead
+            for (Entry<K, V> entry : map.entrySet())
+                if (entry.getKey().equals(key))
+                    return entry.getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the cache contains the specified key (does not change entry
+     * usage nor statistics).
+     */
+    public boolean containsKey(K key)
+    {
+        synchronized (map)
+        {
+            return map.containsKey(key);
+        }
+    }
+
+    /**
+     * Put the specified value in the cache then evict least recently used entries if needed.
+     */
+    public void put(K key, V value)
+    {
+        final List<Entry<K, V>> removedEntries = new ArrayList<Entry<K, V>>();
+
+        synchronized (map)
+        {
+            final V old = map.put(key, value);
+
+            if (old != null)
+            {
+                size -= getSize(old);
+                if (old != value)
+                    removedEntries.add(new Pair<K, V>(key, old));
+            }
+
+            size += getSize(value);
+            evict(removedEntries);
+        }
+
+        fireRemoved(removedEntries);
+    }
+
+    /**
+     * Remove the specified entry from the cache.
+     */
+    public V remove(K key)
+    {
+        final V result;
+
+        synchronized (map)
+        {
+            result = map.remove(key);
+
+            if (result != null)
+                size -= getSize(result);
+        }
+
+        if (result != null)
+            removed(key, result);
+
+        return result;
+    }
+
+    /**
+     * Clear the cache.
+     */
+    public void clear()
+    {
+        final List<Entry<K, V>> removedEntries = new ArrayList<Entry<K, V>>();
+
+        synchronized (map)
+        {
+            for (Entry<K, V> entry : map.entrySet())
+                removedEntries.add(new Pair<K, V>(entry.getKey(), entry.getValue()));
+
+            map.clear();
+            size = 0L;
+        }
+
+        fireRemoved(removedEntries);
+    }
+
+    /**
+     * Returns the list of cached keys (from the least to the most recently used).
+     */
+    public List<K> getKeys()
+    {
+        synchronized (map)
+        {
+            return new ArrayList<K>(map.keySet());
+        }
+    }
+
+    /**
+     * Returns a snapshot of cached entries (from the least to the most recently used).
+     */
+    public List<Entry<K, V>> getEntries()
+    {
+        synchronized (map)
+        {
+            final List<Entry<K, V>> result = new ArrayList<Entry<K, V>>(map.size());
+
+            for (Entry<K, V> entry : map.entrySet())
+                result.add(new Pair<K, V>(entry.getKey(), entry.getValue()));
+
+            return result;
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     */
+    public int getCount()
+    {
+        synchronized (map)
+        {
+            return map.size();
+        }
+    }
+
+    /**
+     * Returns the total size of cached entries.
+     */
+    public long getSize()
+    {
+        synchronized (map)
+        {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the maximum total size of cached entries.
+     */
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum total size of cached entries (least recently used entries are evicted if
+     * needed).
+     */
+    public void setMaxSize(long value)
+    {
+        final List<Entry<K, V>> removedEntries = new ArrayList<Entry<K, V>>();
+
+        synchronized (map)
+        {
+            maxSize = value;
+            evict(removedEntries);
+        }
+
+        fireRemoved(removedEntries);
+    }
+
+    /**
+     * Returns the number of successful {@link #get(Object)} calls.
+     */
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of unsuccessful {@link #get(Object)} calls.
+     */
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Returns the hit rate (from 0 to 1) of the cache.
+     */
+    public double getHitRate()
+    {
+        synchronized (map)
+        {
+            final long total = hitCount + missCount;
+
+            if (total == 0L)
+                return 0d;
+
+            return (double) hitCount / (double) total;
+        }
+    }
+
+    /**
+     * Reset hit / miss statistics.
+     */
+    public void resetStatistics()
+    {
+        synchronized (map)
+        {
+            hitCount = 0L;
+            missCount = 0L;
+        }
+    }
+
+    /**
+     * Evict least recently used entries until we are under the size budget (internal use only,
+     * should be called with lock held).
+     */
+    protected void evict(List<Entry<K, V>> removedEntries)
+    {
+        final Iterator<Entry<K, V>> it = map.entrySet().iterator();
+
+        while ((size > maxSize) && it.hasNext())
+        {
+            final Entry<K, V> entry = it.next();
+
+            size -= getSize(entry.getValue());
+            removedEntries.add(new Pair<K, V>(entry.getKey(), entry.getValue()));
+            it.remove();
+        }
+    }
+
+    protected void fireRemoved(List<Entry<K, V>> removedEntries)
+    {
+        for (Entry<K, V> entry : removedEntries)
+            removed(entry.getKey(), entry.getValue());
+    }
+
+    private static class Pair<K, V> implements Entry<K, V>
+    {
+        final K key;
+        final V value;
+
+        Pair(K key, V value)
+        {
+            super();
+
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey()
+        {
+            return key;
+        }
+
+        @Override
+        public V getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
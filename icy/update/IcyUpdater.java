@@ -247,7 +247,7 @@ public class IcyUpdater
             @Override
             public void actionPerformed(ActionEvent e)
             {
-                ThreadUtil.bgRun(new Runnable()
+                ThreadUtil.bgRunIO(new Runnable()
                 {
                     @Override
                     public void run()
@@ -13,6 +13,7 @@ import icy.image.IcyBufferedImageUtil.FilterType;
 import icy.image.colormap.IcyColorMap;
 import icy.image.colormap.LinearColorMap;
 import icy.plugin.abstract_.PluginSequenceFileImporter;
+import icy.system.SystemUtil;
 import icy.type.DataType;
 import icy.type.collection.array.Array1DUtil;
 import icy.type.collection.array.Array2DUtil;
@@ -23,8 +24,13 @@ import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import javax.swing.filechooser.FileFilter;
 
@@ -57,9 +63,60 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         }
     };
 
+    /**
+     * Idle reader (opened on the current file) waiting in the pool.
+     */
+    protected static class PooledReader
+    {
+        final IFormatReader reader;
+        final long releaseTime;
+
+        PooledReader(IFormatReader reader)
+        {
+            super();
+
+            this.reader = reader;
+            releaseTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Maximum number of reader opened at same time on the current file
+     */
+    public static final int MAX_READERS = Math.max(1, SystemUtil.getAvailableProcessors());
+    /**
+     * Idle time (in ms) after which a pooled reader is closed
+     */
+    public static final long READER_IDLE_TIMEOUT = 30 * 1000;
+
+    /**
+     * Shared timer used to close idle pooled readers
+     */
+    protected static final Timer readerCleaner = new Timer("Reader pool cleaner", true);
+
     protected final ImageReader mainReader;
     protected IFormatReader reader;
 
+    /**
+     * Reader pool: additional readers opened on the current file so concurrent image requests
+     * (different Z/T/tiles) don't have to be serialized on the main reader.
+     */
+    protected final Set<IFormatReader> pooledReaders;
+    protected final List<PooledReader> idleReaders;
+    protected boolean readerInUse;
+    /**
+     * main reader is being opened or closed (no pooled reader can be created)
+     */
+    protected boolean readerLocked;
+    /**
+     * incremented each time the main reader is opened or closed (detect stale pooled reader)
+     */
+    protected int readerGeneration;
+    /**
+     * scheduled task closing idle pooled readers
+     */
+    protected TimerTask cleanerTask;
+
     /**
      * Advanced settings
      */
@@ -77,6 +134,13 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         reader = null;
         originalMetadata = false;
         groupFiles = false;
+
+        pooledReaders = new HashSet<IFormatReader>();
+        idleReaders = new ArrayList<PooledReader>();
+        readerInUse = false;
+        readerLocked = false;
+        readerGeneration = 0;
+        cleanerTask = null;
     }
 
     protected void setReader(String path) throws FormatException, IOException
@@ -230,6 +294,8 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         // close first
         close();
 
+        // get exclusive access to the main reader
+        lockMainReader();
         try
         {
             // better for Bio-Formats to have system path format
@@ -253,19 +319,319 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         {
             throw translateException(path, e);
         }
+        finally
+        {
+            unlockMainReader();
+        }
     }
 
     @Override
     public boolean close() throws IOException
     {
-        // something to close ?
-        if (getOpened() != null)
+        // wait for the main reader to be released before closing it
+        lockMainReader();
+        try
         {
-            reader.close();
-            return true;
+            // close all pooled readers (the ones in use are closed when released)
+            closePooledReaders();
+
+            // something to close ?
+            if (getOpened() != null)
+            {
+                reader.close();
+                return true;
+            }
+
+            return false;
+        }
+        finally
+        {
+            unlockMainReader();
+        }
+    }
+
+    /**
+     * Wait until the main reader is released then get exclusive access to it for open / close
+     * operations (internal use only).
+     */
+    protected void lockMainReader() throws IOException
+    {
+        synchronized (idleReaders)
+        {
+            while (readerInUse)
+            {
+                try
+                {
+                    idleReaders.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new InterruptedIOException("Reader request interrupted");
+                }
+            }
+
+            readerInUse = true;
+            readerLocked = true;
+            // pooled readers being created are stale
+            readerGeneration++;
+        }
+    }
+
+    /**
+     * Release the main reader locked with {@link #lockMainReader()} (internal use only).
+     */
+    protected void unlockMainReader()
+    {
+        synchronized (idleReaders)
+        {
+            readerGeneration++;
+            readerInUse = false;
+            readerLocked = false;
+            idleReaders.notifyAll();
+        }
+    }
+
+    /**
+     * Get a reader ready to read data from the currently opened file.<br>
+     * The main reader is returned if it's not already used, otherwise an idle pooled reader is
+     * returned or a new one is opened (up to {@link #MAX_READERS}).<br>
+     * Don't forget to call {@link #releaseReader(IFormatReader)} when you're done.
+     */
+    protected IFormatReader acquireReader() throws IOException
+    {
+        boolean create = false;
+        int generation = 0;
+
+        synchronized (idleReaders)
+        {
+            closeIdleReaders(System.currentTimeMillis() - READER_IDLE_TIMEOUT);
+
+            while (true)
+            {
+                if (!readerInUse)
+                {
+                    readerInUse = true;
+                    return reader;
+                }
+                if (!idleReaders.isEmpty())
+                    // take the last released one (oldest ones can then expire)
+                    return idleReaders.remove(idleReaders.size() - 1).reader;
+                // don't create reader while the main reader is opened or closed
+                if (!readerLocked && ((pooledReaders.size() + 1) < MAX_READERS))
+                {
+                    create = true;
+                    generation = readerGeneration;
+                    break;
+                }
+
+                try
+                {
+                    // wait for a reader to be released
+                    idleReaders.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new InterruptedIOException("Reader request interrupted");
+                }
+            }
         }
 
-        return false;
+        final IFormatReader result = create ? createReader() : null;
+
+        if (result != null)
+        {
+            boolean stale;
+
+            synchronized (idleReaders)
+            {
+                // main reader was opened or closed in the meantime ?
+                stale = (generation != readerGeneration);
+
+                if (!stale)
+                    pooledReaders.add(result);
+            }
+
+            if (!stale)
+                return result;
+
+            closeReader(result);
+        }
+
+        // can't create reader --> wait for main reader
+        synchronized (idleReaders)
+        {
+            while (readerInUse)
+            {
+                try
+                {
+                    idleReaders.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new InterruptedIOException("Reader request interrupted");
+                }
+            }
+
+            readerInUse = true;
+            return reader;
+        }
+    }
+
+    /**
+     * Release a reader previously obtained with {@link #acquireReader()}.
+     */
+    protected void releaseReader(IFormatReader r)
+    {
+        boolean stale = false;
+
+        synchronized (idleReaders)
+        {
+            if (r == reader)
+                readerInUse = false;
+            else if (pooledReaders.contains(r))
+            {
+                idleReaders.add(new PooledReader(r));
+                // close it if not used anymore
+                scheduleCleaner();
+            }
+            else
+                // reader was opened on a previously opened file
+                stale = true;
+
+            idleReaders.notifyAll();
+        }
+
+        if (stale)
+            closeReader(r);
+    }
+
+    /**
+     * Schedule closing of idle pooled readers (if not already done).
+     */
+    protected void scheduleCleaner()
+    {
+        synchronized (idleReaders)
+        {
+            if (cleanerTask != null)
+                return;
+
+            cleanerTask = new TimerTask()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (idleReaders)
+                    {
+                        cleanerTask = null;
+                    }
+
+                    closeIdleReaders(System.currentTimeMillis() - READER_IDLE_TIMEOUT);
+
+                    synchronized (idleReaders)
+                    {
+                        // some readers are still waiting --> check again later
+                        if (!idleReaders.isEmpty())
+                            scheduleCleaner();
+                    }
+                }
+            };
+
+            readerCleaner.schedule(cleanerTask, READER_IDLE_TIMEOUT);
+        }
+    }
+
+    /**
+     * Open a new reader on the currently opened file (returns <code>null</code> if the reader
+     * cannot be created).
+     */
+    protected IFormatReader createReader()
+    {
+        final IFormatReader main;
+        final String path;
+
+        synchronized (idleReaders)
+        {
+            main = reader;
+            path = (main != null) ? main.getCurrentFile() : null;
+        }
+
+        if (path == null)
+            return null;
+
+        try
+        {
+            final IFormatReader result = main.getClass().newInstance();
+
+            result.setGroupFiles(groupFiles);
+            // we don't need metadata here
+            result.setOriginalMetadataPopulated(false);
+            result.setId(path);
+
+            return result;
+        }
+        catch (Exception e)
+        {
+            // cannot create a new reader for this format
+            return null;
+        }
+    }
+
+    /**
+     * Close pooled readers which are idle since the specified time (internal use only).
+     */
+    protected void closeIdleReaders(long time)
+    {
+        final List<IFormatReader> toClose = new ArrayList<IFormatReader>();
+
+        synchronized (idleReaders)
+        {
+            // oldest readers are at the beginning
+            while (!idleReaders.isEmpty() && (idleReaders.get(0).releaseTime < time))
+            {
+                final IFormatReader r = idleReaders.remove(0).reader;
+
+                pooledReaders.remove(r);
+                toClose.add(r);
+            }
+        }
+
+        for (IFormatReader r : toClose)
+            closeReader(r);
+    }
+
+    /**
+     * Close all pooled readers (readers currently in use are closed when released).
+     */
+    protected void closePooledReaders()
+    {
+        final List<IFormatReader> toClose = new ArrayList<IFormatReader>();
+
+        synchronized (idleReaders)
+        {
+            // pooled readers being created are stale
+            readerGeneration++;
+
+            for (PooledReader pr : idleReaders)
+                toClose.add(pr.reader);
+
+            idleReaders.clear();
+            pooledReaders.clear();
+        }
+
+        for (IFormatReader r : toClose)
+            closeReader(r);
+    }
+
+    protected static void closeReader(IFormatReader r)
+    {
+        try
+        {
+            r.close();
+        }
+        catch (Exception e)
+        {
+            // ignore
+        }
     }
 
     /**
@@ -274,20 +640,30 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
      * @return the image divisor factor to match the wanted resolution if needed.
      */
     protected double prepareReader(int serie, int resolution)
+    {
+        return prepareReader(reader, serie, resolution);
+    }
+
+    /**
+     * Prepare the specified reader to read data from specified serie and at specified resolution.<br>
+     * 
+     * @return the image divisor factor to match the wanted resolution if needed.
+     */
+    protected static double prepareReader(IFormatReader r, int serie, int resolution)
     {
         final int resCount;
         final int res;
 
         // set wanted serie
-        reader.setSeries(serie);
+        r.setSeries(serie);
 
         // set wanted resolution
-        resCount = reader.getResolutionCount();
+        resCount = r.getResolutionCount();
         if (resolution >= resCount)
             res = resCount - 1;
         else
             res = resolution;
-        reader.setResolution(res);
+        r.setResolution(res);
 
         return Math.pow(2d, resolution - res);
     }
@@ -309,9 +685,22 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return 0;
 
-        // prepare reader
-        prepareReader(serie, 0);
-        return reader.getOptimalTileWidth();
+        final IFormatReader r = acquireReader();
+
+        try
+        {
+            // prepare reader
+            prepareReader(r, serie, 0);
+            return r.getOptimalTileWidth();
+        }
+        catch (FormatException e)
+        {
+            throw translateException(getOpened(), e);
+        }
+        finally
+        {
+            releaseReader(r);
+        }
     }
 
     @Override
@@ -321,9 +710,22 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return 0;
 
-        // prepare reader
-        prepareReader(serie, 0);
-        return reader.getOptimalTileHeight();
+        final IFormatReader r = acquireReader();
+
+        try
+        {
+            // prepare reader
+            prepareReader(r, serie, 0);
+            return r.getOptimalTileHeight();
+        }
+        catch (FormatException e)
+        {
+            throw translateException(getOpened(), e);
+        }
+        finally
+        {
+            releaseReader(r);
+        }
     }
 
     @Override
@@ -333,12 +735,14 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return null;
 
+        final IFormatReader r = acquireReader();
+
         try
         {
             // prepare reader and get down scale factor
-            final double scale = prepareReader(serie, 0);
+            final double scale = prepareReader(r, serie, 0);
             // get image
-            IcyBufferedImage result = getThumbnail(reader, reader.getSizeZ() / 2, reader.getSizeT() / 2);
+            IcyBufferedImage result = getThumbnail(r, r.getSizeZ() / 2, r.getSizeT() / 2);
             // return down scaled version if needed
             return downScale(result, scale);
         }
@@ -346,6 +750,10 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         {
             throw translateException(getOpened(), e);
         }
+        finally
+        {
+            releaseReader(r);
+        }
     }
 
     @Override
@@ -356,16 +764,18 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return null;
 
+        final IFormatReader r = acquireReader();
+
         try
         {
             // prepare reader and get down scale factor
-            final double scale = prepareReader(serie, resolution);
+            final double scale = prepareReader(r, serie, resolution);
             // no need to rescale ? --> directly return the pixels
             if (scale == 1d)
-                return getPixels(reader, rectangle, z, t, c);
+                return getPixels(r, rectangle, z, t, c);
 
             // get the image
-            IcyBufferedImage result = getImage(reader, rectangle, z, t, c);
+            IcyBufferedImage result = getImage(r, rectangle, z, t, c);
             // down scale it
             result = downScale(result, scale);
 
@@ -376,6 +786,10 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         {
             throw translateException(getOpened(), e);
         }
+        finally
+        {
+            releaseReader(r);
+        }
     }
 
     @Override
@@ -386,12 +800,14 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return null;
 
+        final IFormatReader r = acquireReader();
+
         try
         {
             // prepare reader and get down scale factor
-            final double scale = prepareReader(serie, resolution);
+            final double scale = prepareReader(r, serie, resolution);
             // get image
-            IcyBufferedImage result = getImage(reader, rectangle, z, t, c);
+            IcyBufferedImage result = getImage(r, rectangle, z, t, c);
             // return down scaled version if needed
             return downScale(result, scale);
         }
@@ -399,6 +815,10 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         {
             throw translateException(getOpened(), e);
         }
+        finally
+        {
+            releaseReader(r);
+        }
     }
 
     @Override
@@ -409,12 +829,14 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         if (getOpened() == null)
             return null;
 
+        final IFormatReader r = acquireReader();
+
         try
         {
             // prepare reader and get down scale factor
-            final double scale = prepareReader(serie, resolution);
+            final double scale = prepareReader(r, serie, resolution);
             // get image
-            IcyBufferedImage result = getImage(reader, rectangle, z, t);
+            IcyBufferedImage result = getImage(r, rectangle, z, t);
             // return down scaled version if needed
             return downScale(result, scale);
         }
@@ -422,52 +844,24 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         {
             throw translateException(getOpened(), e);
         }
+        finally
+        {
+            releaseReader(r);
+        }
     }
 
     @Override
     public IcyBufferedImage getImage(int serie, int resolution, int z, int t, int c) throws UnsupportedFormatException,
             IOException
     {
-        // no image currently opened
-        if (getOpened() == null)
-            return null;
-
-        try
-        {
-            // prepare reader and get down scale factor
-            final double scale = prepareReader(serie, resolution);
-            // get image
-            IcyBufferedImage result = getImage(reader, null, z, t, c);
-            // return down scaled version if needed
-            return downScale(result, scale);
-        }
-        catch (FormatException e)
-        {
-            throw translateException(getOpened(), e);
-        }
+        return getImage(serie, resolution, null, z, t, c);
     }
 
     @Override
     public IcyBufferedImage getImage(int serie, int resolution, int z, int t) throws UnsupportedFormatException,
             IOException
     {
-        // no image currently opened
-        if (getOpened() == null)
-            return null;
-
-        try
-        {
-            // prepare reader and get down scale factor
-            final double scale = prepareReader(serie, resolution);
-            // get image
-            IcyBufferedImage result = getImage(reader, null, z, t);
-            // return down scaled version if needed
-            return downScale(result, scale);
-        }
-        catch (FormatException e)
-        {
-            throw translateException(getOpened(), e);
-        }
+        return getImage(serie, resolution, null, z, t);
     }
 
     @Override
@@ -33,6 +33,7 @@ import icy.painter.VtkPainter;
 import icy.roi.ROI;
 import icy.roi.ROI2D;
 import icy.roi.ROIEvent;
+import icy.roi.ShapeRasterizer;
 import icy.sequence.Sequence;
 import icy.type.point.Point3D;
 import icy.type.point.Point5D;
@@ -51,6 +52,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.Line2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -1317,6 +1319,17 @@ public abstract class ROI2DShape extends ROI2D implements Shape, Anchor2DPositio
         return shape.getBounds2D();
     }
 
+    @Override
+    public boolean[] getBooleanMask(int x, int y, int width, int height, boolean inclusive)
+    {
+        // line has no interior, per pixel test is already fast
+        if (shape instanceof Line2D)
+            return super.getBooleanMask(x, y, width, height, inclusive);
+
+        // scanline rasterization (much faster than per pixel contains / intersects test)
+        return ShapeRasterizer.getBooleanMask(shape, x, y, width, height, inclusive);
+    }
+
     @Override
     protected ROI computeOperation(ROI roi, BooleanOperator op) throws UnsupportedOperationException
     {
@@ -29,6 +29,7 @@ import icy.roi.ROI2D;
 import icy.roi.ROI3D;
 import icy.roi.ROIEvent;
 import icy.roi.ROIListener;
+import icy.roi.RunLengthMask2D;
 import icy.sequence.Sequence;
 import icy.system.IcyExceptionHandler;
 import icy.type.point.Point5D;
@@ -768,6 +769,22 @@ public class ROI3DStack<R extends ROI2D> extends ROI3D implements ROIListener, O
         return new BooleanMask2D(new Rectangle(), new boolean[0]);
     }
 
+    @Override
+    public RunLengthMask2D getRunLengthMask2D(int z, int t, int c, boolean inclusive)
+    {
+        // not on the correct T, C position --> return empty mask
+        if (!isActiveFor(t, c))
+            return new RunLengthMask2D();
+
+        final R roi2d = getSlice(z);
+
+        // slice is rasterized by bands (no dense mask of the whole slice)
+        if (roi2d != null)
+            return roi2d.getRunLengthMask(inclusive);
+
+        return new RunLengthMask2D();
+    }
+
     // called when one of the slice ROI changed
     @Override
     public void roiChanged(ROIEvent event)